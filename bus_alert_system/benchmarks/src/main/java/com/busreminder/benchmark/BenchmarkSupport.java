@@ -0,0 +1,78 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.eta.EtaProvider;
+import com.busreminder.eta.HaversineEtaProvider;
+import com.busreminder.eta.TieredEtaStrategy;
+import com.busreminder.geo.GeoUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+final class BenchmarkSupport {
+
+    static final String BUS_ID = "BUS001";
+    static final double BUS_LATITUDE = 40.7128;
+    static final double BUS_LONGITUDE = -74.0060;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Create passengers with pickup points spread uniformly over a disc around the given center.
+     * A fixed seed keeps the data set identical across runs and forks.
+     */
+    static List<PassengerPickup> passengersAround(double latitude, double longitude, double radiusMiles, int count) {
+        Random random = new Random(42);
+        List<PassengerPickup> passengers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double distance = radiusMiles * Math.sqrt(random.nextDouble());
+            double bearing = 2 * Math.PI * random.nextDouble();
+            double deltaLat = distance * Math.cos(bearing) / GeoUtils.MILES_PER_DEGREE_LATITUDE;
+            double deltaLng = distance * Math.sin(bearing) / (GeoUtils.MILES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude)));
+
+            passengers.add(new PassengerPickup(
+                    String.format("PASS%05d", i),
+                    "Passenger " + i,
+                    String.format("+1555%07d", i),
+                    BigDecimal.valueOf(latitude + deltaLat).setScale(8, RoundingMode.HALF_UP),
+                    BigDecimal.valueOf(longitude + deltaLng).setScale(8, RoundingMode.HALF_UP),
+                    i + " Main St"));
+        }
+        return passengers;
+    }
+
+    /**
+     * Set a field that Spring would normally inject with {@code @Value}.
+     */
+    static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + name + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Create the ETA strategy with default settings, routing through {@code routing}, or Haversine only when null.
+     */
+    static TieredEtaStrategy etaStrategy(HaversineEtaProvider haversine, EtaProvider routing,
+                                         MeterRegistry meterRegistry) {
+        List<EtaProvider> providers = routing != null ? Arrays.asList(haversine, routing) : List.of(haversine);
+        TieredEtaStrategy etaStrategy = new TieredEtaStrategy(haversine, providers, meterRegistry);
+        setField(etaStrategy, "providerName", routing != null ? routing.getName() : haversine.getName());
+        etaStrategy.init();
+        return etaStrategy;
+    }
+}
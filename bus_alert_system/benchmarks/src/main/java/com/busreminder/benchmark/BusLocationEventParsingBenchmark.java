@@ -0,0 +1,98 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.consumer.BusLocationEventDeserializer;
+import com.busreminder.consumer.BusLocationJsonDecoder;
+import com.busreminder.dto.BusLocationEvent;
+import com.busreminder.ingest.LatestLocations;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of a Kafka location message: Jackson, as the listener did when record values arrived as
+ * {@code String}s, against {@link BusLocationJsonDecoder}, which {@link BusLocationEventDeserializer} uses now.
+ * The {@code ...Timestamp} pairs also read the event's timestamp as the listener does for its age and for
+ * conflation, since the decoder's epoch milliseconds save parsing it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusLocationEventParsingBenchmark {
+
+    private static final String MESSAGE =
+            "{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060,\"timestamp\":\"2024-01-15T10:30:00Z\"}";
+
+    private ObjectMapper objectMapper;
+    private ObjectReader eventReader;
+    private byte[] messageBytes;
+    private BusLocationEventDeserializer deserializer;
+
+    @Setup
+    public void setUp() {
+        // Same configuration as the ObjectMapper bean in KafkaConfig
+        objectMapper = new ObjectMapper();
+        eventReader = objectMapper.readerFor(BusLocationEvent.class);
+        messageBytes = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        deserializer = new BusLocationEventDeserializer(objectMapper, new SimpleMeterRegistry());
+    }
+
+    /** What the listener did before: the record value arrived as a String. */
+    @Benchmark
+    public BusLocationEvent readValueFromString() throws IOException {
+        return objectMapper.readValue(MESSAGE, BusLocationEvent.class);
+    }
+
+    /** Parsing the raw record bytes, skipping the String decode. */
+    @Benchmark
+    public BusLocationEvent readValueFromBytes() throws IOException {
+        return objectMapper.readValue(messageBytes, BusLocationEvent.class);
+    }
+
+    /** Parsing the raw record bytes with a reader bound to the type up front. */
+    @Benchmark
+    public BusLocationEvent readerFromBytes() throws IOException {
+        return eventReader.readValue(messageBytes);
+    }
+
+    /** Decoding the raw record bytes by hand. */
+    @Benchmark
+    public BusLocationEvent decoderFromBytes() {
+        return BusLocationJsonDecoder.decode(messageBytes);
+    }
+
+    /** What the Kafka deserializer does per record: the decoder plus its bookkeeping. */
+    @Benchmark
+    public BusLocationEvent deserializerFromBytes() {
+        return deserializer.deserialize("bus-location-updates", messageBytes);
+    }
+
+    /** The former listener path up to the event's timestamp. */
+    @Benchmark
+    public Instant readValueFromStringWithTimestamp() throws IOException {
+        return LatestLocations.timestampOf(objectMapper.readValue(MESSAGE, BusLocationEvent.class));
+    }
+
+    /** The current listener path up to the event's timestamp. */
+    @Benchmark
+    public Instant deserializerFromBytesWithTimestamp() {
+        return LatestLocations.timestampOf(deserializer.deserialize("bus-location-updates", messageBytes));
+    }
+}
@@ -0,0 +1,79 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.consumer.BusLocationBinaryCodec;
+import com.busreminder.consumer.BusLocationEventDeserializer;
+import com.busreminder.consumer.BusLocationEventSerializer;
+import com.busreminder.dto.BusLocationEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON against the {@link BusLocationBinaryCodec} encoding of a Kafka location record: producing it, as with
+ * {@code ObjectMapper} or {@link BusLocationEventSerializer}, and consuming it through
+ * {@link BusLocationEventDeserializer}. The benchmark event is 93 bytes as JSON and 34 bytes in binary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusLocationWireFormatBenchmark {
+
+    private static final String TOPIC = "bus-location-updates";
+
+    private ObjectMapper objectMapper;
+    private BusLocationEventSerializer serializer;
+    private BusLocationEventDeserializer deserializer;
+    private BusLocationEvent event;
+    private byte[] jsonRecord;
+    private byte[] binaryRecord;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        serializer = new BusLocationEventSerializer();
+        deserializer = new BusLocationEventDeserializer(objectMapper, new SimpleMeterRegistry());
+
+        event = new BusLocationEvent();
+        event.setBusId("BUS001");
+        event.setLatitude(40.7128);
+        event.setLongitude(-74.0060);
+        event.setTimestamp("2024-01-15T10:30:00Z");
+        jsonRecord = objectMapper.writeValueAsBytes(event);
+        binaryRecord = serializer.serialize(TOPIC, event);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return serializer.serialize(TOPIC, event);
+    }
+
+    @Benchmark
+    public BusLocationEvent deserializeJson() {
+        return deserializer.deserialize(TOPIC, jsonRecord);
+    }
+
+    @Benchmark
+    public BusLocationEvent deserializeBinary() {
+        return deserializer.deserialize(TOPIC, binaryRecord);
+    }
+}
@@ -0,0 +1,73 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.eta.HaversineEtaProvider;
+import com.busreminder.eta.StubEtaProvider;
+import com.busreminder.eta.TieredEtaStrategy;
+import com.busreminder.geo.GeoUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Straight-line ETA for a single bus/pickup pair, and the routed ETAs of all pickups within reach of a bus.
+ * <p>
+ * {@code routedEstimate} routes through the local stub provider, so it measures the cost of the strategy and the
+ * stub's batch calculation rather than a network round-trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EtaBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private HaversineEtaProvider haversine;
+    private TieredEtaStrategy etaStrategy;
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        haversine = new HaversineEtaProvider(meterRegistry);
+        StubEtaProvider stub = new StubEtaProvider(meterRegistry);
+        BenchmarkSupport.setField(stub, "speedMph", 25.0);
+        BenchmarkSupport.setField(stub, "detourFactor", 1.3);
+        etaStrategy = BenchmarkSupport.etaStrategy(haversine, stub, meterRegistry);
+
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = BenchmarkSupport.BUS_LATITUDE + (random.nextDouble() - 0.5) * 0.5;
+            longitudes[i] = BenchmarkSupport.BUS_LONGITUDE + (random.nextDouble() - 0.5) * 0.5;
+        }
+    }
+
+    @Benchmark
+    public long calculateETAHaversine() {
+        int i = next++ & (POINTS - 1);
+        return haversine.estimateMinutes(GeoUtils.distanceMiles(
+                BenchmarkSupport.BUS_LATITUDE, BenchmarkSupport.BUS_LONGITUDE, latitudes[i], longitudes[i]));
+    }
+
+    @Benchmark
+    public long[] routedEstimate() {
+        return etaStrategy.estimateMinutes(BenchmarkSupport.BUS_LATITUDE, BenchmarkSupport.BUS_LONGITUDE,
+                latitudes, longitudes);
+    }
+}
@@ -0,0 +1,50 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.cache.BusPassengerCache;
+import com.busreminder.cache.DuePickups;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.model.BusPassenger;
+import com.busreminder.model.BusPnr;
+import com.busreminder.service.PassengerService;
+
+import java.util.List;
+
+/**
+ * Serves one bus from {@link BusPassengerCache}, the way {@code PassengerServiceImpl} does after the first load.
+ */
+final class InMemoryPassengerService implements PassengerService {
+
+    private final BusPassengerCache busPassengerCache = new BusPassengerCache();
+    private final List<PassengerPickup> passengers;
+
+    InMemoryPassengerService(List<PassengerPickup> passengers) {
+        this.passengers = passengers;
+    }
+
+    @Override
+    public List<BusPassenger> getPassengersByBusId(String busId) {
+        throw new UnsupportedOperationException("Not used by the benchmark");
+    }
+
+    @Override
+    public List<PassengerPickup> getUnnotifiedPassengersByBusId(String busId) {
+        return busPassengerCache.getSnapshot(busId, id -> passengers).getPassengers();
+    }
+
+    @Override
+    public DuePickups getDuePickupsNear(String busId, double latitude, double longitude, double radiusMiles,
+                                        long nowNanos) {
+        return busPassengerCache.getSnapshot(busId, id -> passengers)
+                .findDueWithin(latitude, longitude, radiusMiles, nowNanos);
+    }
+
+    @Override
+    public BusPnr addPnr(String busId, String pnrId) {
+        throw new UnsupportedOperationException("Not used by the benchmark");
+    }
+
+    @Override
+    public boolean markPickedUp(String busId, String passengerId) {
+        throw new UnsupportedOperationException("Not used by the benchmark");
+    }
+}
@@ -0,0 +1,86 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.dto.NotificationRequest;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.eta.HaversineEtaProvider;
+import com.busreminder.push.EtaBroadcaster;
+import com.busreminder.service.impl.LocationProcessingServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * One location ping for a bus whose unnotified passengers are already cached in memory.
+ * <p>
+ * Pickup points are spread over a 25 mile radius, so only part of them is within reach of the bus.
+ * No routing provider is configured, so ETAs are straight-line estimates and no network is involved. Nobody
+ * subscribes to ETA streams, so the ETAs are not published.
+ * Pings are {@value #PING_INTERVAL_SECONDS} seconds apart on a simulated clock, so the recheck schedule sees
+ * the bus at about 50 mph; {@code maxRecheckDelaySeconds=0} turns the schedule off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessBusLocationBenchmark {
+
+    private static final double PICKUP_SPREAD_MILES = 25.0;
+    private static final int POSITIONS = 64;
+    private static final long PING_INTERVAL_SECONDS = 15;
+
+    @Param({"20", "100", "1000", "10000"})
+    public int passengersPerBus;
+
+    @Param({"0", "60"})
+    public long maxRecheckDelaySeconds;
+
+    private LocationProcessingServiceImpl locationProcessingService;
+    private final double[] busLatitudes = new double[POSITIONS];
+    private final double[] busLongitudes = new double[POSITIONS];
+    private int next;
+    private long pingNanos;
+
+    @Setup
+    public void setUp() {
+        List<PassengerPickup> passengers = BenchmarkSupport.passengersAround(
+                BenchmarkSupport.BUS_LATITUDE, BenchmarkSupport.BUS_LONGITUDE, PICKUP_SPREAD_MILES, passengersPerBus);
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        locationProcessingService = new LocationProcessingServiceImpl(new InMemoryPassengerService(passengers),
+                BenchmarkSupport.etaStrategy(new HaversineEtaProvider(meterRegistry), null, meterRegistry),
+                new EtaBroadcaster(16, 0, 10000, 64, false), meterRegistry);
+        BenchmarkSupport.setField(locationProcessingService, "notificationThresholdMinutes", 10L);
+        BenchmarkSupport.setField(locationProcessingService, "maxSpeedMph", 70.0);
+        BenchmarkSupport.setField(locationProcessingService, "maxRecheckDelaySeconds", maxRecheckDelaySeconds);
+        BenchmarkSupport.setField(locationProcessingService, "nanoClock", (LongSupplier) () -> pingNanos);
+
+        // The bus drives north through the middle of the pickup area
+        for (int i = 0; i < POSITIONS; i++) {
+            busLatitudes[i] = BenchmarkSupport.BUS_LATITUDE - 0.1 + 0.2 * i / POSITIONS;
+            busLongitudes[i] = BenchmarkSupport.BUS_LONGITUDE;
+        }
+    }
+
+    @Benchmark
+    public List<NotificationRequest> processBusLocation() {
+        int i = next++ & (POSITIONS - 1);
+        pingNanos += TimeUnit.SECONDS.toNanos(PING_INTERVAL_SECONDS);
+        return locationProcessingService.processBusLocation(BenchmarkSupport.BUS_ID, busLatitudes[i], busLongitudes[i]);
+    }
+}
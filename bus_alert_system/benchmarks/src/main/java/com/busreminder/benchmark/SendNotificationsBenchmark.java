@@ -0,0 +1,174 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.cache.BusPassengerCache;
+import com.busreminder.dto.NotificationRequest;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.model.TripState;
+import com.busreminder.notification.NotificationDispatcher;
+import com.busreminder.notification.NotificationOutboxRelay;
+import com.busreminder.notification.TwilioNotificationSender;
+import com.busreminder.notification.TwilioRateLimiter;
+import com.busreminder.notification.TwilioSenderPool;
+import com.busreminder.repository.BusPassengerRepository;
+import com.busreminder.repository.NotificationOutboxRepository;
+import com.busreminder.service.impl.NotificationServiceImpl;
+import com.busreminder.trip.TripStateStore;
+import com.busreminder.trip.TripStateWriter;
+import com.twilio.Twilio;
+import com.twilio.http.HttpClient;
+import com.twilio.http.Request;
+import com.twilio.http.Response;
+import com.twilio.http.TwilioRestClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery of a notification batch: message formatting, Twilio request building and response parsing.
+ * <p>
+ * Twilio is backed by a stub HTTP client that answers every request with a canned 201, and the dispatcher
+ * runs the batch on the calling thread so the whole delivery, including the Twilio rate limiter, is measured.
+ * Trip states are kept in memory and their writer is never started; the notification outbox accepts every INSERT
+ * and UPDATE without a database, so no database write is part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendNotificationsBenchmark {
+
+    private static final String ACCOUNT_SID = "AC00000000000000000000000000000000";
+    private static final String AUTH_TOKEN = "benchmark";
+
+    @Param({"1", "10"})
+    public int batchSize;
+
+    private NotificationServiceImpl notificationService;
+    private NotificationDispatcher notificationDispatcher;
+    private List<NotificationRequest> requests;
+
+    @Setup
+    public void setUp() {
+        Twilio.setRestClient(new TwilioRestClient.Builder(ACCOUNT_SID, AUTH_TOKEN)
+                .httpClient(new StubTwilioHttpClient())
+                .build());
+
+        notificationDispatcher = new NotificationDispatcher(1, 1, 1, false) {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BusPassengerRepository repository = unusedRepository();
+        NotificationOutboxRepository outboxRepository = acceptingOutboxRepository();
+        // Every invocation sends the same batch again, so the trip state check runs but never skips it
+        TripStateStore tripStateStore = new TripStateStore(repository, outboxRepository,
+                new TripStateWriter(repository, meterRegistry)) {
+            @Override
+            public boolean advance(String busId, String passengerId, TripState next) {
+                super.advance(busId, passengerId, next);
+                return true;
+            }
+        };
+        // Rates high enough never to wait, so only the limiter's bookkeeping is measured
+        TwilioRateLimiter rateLimiter = new TwilioRateLimiter(meterRegistry);
+        BenchmarkSupport.setField(rateLimiter, "smsPerSecond", 1e9);
+        BenchmarkSupport.setField(rateLimiter, "callsPerSecond", 1e9);
+        BenchmarkSupport.setField(rateLimiter, "burst", 1_000_000);
+        BenchmarkSupport.setField(rateLimiter, "maxConcurrentRequests", 64);
+        rateLimiter.init();
+        TwilioSenderPool senderPool = new TwilioSenderPool();
+        BenchmarkSupport.setField(senderPool, "twilioPhoneNumbers", "");
+        BenchmarkSupport.setField(senderPool, "twilioPhoneNumber", "+15550000000");
+        senderPool.init();
+        TwilioNotificationSender sender = new TwilioNotificationSender(senderPool, rateLimiter, meterRegistry);
+        BenchmarkSupport.setField(sender, "twilioAccountSid", ACCOUNT_SID);
+        BenchmarkSupport.setField(sender, "twilioAuthToken", AUTH_TOKEN);
+        BenchmarkSupport.setField(sender, "twilioVoiceUrl", "https://example.com/voice.xml");
+        NotificationOutboxRelay relay = new NotificationOutboxRelay(
+                outboxRepository, sender, notificationDispatcher, tripStateStore, meterRegistry);
+        BenchmarkSupport.setField(relay, "maxAttempts", 3);
+        BenchmarkSupport.setField(relay, "leaseSeconds", 300L);
+        notificationService = new NotificationServiceImpl(tripStateStore, new BusPassengerCache(), relay);
+
+        requests = new ArrayList<>(batchSize);
+        for (PassengerPickup passenger : BenchmarkSupport.passengersAround(
+                BenchmarkSupport.BUS_LATITUDE, BenchmarkSupport.BUS_LONGITUDE, 1.0, batchSize)) {
+            NotificationRequest request = new NotificationRequest();
+            request.setBusId(BenchmarkSupport.BUS_ID);
+            request.setPassengerId(passenger.passengerId());
+            request.setPassengerName(passenger.passengerName());
+            request.setPassengerPhone(passenger.passengerPhone());
+            request.setPickupLatitude(passenger.pickupLatitude());
+            request.setPickupLongitude(passenger.pickupLongitude());
+            request.setPickupAddress(passenger.pickupAddress());
+            request.setEstimatedMinutes(5L);
+            requests.add(request);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        notificationDispatcher.shutdown();
+    }
+
+    @Benchmark
+    public void sendNotifications() {
+        notificationService.sendNotifications(requests);
+    }
+
+    private static BusPassengerRepository unusedRepository() {
+        return (BusPassengerRepository) Proxy.newProxyInstance(
+                BusPassengerRepository.class.getClassLoader(),
+                new Class<?>[]{BusPassengerRepository.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Returns the entities from {@code saveAll} and reports one row per key from the bulk UPDATEs.
+     */
+    private static NotificationOutboxRepository acceptingOutboxRepository() {
+        return (NotificationOutboxRepository) Proxy.newProxyInstance(
+                NotificationOutboxRepository.class.getClassLoader(),
+                new Class<?>[]{NotificationOutboxRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "saveAll" -> args[0];
+                    case "updateStatus", "recordFailedAttempt" -> ((Collection<?>) args[0]).size();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Answers every Twilio API call with a created resource, without touching the network.
+     */
+    private static final class StubTwilioHttpClient extends HttpClient {
+
+        private static final String CREATED = "{\"sid\":\"SM00000000000000000000000000000000\",\"status\":\"queued\"}";
+
+        @Override
+        public Response makeRequest(Request request) {
+            return new Response(CREATED, 201);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.busreminder.benchmark;
+
+import com.busreminder.cache.EtaCache;
+import com.busreminder.concurrent.VirtualThreads;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.eta.DistanceMatrixEtaProvider;
+import com.busreminder.eta.HaversineEtaProvider;
+import com.busreminder.notification.NotificationDispatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking I/O on platform threads versus Java 21 virtual threads.
+ * <p>
+ * {@code deliverBatches} pushes notification batches that block for a simulated Twilio round-trip through
+ * {@link NotificationDispatcher} with its default four workers. {@code etaForCrowdedBus} asks the Distance Matrix
+ * provider for the ETAs of a bus with more pickups than fit in one request, against a local server that answers after
+ * a simulated Google round-trip; the requests are asynchronous in both modes and only the executor handling
+ * their responses differs. The {@code virtual} parameter needs a Java 21 JVM; on Java 17 run with
+ * {@code -p threads=platform}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadsBenchmark {
+
+    private static final int BATCHES = 200;
+    private static final long TWILIO_LATENCY_MILLIS = 20;
+    private static final long GOOGLE_LATENCY_MILLIS = 20;
+    // 20 Distance Matrix requests of 25 destinations
+    private static final int CROWDED_BUS_PASSENGERS = 500;
+    private static final double PICKUP_SPREAD_MILES = 10.0;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private NotificationDispatcher notificationDispatcher;
+    private DistanceMatrixEtaProvider distanceMatrix;
+    private EtaCache etaCache;
+    private final double[] pickupLatitudes = new double[CROWDED_BUS_PASSENGERS];
+    private final double[] pickupLongitudes = new double[CROWDED_BUS_PASSENGERS];
+    private HttpServer distanceMatrixServer;
+    private ExecutorService serverExecutor;
+
+    @Setup
+    public void setUp() throws IOException {
+        boolean virtual = "virtual".equals(threads);
+        if (virtual && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("threads=virtual needs Java 21; run with -p threads=platform");
+        }
+
+        notificationDispatcher = new NotificationDispatcher(4, 1000, 30, virtual);
+
+        // The server answers every request on its own thread, so only the client side limits concurrency
+        serverExecutor = Executors.newCachedThreadPool();
+        distanceMatrixServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        distanceMatrixServer.setExecutor(serverExecutor);
+        distanceMatrixServer.createContext("/distancematrix", VirtualThreadsBenchmark::answerDistanceMatrix);
+        distanceMatrixServer.start();
+
+        etaCache = new EtaCache(60, 50000, 7);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        distanceMatrix = new DistanceMatrixEtaProvider(new ObjectMapper(), etaCache,
+                new HaversineEtaProvider(meterRegistry), meterRegistry);
+        BenchmarkSupport.setField(distanceMatrix, "googleMapsApiKey", "benchmark");
+        BenchmarkSupport.setField(distanceMatrix, "googleMapsApiUrl",
+                "http://localhost:" + distanceMatrixServer.getAddress().getPort() + "/distancematrix");
+        BenchmarkSupport.setField(distanceMatrix, "maxConcurrentRequests", 64);
+        BenchmarkSupport.setField(distanceMatrix, "maxConcurrentRequestsPerBus", 4);
+        BenchmarkSupport.setField(distanceMatrix, "pingDeadlineMillis", 3000L);
+        BenchmarkSupport.setField(distanceMatrix, "circuitFailureRateThreshold", 50);
+        BenchmarkSupport.setField(distanceMatrix, "circuitSlowCallRateThreshold", 50);
+        BenchmarkSupport.setField(distanceMatrix, "circuitSlowCallMillis", 2000L);
+        BenchmarkSupport.setField(distanceMatrix, "circuitWindowSize", 20);
+        BenchmarkSupport.setField(distanceMatrix, "circuitMinimumCalls", 10);
+        BenchmarkSupport.setField(distanceMatrix, "circuitOpenMillis", 30000L);
+        BenchmarkSupport.setField(distanceMatrix, "circuitHalfOpenProbes", 3);
+        BenchmarkSupport.setField(distanceMatrix, "virtualThreads", virtual);
+        distanceMatrix.init();
+
+        List<PassengerPickup> passengers = BenchmarkSupport.passengersAround(BenchmarkSupport.BUS_LATITUDE,
+                BenchmarkSupport.BUS_LONGITUDE, PICKUP_SPREAD_MILES, CROWDED_BUS_PASSENGERS);
+        for (int i = 0; i < CROWDED_BUS_PASSENGERS; i++) {
+            pickupLatitudes[i] = passengers.get(i).pickupLatitude().doubleValue();
+            pickupLongitudes[i] = passengers.get(i).pickupLongitude().doubleValue();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        notificationDispatcher.shutdown();
+        distanceMatrixServer.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCHES)
+    public void deliverBatches() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(BATCHES);
+        for (int i = 0; i < BATCHES; i++) {
+            notificationDispatcher.execute(() -> {
+                sleep(TWILIO_LATENCY_MILLIS);
+                delivered.countDown();
+            });
+        }
+        delivered.await();
+    }
+
+    @Benchmark
+    public long[] etaForCrowdedBus() {
+        // Every invocation pays for the Distance Matrix requests
+        etaCache.clear();
+        return distanceMatrix.estimateMinutes(BenchmarkSupport.BUS_LATITUDE, BenchmarkSupport.BUS_LONGITUDE,
+                pickupLatitudes, pickupLongitudes);
+    }
+
+    private static void answerDistanceMatrix(HttpExchange exchange) throws IOException {
+        // Destinations are separated by an encoded '|'
+        int destinations = exchange.getRequestURI().getRawQuery().split("%7C", -1).length;
+        StringBuilder body = new StringBuilder("{\"status\":\"OK\",\"rows\":[{\"elements\":[");
+        for (int i = 0; i < destinations; i++) {
+            body.append(i > 0 ? "," : "").append("{\"status\":\"OK\",\"duration\":{\"value\":300}}");
+        }
+        byte[] bytes = body.append("]}]}").toString().getBytes(StandardCharsets.UTF_8);
+
+        sleep(GOOGLE_LATENCY_MILLIS);
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.busreminder.cache;
+
+import com.busreminder.dto.PassengerPickup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Resident per-bus snapshot of unnotified passengers.
+ * <p>
+ * Each bus is loaded from the database once, on its first ping, and kept as an immutable
+ * {@link BusPassengerSnapshot} with a spatial index of pickup points.
+ * Writes go through {@link #markNotified(Collection)} and {@link #evict(String)} so the snapshot
+ * never has to be re-read on the location hot path.
+ */
+@Component
+public class BusPassengerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusPassengerCache.class);
+
+    private final Map<String, BusPassengerSnapshot> snapshotsByBus = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> busesByPassenger = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Get the unnotified passenger snapshot for a bus, loading it on first access.
+     *
+     * @param busId Bus identifier
+     * @param loader Loads the unnotified passengers for a bus from the database
+     * @return Snapshot of unnotified passengers on the bus
+     */
+    public BusPassengerSnapshot getSnapshot(String busId, Function<String, List<PassengerPickup>> loader) {
+        BusPassengerSnapshot cached = snapshotsByBus.get(busId);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        return snapshotsByBus.computeIfAbsent(busId, id -> {
+            misses.incrementAndGet();
+            BusPassengerSnapshot loaded = BusPassengerSnapshot.of(loader.apply(id));
+            for (PassengerPickup passenger : loaded.getPassengers()) {
+                busesByPassenger.computeIfAbsent(passenger.passengerId(), p -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            logger.debug("Cached {} unnotified passengers for bus {}", loaded.getPassengers().size(), id);
+            return loaded;
+        });
+    }
+
+    /**
+     * Remove notified passengers from every cached bus they belong to.
+     *
+     * @param passengerIds Passenger identifiers that have just been notified
+     */
+    public void markNotified(Collection<String> passengerIds) {
+        for (String passengerId : passengerIds) {
+            Set<String> busIds = busesByPassenger.remove(passengerId);
+            if (busIds == null) {
+                continue;
+            }
+            for (String busId : busIds) {
+                snapshotsByBus.computeIfPresent(busId, (id, snapshot) -> snapshot.without(passengerId));
+            }
+        }
+    }
+
+    /**
+     * Drop the snapshot for a bus so the next access reloads it, e.g. after a PNR is added.
+     *
+     * @param busId Bus identifier
+     */
+    public void evict(String busId) {
+        BusPassengerSnapshot removed = snapshotsByBus.remove(busId);
+        if (removed != null) {
+            evictions.incrementAndGet();
+            for (PassengerPickup passenger : removed.getPassengers()) {
+                busesByPassenger.computeIfPresent(passenger.passengerId(), (id, buses) -> {
+                    buses.remove(busId);
+                    return buses.isEmpty() ? null : buses;
+                });
+            }
+        }
+    }
+
+    /**
+     * Drop every snapshot, e.g. after a bulk data load.
+     */
+    public void invalidateAll() {
+        evictions.addAndGet(snapshotsByBus.size());
+        snapshotsByBus.clear();
+        busesByPassenger.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public int size() {
+        return snapshotsByBus.size();
+    }
+}
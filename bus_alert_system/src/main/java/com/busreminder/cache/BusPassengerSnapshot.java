@@ -0,0 +1,96 @@
+package com.busreminder.cache;
+
+import com.busreminder.geo.PickupIndex;
+import com.busreminder.dto.PassengerPickup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable view of a bus's unnotified passengers together with a spatial index of their pickup points.
+ * <p>
+ * The only mutable state is the recheck time of each passenger, which lets a ping skip passengers whose ETA
+ * cannot have reached the threshold since they were last evaluated. Concurrent pings for the same bus may
+ * overwrite each other's recheck times; either value is a valid schedule.
+ */
+public final class BusPassengerSnapshot {
+
+    private final PickupPoints pickupPoints;
+    private final PickupIndex pickupIndex;
+    // System.nanoTime() from which each position is due for evaluation again
+    private final long[] recheckAt;
+
+    private BusPassengerSnapshot(List<PassengerPickup> passengers, long[] recheckAt) {
+        this.pickupPoints = PickupPoints.of(passengers);
+        this.pickupIndex = PickupIndex.build(pickupPoints.getLatitudes(), pickupPoints.getLongitudes());
+        this.recheckAt = recheckAt;
+    }
+
+    public static BusPassengerSnapshot of(List<PassengerPickup> passengers) {
+        long[] recheckAt = new long[passengers.size()];
+        Arrays.fill(recheckAt, Long.MIN_VALUE);
+        return new BusPassengerSnapshot(passengers, recheckAt);
+    }
+
+    public List<PassengerPickup> getPassengers() {
+        return pickupPoints.getPassengers();
+    }
+
+    /**
+     * Find passengers whose pickup point is within a straight-line radius of the given location.
+     *
+     * @param latitude Bus latitude
+     * @param longitude Bus longitude
+     * @param radiusMiles Search radius in miles
+     * @return Pickup points of the passengers within the radius
+     */
+    public PickupPoints findWithin(double latitude, double longitude, double radiusMiles) {
+        return pickupPoints.select(pickupIndex.findWithin(latitude, longitude, radiusMiles));
+    }
+
+    /**
+     * Find passengers within a straight-line radius of the given location whose recheck time has come.
+     *
+     * @param latitude Bus latitude
+     * @param longitude Bus longitude
+     * @param radiusMiles Search radius in miles
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @return Due pickup points, through which the next recheck time of each can be set
+     */
+    public DuePickups findDueWithin(double latitude, double longitude, double radiusMiles, long nowNanos) {
+        int[] within = pickupIndex.findWithin(latitude, longitude, radiusMiles);
+        if (within.length == 0) {
+            return DuePickups.empty();
+        }
+        int[] due = new int[within.length];
+        int dueCount = 0;
+        for (int position : within) {
+            // Compare as a difference, nanoTime() may wrap
+            if (recheckAt[position] == Long.MIN_VALUE || recheckAt[position] - nowNanos <= 0) {
+                due[dueCount++] = position;
+            }
+        }
+        int[] positions = Arrays.copyOf(due, dueCount);
+        return new DuePickups(pickupPoints.select(positions), positions, recheckAt, within.length - dueCount);
+    }
+
+    /**
+     * Create a new snapshot without the given passenger, keeping the recheck times of the others.
+     */
+    BusPassengerSnapshot without(String passengerId) {
+        List<PassengerPickup> passengers = getPassengers();
+        List<PassengerPickup> remaining = new ArrayList<>(passengers.size());
+        long[] remainingRecheckAt = new long[passengers.size()];
+        for (int i = 0; i < passengers.size(); i++) {
+            if (!passengerId.equals(passengers.get(i).passengerId())) {
+                remainingRecheckAt[remaining.size()] = recheckAt[i];
+                remaining.add(passengers.get(i));
+            }
+        }
+        if (remaining.size() == passengers.size()) {
+            return this;
+        }
+        return new BusPassengerSnapshot(remaining, Arrays.copyOf(remainingRecheckAt, remaining.size()));
+    }
+}
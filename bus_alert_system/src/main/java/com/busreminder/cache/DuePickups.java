@@ -0,0 +1,47 @@
+package com.busreminder.cache;
+
+/**
+ * Pickup points near a bus whose recheck time has come, returned by {@link BusPassengerSnapshot#findDueWithin}.
+ * <p>
+ * Position {@code i} of {@link #getPickupPoints()} can be given a new recheck time with
+ * {@link #scheduleRecheck(int, long)}; until then the passenger stays due. Recheck times belong to the snapshot
+ * the pickups were read from, so a passenger whose bus was reloaded in the meantime is simply due again.
+ */
+public final class DuePickups {
+
+    private static final DuePickups EMPTY = new DuePickups(PickupPoints.empty(), new int[0], new long[0], 0);
+
+    private final PickupPoints pickupPoints;
+    private final int[] positions;
+    private final long[] recheckAt;
+    private final int deferredCount;
+
+    DuePickups(PickupPoints pickupPoints, int[] positions, long[] recheckAt, int deferredCount) {
+        this.pickupPoints = pickupPoints;
+        this.positions = positions;
+        this.recheckAt = recheckAt;
+        this.deferredCount = deferredCount;
+    }
+
+    public static DuePickups empty() {
+        return EMPTY;
+    }
+
+    public PickupPoints getPickupPoints() {
+        return pickupPoints;
+    }
+
+    /**
+     * Number of pickup points within the radius that were skipped because their recheck time had not come.
+     */
+    public int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * Skip the passenger at position {@code index} until the given {@link System#nanoTime()} value.
+     */
+    public void scheduleRecheck(int index, long dueNanos) {
+        recheckAt[positions[index]] = dueNanos;
+    }
+}
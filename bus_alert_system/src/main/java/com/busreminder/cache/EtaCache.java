@@ -0,0 +1,139 @@
+package com.busreminder.cache;
+
+import com.busreminder.geo.GeoUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of routed ETAs keyed by (geohash cell of the bus, pickup point).
+ * <p>
+ * A stopped or slow-moving bus keeps reporting positions in the same cell, so consecutive pings reuse
+ * the previous Distance Matrix result instead of paying for an identical request. Entries expire after
+ * a fixed time-to-live and the least recently used entry is evicted once the cache is full.
+ */
+@Component
+public class EtaCache {
+
+    /** Returned by {@link #get} when there is no live entry. */
+    public static final long MISS = -1L;
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final int geohashBits;
+    private final LongSupplier clock;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries;
+
+    @Autowired
+    public EtaCache(@Value("${eta.cache.ttl-seconds:60}") long ttlSeconds,
+                    @Value("${eta.cache.max-size:50000}") int maxSize,
+                    @Value("${eta.cache.geohash-precision:7}") int geohashPrecision) {
+        this(ttlSeconds, maxSize, geohashPrecision, System::nanoTime);
+    }
+
+    EtaCache(long ttlSeconds, int maxSize, int geohashPrecision, LongSupplier clock) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxSize = maxSize;
+        this.geohashBits = geohashPrecision * 5;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > EtaCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Look up a cached ETA.
+     *
+     * @return ETA in minutes, or {@link #MISS} if there is no live entry
+     */
+    public long get(double originLat, double originLng, double destLat, double destLng) {
+        Key key = key(originLat, originLng, destLat, destLng);
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.expiresAt < 0) {
+                hits.incrementAndGet();
+                return entry.minutes;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return MISS;
+    }
+
+    /**
+     * Store an ETA computed by the routing provider.
+     */
+    public void put(double originLat, double originLng, double destLat, double destLng, long minutes) {
+        Key key = key(originLat, originLng, destLat, destLng);
+        Entry entry = new Entry(minutes, clock.getAsLong() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Fraction of lookups served from the cache, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Key key(double originLat, double originLng, double destLat, double destLng) {
+        return new Key(GeoUtils.geohashCell(originLat, originLng, geohashBits), destLat, destLng);
+    }
+
+    private record Key(long originCell, double destLat, double destLng) {
+    }
+
+    private record Entry(long minutes, long expiresAt) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.busreminder.cache;
+
+import com.busreminder.dto.PassengerPickup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pickup coordinates of a set of passengers held as parallel primitive arrays.
+ * <p>
+ * The {@code BigDecimal} coordinates of the passengers are converted once when the bus is cached, so the
+ * ETA calculation on every ping reads plain {@code double}s. Position {@code i} of the coordinate arrays
+ * belongs to {@link #getPassenger(int) passenger i}. The arrays are shared, not copied: callers must not modify them.
+ */
+public final class PickupPoints {
+
+    private static final PickupPoints EMPTY = new PickupPoints(List.of(), new double[0], new double[0]);
+
+    private final List<PassengerPickup> passengers;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    private PickupPoints(List<PassengerPickup> passengers, double[] latitudes, double[] longitudes) {
+        this.passengers = passengers;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    public static PickupPoints of(List<PassengerPickup> passengers) {
+        if (passengers.isEmpty()) {
+            return EMPTY;
+        }
+        List<PassengerPickup> copy = List.copyOf(passengers);
+        double[] latitudes = new double[copy.size()];
+        double[] longitudes = new double[copy.size()];
+        for (int i = 0; i < latitudes.length; i++) {
+            PassengerPickup passenger = copy.get(i);
+            latitudes[i] = passenger.pickupLatitude().doubleValue();
+            longitudes[i] = passenger.pickupLongitude().doubleValue();
+        }
+        return new PickupPoints(copy, latitudes, longitudes);
+    }
+
+    public static PickupPoints empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a subset holding the given positions, in the given order.
+     */
+    PickupPoints select(int[] positions) {
+        if (positions.length == 0) {
+            return EMPTY;
+        }
+        List<PassengerPickup> selected = new ArrayList<>(positions.length);
+        double[] selectedLatitudes = new double[positions.length];
+        double[] selectedLongitudes = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            selected.add(passengers.get(positions[i]));
+            selectedLatitudes[i] = latitudes[positions[i]];
+            selectedLongitudes[i] = longitudes[positions[i]];
+        }
+        return new PickupPoints(Collections.unmodifiableList(selected), selectedLatitudes, selectedLongitudes);
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    public boolean isEmpty() {
+        return latitudes.length == 0;
+    }
+
+    public PassengerPickup getPassenger(int index) {
+        return passengers.get(index);
+    }
+
+    public List<PassengerPickup> getPassengers() {
+        return passengers;
+    }
+
+    public double[] getLatitudes() {
+        return latitudes;
+    }
+
+    public double[] getLongitudes() {
+        return longitudes;
+    }
+}
@@ -0,0 +1,94 @@
+package com.busreminder.concurrent;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed number of single-threaded lanes, choosing the lane by a key.
+ * <p>
+ * Tasks of the same key always run on the same lane, one at a time and in the order they were submitted; tasks of
+ * different keys run concurrently unless their keys share a lane. Lanes queue without bound, so callers limit how
+ * much they submit.
+ */
+public class KeyOrderedExecutor {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    /**
+     * @param name Prefix of the lane thread names, followed by the lane number
+     * @param laneCount Number of lanes, at least 1
+     */
+    public KeyOrderedExecutor(String name, int laneCount) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("At least one lane is needed, got " + laneCount);
+        }
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String threadName = name + "-" + (i + 1);
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    task -> new Thread(task, threadName));
+        }
+    }
+
+    /**
+     * Queue a task on the lane of its key.
+     *
+     * @param key Key whose tasks must run in order; {@code null} keys share a lane
+     * @throws java.util.concurrent.RejectedExecutionException after {@link #shutdown(long)}
+     */
+    public void execute(Object key, Runnable task) {
+        lanes[laneOf(key)].execute(task);
+    }
+
+    int laneOf(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        // Spread the high bits, as HashMap does, so keys differing only there do not share a lane
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Tasks waiting on all lanes, not counting those running.
+     */
+    public int getQueuedTaskCount() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Stop taking tasks and wait for the queued ones to finish.
+     *
+     * @return {@code false} if they did not finish in time, or the wait was interrupted; they are interrupted then
+     */
+    public boolean shutdown(long timeoutSeconds) {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        boolean finished = true;
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                finished &= lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            finished = false;
+            Thread.currentThread().interrupt();
+        }
+        if (!finished) {
+            for (ThreadPoolExecutor lane : lanes) {
+                lane.shutdownNow();
+            }
+        }
+        return finished;
+    }
+}
@@ -0,0 +1,42 @@
+package com.busreminder.concurrent;
+
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to Java 21 virtual threads from code compiled for Java 17.
+ * <p>
+ * Virtual-thread execution is opt-in with {@code spring.threads.virtual.enabled=true}, the same switch Spring Boot
+ * uses for Tomcat and the Kafka listener containers. Spring only creates virtual threads when running on Java 21
+ * or later, so callers check {@link #isEnabled(Boolean)} and keep their platform-thread path otherwise.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether the running JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+    }
+
+    /**
+     * Whether virtual threads are requested by configuration and supported by the running JVM.
+     */
+    public static boolean isEnabled(Boolean requested) {
+        return Boolean.TRUE.equals(requested) && isSupported();
+    }
+
+    /**
+     * Create a factory of unstarted virtual threads named {@code namePrefix} followed by a sequence number.
+     *
+     * @throws UnsupportedOperationException when running on a JVM older than Java 21
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        return new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+    }
+}
@@ -1,5 +1,6 @@
 package com.busreminder.config;
 
+import com.busreminder.cache.BusPassengerCache;
 import com.busreminder.model.BusPnr;
 import com.busreminder.model.BusPassenger;
 import com.busreminder.repository.BusPnrRepository;
@@ -23,6 +24,7 @@ public class DataLoader implements CommandLineRunner {
 
     private final BusPnrRepository busPnrRepository;
     private final BusPassengerRepository busPassengerRepository;
+    private final BusPassengerCache busPassengerCache;
     private final Random random = new Random();
 
     // NYC area coordinates for pickup locations
@@ -49,9 +51,11 @@ public class DataLoader implements CommandLineRunner {
         "1st St", "2nd St", "3rd St", "Washington St", "Lincoln Ave", "Oak St", "Elm St"
     );
 
-    public DataLoader(BusPnrRepository busPnrRepository, BusPassengerRepository busPassengerRepository) {
+    public DataLoader(BusPnrRepository busPnrRepository, BusPassengerRepository busPassengerRepository,
+                      BusPassengerCache busPassengerCache) {
         this.busPnrRepository = busPnrRepository;
         this.busPassengerRepository = busPassengerRepository;
+        this.busPassengerCache = busPassengerCache;
     }
 
     @Override
@@ -69,6 +73,9 @@ public class DataLoader implements CommandLineRunner {
             loadBusData(busId);
         }
 
+        // Pings received while loading may have cached an empty or partial manifest
+        busPassengerCache.invalidateAll();
+
         logger.info("Data load completed. Total buses: {}, Total PNRs: {}, Total passengers: {}",
                 busPnrRepository.count() > 0 ? 10 : 0,
                 busPnrRepository.count(),
@@ -1,9 +1,16 @@
 package com.busreminder.config;
 
+import com.busreminder.consumer.BusLocationEventDeserializer;
+import com.busreminder.dto.BusLocationEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaConsumerFactoryCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 
 @Configuration
 public class KafkaConfig {
@@ -11,9 +18,27 @@ public class KafkaConfig {
     @Value("${kafka.topic.bus-location-updates}")
     private String busLocationUpdatesTopic;
 
+    /**
+     * The application's only {@code ObjectMapper}, so Spring MVC writes response bodies and ETA stream events with it
+     * too. {@code java.time} values are written as ISO-8601 strings.
+     */
     @Bean
     public ObjectMapper objectMapper() {
-        return new ObjectMapper();
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Deserialize bus location record values straight from their bytes, instead of through a {@code String}.
+     */
+    @Bean
+    @SuppressWarnings("unchecked")
+    public DefaultKafkaConsumerFactoryCustomizer busLocationDeserializerCustomizer(ObjectMapper objectMapper,
+                                                                                   MeterRegistry meterRegistry) {
+        BusLocationEventDeserializer deserializer = new BusLocationEventDeserializer(objectMapper, meterRegistry);
+        return consumerFactory -> ((DefaultKafkaConsumerFactory<Object, BusLocationEvent>) consumerFactory)
+                .setValueDeserializer(deserializer);
     }
 
     public String getBusLocationUpdatesTopic() {
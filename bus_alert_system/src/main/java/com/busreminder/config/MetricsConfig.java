@@ -0,0 +1,205 @@
+package com.busreminder.config;
+
+import com.busreminder.cache.BusPassengerCache;
+import com.busreminder.cache.EtaCache;
+import com.busreminder.consumer.BusLocationConsumer;
+import com.busreminder.eta.CircuitBreaker;
+import com.busreminder.eta.DistanceMatrixEtaProvider;
+import com.busreminder.ingest.BusLocationIngestor;
+import com.busreminder.model.OutboxStatus;
+import com.busreminder.notification.NotificationDispatcher;
+import com.busreminder.notification.NotificationOutboxRelay;
+import com.busreminder.notification.TwilioRateLimiter;
+import com.busreminder.push.EtaBroadcaster;
+import com.busreminder.trip.TripStateStore;
+import com.busreminder.trip.TripStateWriter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumSet;
+
+/**
+ * Exposes the counters kept by the caches, the Distance Matrix circuit breaker, the Kafka location lanes, the bulk
+ * location ingestor, the ETA streams, the trip states, the notification dispatcher, the notification outbox and the
+ * Twilio rate limiter as Micrometer meters. Kafka consumer metrics, including
+ * {@code kafka_consumer_fetch_manager_records_lag_max}, are bound by Spring Boot's Kafka auto-configuration.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder busPassengerCacheMetrics(BusPassengerCache cache) {
+        return registry -> {
+            FunctionCounter.builder("busreminder.cache.hits", cache, BusPassengerCache::getHitCount)
+                    .description("Cache lookups served from memory")
+                    .tag("cache", "bus_passenger")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.cache.misses", cache, BusPassengerCache::getMissCount)
+                    .description("Cache lookups that had to load or compute the value")
+                    .tag("cache", "bus_passenger")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.cache.evictions", cache, BusPassengerCache::getEvictionCount)
+                    .description("Entries removed from the cache")
+                    .tag("cache", "bus_passenger")
+                    .register(registry);
+            Gauge.builder("busreminder.cache.size", cache, BusPassengerCache::size)
+                    .description("Entries currently in the cache")
+                    .tag("cache", "bus_passenger")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder etaCacheMetrics(EtaCache cache) {
+        return registry -> {
+            FunctionCounter.builder("busreminder.cache.hits", cache, EtaCache::getHitCount)
+                    .description("Cache lookups served from memory")
+                    .tag("cache", "eta")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.cache.misses", cache, EtaCache::getMissCount)
+                    .description("Cache lookups that had to load or compute the value")
+                    .tag("cache", "eta")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.cache.evictions", cache, EtaCache::getEvictionCount)
+                    .description("Entries removed from the cache")
+                    .tag("cache", "eta")
+                    .register(registry);
+            Gauge.builder("busreminder.cache.size", cache, EtaCache::size)
+                    .description("Entries currently in the cache")
+                    .tag("cache", "eta")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder etaCircuitBreakerMetrics(DistanceMatrixEtaProvider provider) {
+        return registry -> {
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                String tag = state.name().toLowerCase();
+                Gauge.builder("busreminder.eta.circuit.state", provider, p -> p.getCircuitState() == state ? 1 : 0)
+                        .description("1 for the current state of the Distance Matrix circuit breaker, 0 otherwise")
+                        .tag("state", tag)
+                        .register(registry);
+                FunctionCounter.builder("busreminder.eta.circuit.transitions", provider,
+                                p -> p.getCircuitTransitionCount(state))
+                        .description("Times the Distance Matrix circuit breaker moved into a state")
+                        .tag("state", tag)
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder locationLaneMetrics(BusLocationConsumer consumer) {
+        return registry -> Gauge.builder("busreminder.location.lanes.queued", consumer,
+                        BusLocationConsumer::getQueuedRecordCount)
+                .description("Kafka location records waiting for their lane")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder locationIngestMetrics(BusLocationIngestor ingestor) {
+        return registry -> Gauge.builder("busreminder.location.ingest.pending.buses", ingestor,
+                        BusLocationIngestor::getPendingBusCount)
+                .description("Buses with a bulk location event waiting to be processed")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder etaStreamMetrics(EtaBroadcaster broadcaster) {
+        return registry -> {
+            Gauge.builder("busreminder.eta.stream.subscribers", broadcaster, EtaBroadcaster::getSubscriberCount)
+                    .description("Open ETA streams")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.eta.stream.events", broadcaster, EtaBroadcaster::getSentCount)
+                    .description("ETA stream events, by whether they were sent or dropped from a full buffer")
+                    .tag("outcome", "sent")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.eta.stream.events", broadcaster, EtaBroadcaster::getDroppedCount)
+                    .description("ETA stream events, by whether they were sent or dropped from a full buffer")
+                    .tag("outcome", "dropped")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder tripStateMetrics(TripStateStore store, TripStateWriter writer) {
+        return registry -> {
+            Gauge.builder("busreminder.trip.state.passengers", store, TripStateStore::size)
+                    .description("Passengers past the pending trip state, across all buses")
+                    .register(registry);
+            Gauge.builder("busreminder.trip.state.pending.writes", writer, TripStateWriter::getPendingCount)
+                    .description("Trip state changes waiting to be written to the database")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.trip.state.writes", writer, TripStateWriter::getWrittenCount)
+                    .description("Trip state changes written to the database")
+                    .tag("outcome", "written")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.trip.state.writes", writer, TripStateWriter::getFailedCount)
+                    .description("Trip state changes written to the database")
+                    .tag("outcome", "failed")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder notificationDispatcherMetrics(NotificationDispatcher dispatcher) {
+        return registry -> {
+            Gauge.builder("busreminder.notification.queue.depth", dispatcher, NotificationDispatcher::getQueueDepth)
+                    .description("Notification batches waiting for a dispatcher worker")
+                    .register(registry);
+            Gauge.builder("busreminder.notification.workers.active", dispatcher, NotificationDispatcher::getActiveCount)
+                    .description("Dispatcher workers currently delivering a batch")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.notification.batches", dispatcher,
+                            NotificationDispatcher::getCompletedCount)
+                    .description("Notification batches handled by the dispatcher")
+                    .tag("outcome", "completed")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.notification.batches", dispatcher,
+                            NotificationDispatcher::getFailedCount)
+                    .description("Notification batches handled by the dispatcher")
+                    .tag("outcome", "failed")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.notification.caller.runs", dispatcher,
+                            NotificationDispatcher::getCallerRunsCount)
+                    .description("Batches delivered on the submitting thread because the queue was full")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder notificationOutboxMetrics(NotificationOutboxRelay relay) {
+        return registry -> {
+            Gauge.builder("busreminder.notification.outbox.in.flight", relay, NotificationOutboxRelay::getInFlightCount)
+                    .description("Outbox entries claimed by this instance and not yet recorded")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.notification.outbox.append.failures", relay,
+                            NotificationOutboxRelay::getAppendFailureCount)
+                    .description("Notification batches delivered without an outbox entry because the INSERT failed")
+                    .register(registry);
+            FunctionCounter.builder("busreminder.notification.outbox.duplicates", relay,
+                            NotificationOutboxRelay::getDuplicateCount)
+                    .description("Outbox entries not delivered because their row already existed")
+                    .register(registry);
+            for (OutboxStatus status : EnumSet.range(OutboxStatus.SENT, OutboxStatus.FAILED)) {
+                FunctionCounter.builder("busreminder.notification.outbox.deliveries", relay,
+                                r -> r.getDeliveryCount(status))
+                        .description("Outbox entries delivered by the relay, by outcome")
+                        .tag("outcome", status.name().toLowerCase())
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder twilioRateLimiterMetrics(TwilioRateLimiter rateLimiter) {
+        return registry -> Gauge.builder("busreminder.twilio.requests.open", rateLimiter,
+                        TwilioRateLimiter::getOpenRequestCount)
+                .description("Twilio requests in progress across the account")
+                .register(registry);
+    }
+}
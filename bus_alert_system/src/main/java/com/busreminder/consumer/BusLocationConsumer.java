@@ -1,57 +1,171 @@
 package com.busreminder.consumer;
 
+import com.busreminder.concurrent.KeyOrderedExecutor;
 import com.busreminder.config.KafkaConfig;
 import com.busreminder.dto.BusLocationEvent;
+import com.busreminder.ingest.LatestLocations;
 import com.busreminder.service.LocationProcessingService;
 import com.busreminder.service.NotificationService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Processes bus locations from the {@code bus-location-updates} topic. Record values arrive decoded by
+ * {@link BusLocationEventDeserializer}; a {@code null} value is a record it could not read, or a tombstone, and is
+ * skipped.
+ * <p>
+ * The listener thread only hands records to {@code kafka.listener.lanes} single-threaded lanes, chosen by bus ID, so
+ * the locations of one bus are processed in order while different buses are processed concurrently, even within
+ * one partition. A record is acknowledged once processed; with {@code spring.kafka.listener.async-acks} the
+ * container commits a partition's offset only up to its lowest record not yet processed, so a restart or rebalance
+ * redelivers whatever the lanes had not finished.
+ */
 @Component
 public class BusLocationConsumer {
 
     private static final Logger logger = LoggerFactory.getLogger(BusLocationConsumer.class);
 
-    private final ObjectMapper objectMapper;
     private final LocationProcessingService locationProcessingService;
     private final NotificationService notificationService;
     private final KafkaConfig kafkaConfig;
+    private final KeyOrderedExecutor lanes;
+    private final long shutdownTimeoutSeconds;
+
+    private final Timer consumeTimer;
+    private final Timer eventAgeTimer;
 
-    public BusLocationConsumer(ObjectMapper objectMapper,
-                               LocationProcessingService locationProcessingService,
+    public BusLocationConsumer(LocationProcessingService locationProcessingService,
                                NotificationService notificationService,
-                               KafkaConfig kafkaConfig) {
-        this.objectMapper = objectMapper;
+                               KafkaConfig kafkaConfig,
+                               MeterRegistry meterRegistry,
+                               @Value("${kafka.listener.lanes:4}") int lanes,
+                               @Value("${kafka.listener.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds) {
         this.locationProcessingService = locationProcessingService;
         this.notificationService = notificationService;
         this.kafkaConfig = kafkaConfig;
+        this.lanes = new KeyOrderedExecutor("location-lane", lanes);
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+
+        this.consumeTimer = Timer.builder("busreminder.location.consume")
+                .description("Time from receiving a bus location to handing its notifications to the dispatcher")
+                .register(meterRegistry);
+        this.eventAgeTimer = Timer.builder("busreminder.location.event.age")
+                .description("Age of a bus location event when it is processed, from its timestamp")
+                .register(meterRegistry);
     }
 
-    @KafkaListener(topics = "${kafka.topic.bus-location-updates}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consume(String message) {
-        try {
-            BusLocationEvent event = objectMapper.readValue(message, BusLocationEvent.class);
-            logger.info("Received bus location event: busId={}, lat={}, lng={}", 
-                    event.getBusId(), event.getLatitude(), event.getLongitude());
+    @KafkaListener(id = "busLocationConsumer",
+            topics = "${kafka.topic.bus-location-updates}", groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{!${kafka.listener.batch-mode:false}}")
+    public void consume(ConsumerRecord<String, BusLocationEvent> record, Acknowledgment acknowledgment) {
+        BusLocationEvent event = record.value();
+        if (event == null) {
+            acknowledgment.acknowledge();
+            return;
+        }
+        lanes.execute(event.getBusId(), () -> {
+            try {
+                process(event);
+            } catch (Exception e) {
+                logger.error("Error processing bus location event for bus {}", event.getBusId(), e);
+            }
+            acknowledgment.acknowledge();
+        });
+    }
 
-            // Process location and get notifications to send
-            var notificationsToSend = locationProcessingService.processBusLocation(
-                    event.getBusId(),
-                    event.getLatitude(),
-                    event.getLongitude()
-            );
+    /**
+     * Batch mode: receive a whole poll, keep only the newest position per bus and process that.
+     * Enabled with {@code kafka.listener.batch-mode=true}; the batch size is bounded by
+     * {@code spring.kafka.consumer.max-poll-records}.
+     */
+    @KafkaListener(id = "busLocationBatchConsumer", batch = "true",
+            topics = "${kafka.topic.bus-location-updates}", groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "${kafka.listener.batch-mode:false}")
+    public void consumeBatch(List<ConsumerRecord<String, BusLocationEvent>> records, Acknowledgment acknowledgment) {
+        Collection<BusLocationEvent> latest = conflate(records);
+        logger.debug("Conflated {} bus location records into {} bus positions", records.size(), latest.size());
 
-            // Send notifications
-            if (!notificationsToSend.isEmpty()) {
-                notificationService.sendNotifications(notificationsToSend);
+        for (BusLocationEvent event : latest) {
+            try {
+                process(event);
+            } catch (Exception e) {
+                logger.error("Error processing bus location event for bus {}", event.getBusId(), e);
             }
+        }
+        acknowledgment.acknowledge();
+    }
+
+    private void process(BusLocationEvent event) {
+        recordEventAge(event);
+        consumeTimer.record(() -> processLocation(event));
+    }
 
-        } catch (Exception e) {
-            logger.error("Error processing bus location event: {}", message, e);
+    private void processLocation(BusLocationEvent event) {
+        logger.info("Received bus location event: busId={}, lat={}, lng={}", 
+                event.getBusId(), event.getLatitude(), event.getLongitude());
+
+        // Process location and get notifications to send
+        var notificationsToSend = locationProcessingService.processBusLocation(
+                event.getBusId(),
+                event.getLatitude(),
+                event.getLongitude()
+        );
+
+        // Send notifications
+        if (!notificationsToSend.isEmpty()) {
+            notificationService.sendNotifications(notificationsToSend);
         }
     }
-}
 
+    private void recordEventAge(BusLocationEvent event) {
+        Instant timestamp = LatestLocations.timestampOf(event);
+        if (timestamp != null) {
+            Duration age = Duration.between(timestamp, Instant.now());
+            if (!age.isNegative()) {
+                eventAgeTimer.record(age);
+            }
+        }
+    }
+
+    /**
+     * Keep the newest event per bus by timestamp. Records without a parseable timestamp
+     * are ordered by their position in the batch.
+     */
+    private Collection<BusLocationEvent> conflate(List<ConsumerRecord<String, BusLocationEvent>> records) {
+        LatestLocations latest = new LatestLocations();
+        for (ConsumerRecord<String, BusLocationEvent> record : records) {
+            if (record.value() != null) {
+                latest.offer(record.value());
+            }
+        }
+        return latest.values();
+    }
+
+    /**
+     * Records handed to the lanes and not yet being processed.
+     */
+    public int getQueuedRecordCount() {
+        return lanes.getQueuedTaskCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The containers have stopped by now; records not processed in time are redelivered after the restart
+        if (!lanes.shutdown(shutdownTimeoutSeconds)) {
+            logger.warn("Bus location lanes did not finish within {}s", shutdownTimeoutSeconds);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.busreminder.consumer;
+
+import com.busreminder.dto.BusLocationEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka deserializer of bus location record values.
+ * <p>
+ * Records in the {@link BusLocationBinaryCodec} encoding, told apart by their first byte, are decoded by it. JSON
+ * records are decoded from their bytes by {@link BusLocationJsonDecoder}; those it does not decode are read by
+ * Jackson. A record that cannot be read is logged and deserialized to {@code null}, which the listener skips, so a
+ * malformed record never stops the partition. Shared by all consumers of the factory, so it keeps no state per
+ * record.
+ */
+public class BusLocationEventDeserializer implements Deserializer<BusLocationEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusLocationEventDeserializer.class);
+
+    private final ObjectReader eventReader;
+
+    private final Counter binaryRecords;
+    private final Counter decodedRecords;
+    private final Counter jacksonRecords;
+    private final Counter failedRecords;
+
+    public BusLocationEventDeserializer(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.eventReader = objectMapper.readerFor(BusLocationEvent.class);
+        this.binaryRecords = recordCounter(meterRegistry, "binary");
+        this.decodedRecords = recordCounter(meterRegistry, "decoded");
+        this.jacksonRecords = recordCounter(meterRegistry, "jackson");
+        this.failedRecords = recordCounter(meterRegistry, "failed");
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String decoder) {
+        return Counter.builder("busreminder.location.deserialize")
+                .description("Bus location records deserialized from Kafka, by how they were read")
+                .tag("decoder", decoder)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public BusLocationEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (BusLocationBinaryCodec.isBinary(data)) {
+            return decodeBinary(data);
+        }
+        BusLocationEvent event = BusLocationJsonDecoder.decode(data);
+        if (event != null) {
+            decodedRecords.increment();
+            return event;
+        }
+        try {
+            event = eventReader.readValue(data);
+            jacksonRecords.increment();
+            return event;
+        } catch (IOException e) {
+            failedRecords.increment();
+            logger.error("Error deserializing bus location event: {}", new String(data, StandardCharsets.UTF_8), e);
+            return null;
+        }
+    }
+
+    private BusLocationEvent decodeBinary(byte[] data) {
+        BusLocationEvent event = BusLocationBinaryCodec.decode(data);
+        if (event == null) {
+            failedRecords.increment();
+            logger.error("Error deserializing binary bus location event: version {}, {} bytes",
+                    data.length > 1 ? data[1] : "missing", data.length);
+            return null;
+        }
+        binaryRecords.increment();
+        return event;
+    }
+}
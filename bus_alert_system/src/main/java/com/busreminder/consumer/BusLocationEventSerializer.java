@@ -0,0 +1,17 @@
+package com.busreminder.consumer;
+
+import com.busreminder.dto.BusLocationEvent;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka serializer for producers of bus location records that want the compact {@link BusLocationBinaryCodec}
+ * encoding instead of JSON. Set it as the producer's {@code value.serializer}; the consumer tells the encodings
+ * apart per record, so binary and JSON producers can share the topic.
+ */
+public class BusLocationEventSerializer implements Serializer<BusLocationEvent> {
+
+    @Override
+    public byte[] serialize(String topic, BusLocationEvent event) {
+        return event != null ? BusLocationBinaryCodec.encode(event) : null;
+    }
+}
@@ -0,0 +1,345 @@
+package com.busreminder.consumer;
+
+import com.busreminder.dto.BusLocationEvent;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a bus location event straight from the UTF-8 bytes of a Kafka record, in one pass and without building
+ * an intermediate {@code String} of the record or a token stream.
+ * <p>
+ * Only the shape producers send is decoded: a JSON object of {@code bus_id}, {@code latitude}, {@code longitude}
+ * and {@code timestamp} with ASCII strings and plain numbers. Anything else, such as an unknown field, an escaped
+ * string, a quoted number or a record that is not JSON, is left to Jackson by returning {@code null}, so every
+ * event decoded here is the one Jackson would produce. Coordinates are decoded to the closest {@code double}, like
+ * {@link Double#parseDouble}. A timestamp of the form {@code yyyy-MM-ddTHH:mm[:ss[.fraction]]} with a {@code Z} or
+ * {@code ±HH:MM} offset is also decoded to epoch milliseconds, so it is not parsed again downstream.
+ */
+public final class BusLocationJsonDecoder {
+
+    private static final byte[] BUS_ID = "bus_id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LATITUDE = "latitude".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LONGITUDE = "longitude".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    // Integers up to 2^53 and powers of ten up to 10^22 are exact doubles, so their quotient is correctly rounded
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private final byte[] data;
+    private int position;
+
+    private BusLocationJsonDecoder(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Decode a record value.
+     *
+     * @return The event, or {@code null} if the value is not in the shape decoded here and Jackson has to decide
+     */
+    public static BusLocationEvent decode(byte[] data) {
+        return new BusLocationJsonDecoder(data).decodeObject();
+    }
+
+    private BusLocationEvent decodeObject() {
+        skipWhitespace();
+        if (!consume('{')) {
+            return null;
+        }
+        BusLocationEvent event = new BusLocationEvent();
+        skipWhitespace();
+        if (!consume('}')) {
+            do {
+                skipWhitespace();
+                if (!decodeField(event)) {
+                    return null;
+                }
+                skipWhitespace();
+            } while (consume(','));
+            if (!consume('}')) {
+                return null;
+            }
+        }
+        skipWhitespace();
+        return position == data.length ? event : null;
+    }
+
+    private boolean decodeField(BusLocationEvent event) {
+        int keyStart = position + 1;
+        int keyEnd = scanString();
+        if (keyEnd < 0) {
+            return false;
+        }
+        skipWhitespace();
+        if (!consume(':')) {
+            return false;
+        }
+        skipWhitespace();
+        boolean isNull = matches(NULL, position, position + NULL.length);
+        if (isNull) {
+            position += NULL.length;
+        }
+
+        if (matches(BUS_ID, keyStart, keyEnd)) {
+            String busId = isNull ? null : decodeString();
+            event.setBusId(busId);
+            return isNull || busId != null;
+        } else if (matches(LATITUDE, keyStart, keyEnd)) {
+            Double latitude = isNull ? null : decodeNumber();
+            event.setLatitude(latitude);
+            return isNull || latitude != null;
+        } else if (matches(LONGITUDE, keyStart, keyEnd)) {
+            Double longitude = isNull ? null : decodeNumber();
+            event.setLongitude(longitude);
+            return isNull || longitude != null;
+        } else if (matches(TIMESTAMP, keyStart, keyEnd)) {
+            if (isNull) {
+                event.setTimestamp(null);
+                event.setTimestampMillis(null);
+                return true;
+            }
+            int start = position + 1;
+            int end = scanString();
+            if (end < 0) {
+                return false;
+            }
+            event.setTimestamp(new String(data, start, end - start, StandardCharsets.UTF_8));
+            long millis = parseEpochMillis(start, end);
+            event.setTimestampMillis(millis != Long.MIN_VALUE ? millis : null);
+            return true;
+        }
+        return false;
+    }
+
+    private String decodeString() {
+        int start = position + 1;
+        int end = scanString();
+        return end < 0 ? null : new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Move past an ASCII string without escapes.
+     *
+     * @return The position of the closing quote, or -1 if there is no such string here
+     */
+    private int scanString() {
+        if (!consume('"')) {
+            return -1;
+        }
+        while (position < data.length) {
+            byte b = data[position];
+            if (b == '"') {
+                return position++;
+            }
+            // Escapes, control characters and non-ASCII text are left to Jackson
+            if (b == '\\' || b < 0x20) {
+                return -1;
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    /**
+     * Decode a JSON number.
+     *
+     * @return The closest double, or {@code null} if there is no valid JSON number here
+     */
+    private Double decodeNumber() {
+        int start = position;
+        boolean negative = consume('-');
+        int integerStart = position;
+        long mantissa = 0;
+        int digits = 0;
+        while (position < data.length && isDigit(data[position])) {
+            mantissa = accumulate(mantissa, digits++);
+            position++;
+        }
+        int integerDigits = position - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && data[integerStart] == '0')) {
+            return null;
+        }
+        int fractionDigits = 0;
+        boolean fraction = consume('.');
+        if (fraction) {
+            while (position < data.length && isDigit(data[position])) {
+                mantissa = accumulate(mantissa, digits++);
+                fractionDigits++;
+                position++;
+            }
+            if (fractionDigits == 0) {
+                return null;
+            }
+        }
+        boolean exponent = position < data.length && (data[position] == 'e' || data[position] == 'E');
+        if (exponent) {
+            position++;
+            if (!consume('+')) {
+                consume('-');
+            }
+            int exponentStart = position;
+            while (position < data.length && isDigit(data[position])) {
+                position++;
+            }
+            if (position == exponentStart) {
+                return null;
+            }
+        }
+
+        if (!exponent && digits <= 18 && mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+            if (!fraction) {
+                // An integer, converted like Jackson does: -0 is 0.0
+                return (double) (negative ? -mantissa : mantissa);
+            }
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        // Rare: too many digits or an exponent for the exact fast path
+        return Double.parseDouble(new String(data, start, position - start, StandardCharsets.US_ASCII));
+    }
+
+    private long accumulate(long mantissa, int digitsSoFar) {
+        // Beyond 18 digits the mantissa could overflow; the slow path decodes such numbers
+        return digitsSoFar < 18 ? mantissa * 10 + (data[position] - '0') : mantissa;
+    }
+
+    /**
+     * Parse {@code yyyy-MM-ddTHH:mm[:ss[.fraction]]} followed by {@code Z} or {@code ±HH:MM}, within {@code [start, end)}.
+     *
+     * @return Epoch milliseconds, or {@link Long#MIN_VALUE} if the timestamp has another form or is not a valid time
+     */
+    private long parseEpochMillis(int start, int end) {
+        int length = end - start;
+        if (length < 17 || data[start + 4] != '-' || data[start + 7] != '-' || data[start + 10] != 'T'
+                || data[start + 13] != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        int hour = digits(start + 11, 2);
+        int minute = digits(start + 14, 2);
+        int second = 0;
+        long nanos = 0;
+        int i = start + 16;
+        if (i < end && data[i] == ':') {
+            second = digits(i + 1, 2);
+            i += 3;
+            if (i < end && data[i] == '.') {
+                int fractionStart = ++i;
+                while (i < end && isDigit(data[i]) && i - fractionStart < 9) {
+                    nanos = nanos * 10 + (data[i++] - '0');
+                }
+                int fractionDigits = i - fractionStart;
+                if (fractionDigits == 0) {
+                    return Long.MIN_VALUE;
+                }
+                for (int d = fractionDigits; d < 9; d++) {
+                    nanos *= 10;
+                }
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+
+        int offsetSeconds;
+        if (i == end - 1 && data[i] == 'Z') {
+            offsetSeconds = 0;
+        } else if (i == end - 6 && (data[i] == '+' || data[i] == '-') && data[i + 3] == ':') {
+            int offsetHours = digits(i + 1, 2);
+            int offsetMinutes = digits(i + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59
+                    || offsetHours * 60 + offsetMinutes > 18 * 60) {
+                return Long.MIN_VALUE;
+            }
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (data[i] == '-' ? -1 : 1);
+        } else {
+            return Long.MIN_VALUE;
+        }
+
+        long epochSeconds = epochDay(year, month, day) * 86_400L + hour * 3600L + minute * 60L + second
+                - offsetSeconds;
+        return epochSeconds * 1000 + nanos / 1_000_000;
+    }
+
+    /**
+     * Read a fixed number of decimal digits.
+     *
+     * @return The value, or -1 if any of the bytes is not a digit
+     */
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            if (i >= data.length || !isDigit(data[i])) {
+                return -1;
+            }
+            value = value * 10 + (data[i] - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return month == 2 && leap ? 29 : DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date.
+     */
+    private static long epochDay(int year, int month, int day) {
+        // Count years from March, so the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    private boolean matches(byte[] expected, int from, int to) {
+        if (to - from != expected.length || to > data.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (data[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consume(char expected) {
+        if (position < data.length && data[position] == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (position < data.length) {
+            byte b = data[position];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
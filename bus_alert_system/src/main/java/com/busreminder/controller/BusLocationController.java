@@ -1,19 +1,25 @@
 package com.busreminder.controller;
 
 import com.busreminder.dto.BusLocationEvent;
+import com.busreminder.dto.IngestResult;
+import com.busreminder.ingest.BusLocationIngestor;
 import com.busreminder.service.LocationProcessingService;
 import com.busreminder.service.NotificationService;
+import com.busreminder.service.PassengerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,11 +32,17 @@ public class BusLocationController {
 
     private final LocationProcessingService locationProcessingService;
     private final NotificationService notificationService;
+    private final PassengerService passengerService;
+    private final BusLocationIngestor busLocationIngestor;
 
     public BusLocationController(LocationProcessingService locationProcessingService,
-                                 NotificationService notificationService) {
+                                 NotificationService notificationService,
+                                 PassengerService passengerService,
+                                 BusLocationIngestor busLocationIngestor) {
         this.locationProcessingService = locationProcessingService;
         this.notificationService = notificationService;
+        this.passengerService = passengerService;
+        this.busLocationIngestor = busLocationIngestor;
     }
 
     @Operation(
@@ -83,6 +95,93 @@ public class BusLocationController {
         }
     }
 
+    @Operation(
+        summary = "Update many bus locations",
+        description = "Receives a batch of bus location updates as NDJSON or a JSON array, keeps the newest per bus "
+                + "and processes them asynchronously; the response accounts for every event of the batch"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "202",
+            description = "Batch accepted; received, accepted, conflated, invalid and rejected count its events",
+            content = @Content(schema = @Schema(implementation = Map.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Batch is not well-formed; none of it was processed",
+            content = @Content(schema = @Schema(implementation = Map.class))
+        ),
+        @ApiResponse(
+            responseCode = "500",
+            description = "Internal server error",
+            content = @Content(schema = @Schema(implementation = Map.class))
+        )
+    })
+    @PostMapping(value = "/bulk", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Map<String, Object>> bulkUpdateBusLocations(InputStream body) {
+        try {
+            IngestResult result = busLocationIngestor.ingest(body);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "accepted");
+            response.put("received", result.received());
+            response.put("accepted", result.accepted());
+            response.put("conflated", result.conflated());
+            response.put("invalid", result.invalid());
+            response.put("rejected", result.rejected());
+            return ResponseEntity.accepted().body(response);
+        } catch (JsonProcessingException e) {
+            logger.warn("Rejected malformed bulk bus location batch: {}", e.getOriginalMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getOriginalMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("Error processing bulk bus location batch: {}", e.getMessage(), e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @Operation(
+        summary = "Record a pickup",
+        description = "Marks a passenger as picked up by the bus, so no notification is sent to them any more"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Pickup recorded; pickedUp is false if it had already been recorded",
+            content = @Content(schema = @Schema(implementation = Map.class))
+        ),
+        @ApiResponse(
+            responseCode = "500",
+            description = "Internal server error",
+            content = @Content(schema = @Schema(implementation = Map.class))
+        )
+    })
+    @PostMapping("/{busId}/pickups/{passengerId}")
+    public ResponseEntity<Map<String, Object>> recordPickup(@PathVariable String busId,
+                                                            @PathVariable String passengerId) {
+        try {
+            boolean pickedUp = passengerService.markPickedUp(busId, passengerId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("busId", busId);
+            response.put("passengerId", passengerId);
+            response.put("pickedUp", pickedUp);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error recording pickup of {} on bus {}: {}", passengerId, busId, e.getMessage(), e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     @Operation(
         summary = "Health check",
         description = "Returns the health status of the service"
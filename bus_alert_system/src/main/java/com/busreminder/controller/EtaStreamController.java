@@ -0,0 +1,102 @@
+package com.busreminder.controller;
+
+import com.busreminder.push.EtaBroadcaster;
+import com.busreminder.push.EtaSink;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+@RestController
+@RequestMapping("/api/eta")
+@Tag(name = "ETA Stream", description = "Server-Sent Events streams of ETAs, pushed as bus locations are processed")
+public class EtaStreamController {
+
+    private static final Logger logger = LoggerFactory.getLogger(EtaStreamController.class);
+
+    @Value("${eta.stream.timeout-millis:1800000}")
+    private Long timeoutMillis;
+
+    private final EtaBroadcaster etaBroadcaster;
+
+    public EtaStreamController(EtaBroadcaster etaBroadcaster) {
+        this.etaBroadcaster = etaBroadcaster;
+    }
+
+    @Operation(
+        summary = "Stream a bus's ETAs",
+        description = "Opens a Server-Sent Events stream with one \"etas\" event per processed location of the bus, "
+                + "holding the ETA to each pickup point evaluated for that location"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream opened"),
+        @ApiResponse(responseCode = "503", description = "Too many ETA streams are open")
+    })
+    @GetMapping(value = "/buses/{busId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBusEtas(@PathVariable String busId) {
+        return openStream(sink -> etaBroadcaster.subscribeToBus(busId, sink));
+    }
+
+    @Operation(
+        summary = "Stream a passenger's ETA",
+        description = "Opens a Server-Sent Events stream with one \"eta\" event each time the ETA of the passenger's "
+                + "bus to their pickup point is evaluated"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream opened"),
+        @ApiResponse(responseCode = "503", description = "Too many ETA streams are open")
+    })
+    @GetMapping(value = "/passengers/{passengerId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamPassengerEta(@PathVariable String passengerId) {
+        return openStream(sink -> etaBroadcaster.subscribeToPassenger(passengerId, sink));
+    }
+
+    private ResponseEntity<SseEmitter> openStream(Function<EtaSink, EtaBroadcaster.Subscription> subscribe) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        EtaBroadcaster.Subscription subscription = subscribe.apply(new EmitterSink(emitter));
+        if (subscription == null) {
+            logger.warn("Refused ETA stream: {} streams are open", etaBroadcaster.getSubscriberCount());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(() -> {
+            subscription.cancel();
+            emitter.complete();
+        });
+        emitter.onError(e -> subscription.cancel());
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Writes events to the response as JSON.
+     */
+    private static final class EmitterSink implements EtaSink {
+
+        private final SseEmitter emitter;
+
+        private EmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(String eventName, Object data) throws IOException {
+            emitter.send(SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void complete() {
+            emitter.complete();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.busreminder.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 
@@ -22,6 +23,10 @@ public class BusLocationEvent {
     @Schema(description = "Event timestamp in ISO 8601 format", example = "2024-01-15T10:30:00Z")
     private String timestamp;
 
+    // Timestamp as epoch milliseconds, when it was decoded along with the event
+    @JsonIgnore
+    private Long timestampMillis;
+
     // Getters and Setters
     public String getBusId() {
         return busId;
@@ -54,5 +59,13 @@ public class BusLocationEvent {
     public void setTimestamp(String timestamp) {
         this.timestamp = timestamp;
     }
+
+    public Long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public void setTimestampMillis(Long timestampMillis) {
+        this.timestampMillis = timestampMillis;
+    }
 }
 
@@ -0,0 +1,14 @@
+package com.busreminder.dto;
+
+import java.time.Instant;
+
+/**
+ * ETA of a bus to one passenger's pickup point, as pushed to ETA stream subscribers.
+ *
+ * @param busId Bus the ETA was computed for
+ * @param passengerId Passenger whose pickup point the ETA is to
+ * @param estimatedMinutes Minutes until the bus reaches the pickup point
+ * @param computedAt When the bus location the ETA is based on was processed
+ */
+public record EtaUpdate(String busId, String passengerId, long estimatedMinutes, Instant computedAt) {
+}
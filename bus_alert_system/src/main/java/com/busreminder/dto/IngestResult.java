@@ -0,0 +1,13 @@
+package com.busreminder.dto;
+
+/**
+ * What became of the events of one bulk batch.
+ *
+ * @param received Events in the batch
+ * @param accepted Buses queued for processing, one per bus with a valid event
+ * @param conflated Events dropped because the batch held a newer event of the same bus
+ * @param invalid Events without a bus ID or coordinates
+ * @param rejected Buses not queued because too many buses were waiting already
+ */
+public record IngestResult(int received, int accepted, int conflated, int invalid, int rejected) {
+}
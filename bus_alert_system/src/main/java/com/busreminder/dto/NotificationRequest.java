@@ -3,6 +3,7 @@ package com.busreminder.dto;
 import java.math.BigDecimal;
 
 public class NotificationRequest {
+    private String busId;
     private String passengerId;
     private String passengerName;
     private String passengerPhone;
@@ -12,6 +13,14 @@ public class NotificationRequest {
     private Long estimatedMinutes;
 
     // Getters and Setters
+    public String getBusId() {
+        return busId;
+    }
+
+    public void setBusId(String busId) {
+        this.busId = busId;
+    }
+
     public String getPassengerId() {
         return passengerId;
     }
@@ -0,0 +1,16 @@
+package com.busreminder.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only projection of an unnotified passenger with the fields needed to compute an ETA and send a notification.
+ * Built directly by the repository query, so no managed {@code BusPassenger} entity is created.
+ */
+public record PassengerPickup(
+        String passengerId,
+        String passengerName,
+        String passengerPhone,
+        BigDecimal pickupLatitude,
+        BigDecimal pickupLongitude,
+        String pickupAddress) {
+}
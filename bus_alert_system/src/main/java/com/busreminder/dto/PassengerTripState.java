@@ -0,0 +1,12 @@
+package com.busreminder.dto;
+
+import com.busreminder.model.TripState;
+
+/**
+ * Read-only projection of the trip state of a passenger on a bus, used to rebuild the in-memory trip states on startup.
+ */
+public record PassengerTripState(
+        String busId,
+        String passengerId,
+        TripState tripState) {
+}
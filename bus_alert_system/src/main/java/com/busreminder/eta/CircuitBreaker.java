@@ -0,0 +1,169 @@
+package com.busreminder.eta;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker over the outcomes of the last {@code windowSize} calls.
+ * <p>
+ * While {@code CLOSED} every call is permitted. Once at least {@code minimumCalls} outcomes are in the window and
+ * the share of failed calls reaches {@code failureRateThreshold} percent, or the share of calls that took
+ * {@code slowCallNanos} or longer reaches {@code slowCallRateThreshold} percent, the breaker opens and permits no
+ * call for {@code openNanos}. It then turns {@code HALF_OPEN} and permits {@code halfOpenProbes} calls: if all of
+ * them succeed in time it closes with an empty window, otherwise it opens again. Outcomes arriving while it is
+ * open are of calls permitted before it opened and are ignored.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Outcomes of the last calls, as a ring
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failedCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int probesPermitted;
+    private int probesSucceeded;
+    private final long[] transitions = new long[State.values().length];
+
+    /**
+     * @param name Name used in log messages
+     * @param failureRateThreshold Percentage of failed calls in the window that opens the breaker
+     * @param slowCallRateThreshold Percentage of slow calls in the window that opens the breaker
+     * @param slowCallNanos Duration from which a call counts as slow
+     * @param windowSize Number of most recent calls the rates are worked out over
+     * @param minimumCalls Calls in the window before the breaker can open
+     * @param openNanos How long the breaker stays open before probing
+     * @param halfOpenProbes Calls permitted while half-open, all of which must succeed to close
+     */
+    public CircuitBreaker(String name, int failureRateThreshold, int slowCallRateThreshold, long slowCallNanos,
+                          int windowSize, int minimumCalls, long openNanos, int halfOpenProbes) {
+        if (windowSize <= 0 || halfOpenProbes <= 0) {
+            throw new IllegalArgumentException("Window size and half-open probes must be positive");
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.minimumCalls = Math.min(Math.max(1, minimumCalls), windowSize);
+        this.openNanos = openNanos;
+        this.halfOpenProbes = halfOpenProbes;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    /**
+     * Ask to make a call; every permitted call must be followed by {@link #record}.
+     *
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @return {@code true} if the call may be made
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        if (state == State.OPEN && nowNanos - openedAtNanos >= openNanos) {
+            transitionTo(State.HALF_OPEN);
+            probesPermitted = 0;
+            probesSucceeded = 0;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (probesPermitted < halfOpenProbes) {
+                    probesPermitted++;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call.
+     *
+     * @param durationNanos How long the call took
+     * @param success Whether the call succeeded
+     * @param nowNanos Current {@link System#nanoTime()}
+     */
+    public synchronized void record(long durationNanos, boolean success, long nowNanos) {
+        boolean slowCall = durationNanos >= slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            if (!success || slowCall) {
+                open(nowNanos);
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                clearWindow();
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (recorded == failed.length) {
+            failedCount -= failed[next] ? 1 : 0;
+            slowCount -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = !success;
+        slow[next] = slowCall;
+        failedCount += success ? 0 : 1;
+        slowCount += slowCall ? 1 : 0;
+        next = (next + 1) % failed.length;
+
+        if (recorded >= minimumCalls && (failedCount * 100 >= failureRateThreshold * recorded
+                || slowCount * 100 >= slowCallRateThreshold * recorded)) {
+            logger.warn("Circuit breaker {} opened: {} failed and {} slow of the last {} calls",
+                    name, failedCount, slowCount, recorded);
+            open(nowNanos);
+        }
+    }
+
+    private void open(long nowNanos) {
+        openedAtNanos = nowNanos;
+        clearWindow();
+        transitionTo(State.OPEN);
+    }
+
+    private void clearWindow() {
+        next = 0;
+        recorded = 0;
+        failedCount = 0;
+        slowCount = 0;
+    }
+
+    private void transitionTo(State to) {
+        logger.info("Circuit breaker {}: {} -> {}", name, state, to);
+        state = to;
+        transitions[to.ordinal()]++;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Number of times the breaker has moved into the given state.
+     */
+    public synchronized long getTransitionCount(State to) {
+        return transitions[to.ordinal()];
+    }
+}
@@ -0,0 +1,384 @@
+package com.busreminder.eta;
+
+import com.busreminder.cache.EtaCache;
+import com.busreminder.concurrent.VirtualThreads;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Road ETAs from the Google Maps Distance Matrix API.
+ * <p>
+ * Destinations already in the {@link EtaCache} are served from it; the rest are sent to the API in chunks of
+ * {@link #MAX_DESTINATIONS_PER_REQUEST}. Any destination the API does not answer for gets a Haversine ETA.
+ * A {@link CircuitBreaker} stops requests while the API keeps failing or answering slowly, so that during an
+ * outage every destination gets a Haversine ETA straight away instead of after the ping deadline.
+ * The provider is only available when {@code google.maps.api.key} is set.
+ */
+@Component
+public class DistanceMatrixEtaProvider implements EtaProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanceMatrixEtaProvider.class);
+
+    public static final String NAME = "google";
+
+    /** Distance Matrix API limit on destinations per request (and 25 x 1 elements stays under the 100 element cap). */
+    private static final int MAX_DESTINATIONS_PER_REQUEST = 25;
+
+    @Value("${google.maps.api.key:}")
+    private String googleMapsApiKey;
+
+    @Value("${google.maps.api.url:https://maps.googleapis.com/maps/api/distancematrix/json}")
+    private String googleMapsApiUrl;
+
+    @Value("${eta.google.max-concurrent-requests:64}")
+    private Integer maxConcurrentRequests;
+
+    @Value("${eta.google.max-concurrent-requests-per-bus:4}")
+    private Integer maxConcurrentRequestsPerBus;
+
+    @Value("${eta.google.ping-deadline-millis:3000}")
+    private Long pingDeadlineMillis;
+
+    @Value("${eta.google.circuit.failure-rate-threshold:50}")
+    private Integer circuitFailureRateThreshold;
+
+    @Value("${eta.google.circuit.slow-call-rate-threshold:50}")
+    private Integer circuitSlowCallRateThreshold;
+
+    @Value("${eta.google.circuit.slow-call-millis:2000}")
+    private Long circuitSlowCallMillis;
+
+    @Value("${eta.google.circuit.window-size:20}")
+    private Integer circuitWindowSize;
+
+    @Value("${eta.google.circuit.minimum-calls:10}")
+    private Integer circuitMinimumCalls;
+
+    @Value("${eta.google.circuit.open-millis:30000}")
+    private Long circuitOpenMillis;
+
+    @Value("${eta.google.circuit.half-open-probes:3}")
+    private Integer circuitHalfOpenProbes;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private Boolean virtualThreads;
+
+    private HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final EtaCache etaCache;
+    private final HaversineEtaProvider haversine;
+
+    private final Timer successTimer;
+    private final Timer errorTimer;
+    private final Counter deadlineFallbacks;
+    private final Counter concurrencyLimitFallbacks;
+    private final Counter circuitOpenFallbacks;
+
+    // Distance Matrix requests in flight across all pings
+    private Semaphore requestPermits;
+    private CircuitBreaker circuitBreaker;
+
+    public DistanceMatrixEtaProvider(ObjectMapper objectMapper, EtaCache etaCache, HaversineEtaProvider haversine,
+                                     MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.etaCache = etaCache;
+        this.haversine = haversine;
+
+        this.successTimer = EtaMetrics.latencyTimer(meterRegistry, NAME, "success");
+        this.errorTimer = EtaMetrics.latencyTimer(meterRegistry, NAME, "error");
+        this.deadlineFallbacks = fallbackCounter(meterRegistry, "deadline");
+        this.concurrencyLimitFallbacks = fallbackCounter(meterRegistry, "concurrency_limit");
+        this.circuitOpenFallbacks = fallbackCounter(meterRegistry, "circuit_open");
+    }
+
+    @PostConstruct
+    public void init() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10));
+        if (VirtualThreads.isEnabled(virtualThreads)) {
+            // Responses of the asynchronous Distance Matrix requests are handled on virtual threads
+            ThreadFactory threadFactory = VirtualThreads.factory("eta-");
+            builder.executor(task -> threadFactory.newThread(task).start());
+        }
+        this.httpClient = builder.build();
+        this.requestPermits = new Semaphore(maxConcurrentRequests);
+        this.circuitBreaker = new CircuitBreaker(NAME, circuitFailureRateThreshold, circuitSlowCallRateThreshold,
+                TimeUnit.MILLISECONDS.toNanos(circuitSlowCallMillis), circuitWindowSize, circuitMinimumCalls,
+                TimeUnit.MILLISECONDS.toNanos(circuitOpenMillis), circuitHalfOpenProbes);
+    }
+
+    private static Counter fallbackCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("busreminder.eta.fallback")
+                .description("Distance Matrix requests not made or not awaited, whose destinations got Haversine ETAs")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return googleMapsApiKey != null && !googleMapsApiKey.isEmpty();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Number of times the circuit breaker has moved into the given state.
+     */
+    public long getCircuitTransitionCount(CircuitBreaker.State to) {
+        return circuitBreaker.getTransitionCount(to);
+    }
+
+    @Override
+    public long[] estimateMinutes(double originLat, double originLng, double[] destLats, double[] destLngs) {
+        long[] etas = new long[destLats.length];
+        int[] uncached = new int[etas.length];
+        int uncachedCount = 0;
+        for (int i = 0; i < etas.length; i++) {
+            long cached = etaCache.get(originLat, originLng, destLats[i], destLngs[i]);
+            if (cached == EtaCache.MISS) {
+                uncached[uncachedCount++] = i;
+            } else {
+                etas[i] = cached;
+            }
+        }
+
+        if (uncachedCount > 0) {
+            requestETAs(originLat, originLng, destLats, destLngs, uncached, uncachedCount, etas);
+        }
+        return etas;
+    }
+
+    /**
+     * Fill {@code etas} for the destinations at {@code indexes[0..count)} from Distance Matrix requests.
+     * <p>
+     * Requests are sent asynchronously, at most {@code maxConcurrentRequestsPerBus} at a time for this ping,
+     * and the ping waits for them no longer than {@code pingDeadlineMillis}, so it costs about one round-trip
+     * instead of one per request. Destinations whose request failed, missed the deadline, found the
+     * service-wide limit of {@code maxConcurrentRequests} reached or found the circuit breaker open fall back to
+     * Haversine, as does any single destination the API could not route.
+     */
+    private void requestETAs(double originLat, double originLng, double[] destLats, double[] destLngs,
+                             int[] indexes, int count, long[] etas) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pingDeadlineMillis);
+        int chunkCount = (count + MAX_DESTINATIONS_PER_REQUEST - 1) / MAX_DESTINATIONS_PER_REQUEST;
+        int lanes = Math.max(1, Math.min(maxConcurrentRequestsPerBus, chunkCount));
+
+        // Each lane sends its chunks one after another and the lanes run side by side
+        List<CompletableFuture<long[]>> chunks = new ArrayList<>(chunkCount);
+        List<CompletableFuture<?>> laneTails = new ArrayList<>(lanes);
+        for (int lane = 0; lane < lanes; lane++) {
+            laneTails.add(CompletableFuture.completedFuture(null));
+        }
+        for (int c = 0; c < chunkCount; c++) {
+            int from = c * MAX_DESTINATIONS_PER_REQUEST;
+            int to = Math.min(from + MAX_DESTINATIONS_PER_REQUEST, count);
+            CompletableFuture<long[]> chunk = laneTails.get(c % lanes).thenCompose(previous ->
+                    requestChunk(originLat, originLng, destLats, destLngs, indexes, from, to));
+            laneTails.set(c % lanes, chunk);
+            chunks.add(chunk);
+        }
+        awaitUntil(CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])), deadline);
+
+        int[] fallback = new int[count];
+        int fallbackCount = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            CompletableFuture<long[]> chunk = chunks.get(c);
+            if (!chunk.isDone()) {
+                // Late responses are still cached; requests not yet sent are dropped
+                chunk.cancel(false);
+                deadlineFallbacks.increment();
+            }
+            long[] chunkEtas = chunk.isDone() && !chunk.isCompletedExceptionally() ? chunk.join() : null;
+
+            int from = c * MAX_DESTINATIONS_PER_REQUEST;
+            int to = Math.min(from + MAX_DESTINATIONS_PER_REQUEST, count);
+            for (int k = from; k < to; k++) {
+                if (chunkEtas != null && chunkEtas[k - from] != EtaCache.MISS) {
+                    etas[indexes[k]] = chunkEtas[k - from];
+                } else {
+                    fallback[fallbackCount++] = indexes[k];
+                }
+            }
+        }
+
+        if (fallbackCount > 0) {
+            logger.debug("Falling back to Haversine formula for {} ETAs", fallbackCount);
+            double[] fallbackLats = new double[fallbackCount];
+            double[] fallbackLngs = new double[fallbackCount];
+            for (int k = 0; k < fallbackCount; k++) {
+                fallbackLats[k] = destLats[fallback[k]];
+                fallbackLngs[k] = destLngs[fallback[k]];
+            }
+            long[] fallbackEtas = haversine.estimateMinutes(originLat, originLng, fallbackLats, fallbackLngs);
+            for (int k = 0; k < fallbackCount; k++) {
+                etas[fallback[k]] = fallbackEtas[k];
+            }
+        }
+    }
+
+    private static void awaitUntil(CompletableFuture<?> future, long deadline) {
+        try {
+            future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Google Maps API did not answer within the ping deadline, using Haversine for the rest");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Chunks never complete exceptionally; anything unexpected falls back to Haversine
+            logger.error("Error calling Google Maps Distance Matrix API: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Send one Distance Matrix request for the destinations at {@code indexes[from..to)}.
+     *
+     * @return future of the ETA for each destination of the chunk, {@link EtaCache#MISS} where the API could
+     *         not route it; completes with {@code null} if the request was not made or failed as a whole
+     */
+    private CompletableFuture<long[]> requestChunk(double originLat, double originLng, double[] destLats,
+                                                   double[] destLngs, int[] indexes, int from, int to) {
+        if (!requestPermits.tryAcquire()) {
+            logger.debug("Too many Distance Matrix requests in flight, using Haversine for {} destinations", to - from);
+            concurrencyLimitFallbacks.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = System.nanoTime();
+        // Taken after the request slot, so a half-open probe is never lost to the concurrency limit
+        if (!circuitBreaker.tryAcquire(start)) {
+            requestPermits.release();
+            circuitOpenFallbacks.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            // Build Google Maps Distance Matrix API URL
+            String origin = originLat + "," + originLng;
+            StringBuilder destinations = new StringBuilder();
+            for (int k = from; k < to; k++) {
+                if (k > from) {
+                    destinations.append('|');
+                }
+                destinations.append(destLats[indexes[k]]).append(',').append(destLngs[indexes[k]]);
+            }
+
+            String url = String.format("%s?origins=%s&destinations=%s&key=%s&units=imperial",
+                    googleMapsApiUrl,
+                    URLEncoder.encode(origin, StandardCharsets.UTF_8),
+                    URLEncoder.encode(destinations.toString(), StandardCharsets.UTF_8),
+                    URLEncoder.encode(googleMapsApiKey, StandardCharsets.UTF_8));
+
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((response, error) -> {
+                        requestPermits.release();
+                        long[] chunkEtas = null;
+                        if (error != null) {
+                            logger.error("Error calling Google Maps Distance Matrix API: {}", error.getMessage(), error);
+                        } else {
+                            chunkEtas = parseDistanceMatrix(response, originLat, originLng, destLats, destLngs,
+                                    indexes, from, to);
+                        }
+                        recordOutcome(start, chunkEtas != null);
+                        return chunkEtas;
+                    });
+        } catch (Exception e) {
+            requestPermits.release();
+            logger.error("Error calling Google Maps Distance Matrix API: {}", e.getMessage(), e);
+            recordOutcome(start, false);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void recordOutcome(long start, boolean success) {
+        long end = System.nanoTime();
+        (success ? successTimer : errorTimer).record(end - start, TimeUnit.NANOSECONDS);
+        circuitBreaker.record(end - start, success, end);
+    }
+
+    /**
+     * Read the ETAs of one chunk from a Distance Matrix response and cache the routed ones.
+     *
+     * @return ETA per destination of the chunk, {@link EtaCache#MISS} where an element has no route,
+     *         or {@code null} if the response as a whole is an error
+     */
+    private long[] parseDistanceMatrix(HttpResponse<String> response, double originLat, double originLng,
+                                       double[] destLats, double[] destLngs, int[] indexes, int from, int to) {
+        if (response.statusCode() != 200) {
+            logger.error("Google Maps API returned status code: {}", response.statusCode());
+            return null;
+        }
+        try {
+            JsonNode jsonNode = objectMapper.readTree(response.body());
+
+            // Check for API errors
+            String status = jsonNode.path("status").asText();
+            if (!"OK".equals(status)) {
+                String errorMessage = jsonNode.path("error_message").asText("Unknown error");
+                logger.warn("Google Maps API returned status: {} - {}", status, errorMessage);
+                return null;
+            }
+
+            long[] chunkEtas = new long[to - from];
+            Arrays.fill(chunkEtas, EtaCache.MISS);
+            // One row for the single origin, one element per destination in request order
+            JsonNode elements = jsonNode.path("rows").path(0).path("elements");
+            for (int j = 0; j < chunkEtas.length && j < elements.size(); j++) {
+                JsonNode element = elements.get(j);
+                String elementStatus = element.path("status").asText();
+
+                if ("OK".equals(elementStatus) && element.path("duration").has("value")) {
+                    int index = indexes[from + j];
+                    // Get duration in seconds from "duration" field
+                    long durationSeconds = element.path("duration").path("value").asLong();
+                    // Convert to minutes
+                    chunkEtas[j] = (durationSeconds + 30) / 60; // Round up
+                    etaCache.put(originLat, originLng, destLats[index], destLngs[index], chunkEtas[j]);
+                    logger.debug("Calculated ETA: {} minutes ({} seconds)", chunkEtas[j], durationSeconds);
+                } else {
+                    logger.warn("Google Maps API element status: {}", elementStatus);
+                }
+            }
+            return chunkEtas;
+        } catch (Exception e) {
+            logger.error("Error calling Google Maps Distance Matrix API: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.busreminder.eta;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters shared by the ETA providers.
+ */
+final class EtaMetrics {
+
+    private EtaMetrics() {
+    }
+
+    static Timer latencyTimer(MeterRegistry meterRegistry, String provider, String outcome) {
+        return Timer.builder("busreminder.eta.latency")
+                .description("Time to get ETAs from a provider: one Distance Matrix request or one batch of local ETAs")
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,30 @@
+package com.busreminder.eta;
+
+/**
+ * Source of bus-to-pickup ETAs.
+ * <p>
+ * Implementations are Spring beans picked by {@link TieredEtaStrategy} through {@code eta.provider}. Straight-line
+ * estimates are free; routing providers may call out to a paid service, so they are only asked about pickup
+ * points the bus can still reach within the notification threshold.
+ */
+public interface EtaProvider {
+
+    /**
+     * Name used to select this provider with {@code eta.provider}.
+     */
+    String getName();
+
+    /**
+     * Whether the provider is configured well enough to be used, e.g. has its API key.
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Calculate ETAs from one origin to many destinations.
+     *
+     * @return ETA in minutes for each destination, in the same order
+     */
+    long[] estimateMinutes(double originLat, double originLng, double[] destLats, double[] destLngs);
+}
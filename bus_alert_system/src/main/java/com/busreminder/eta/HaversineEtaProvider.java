@@ -0,0 +1,61 @@
+package com.busreminder.eta;
+
+import com.busreminder.geo.GeoUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Straight-line ETA using the Haversine formula (great circle distance).
+ * Assumes average speed of 30 mph (48 km/h) for urban areas.
+ */
+@Component
+public class HaversineEtaProvider implements EtaProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(HaversineEtaProvider.class);
+
+    public static final String NAME = "haversine";
+
+    /** Average urban speed in miles per hour. */
+    static final double AVERAGE_SPEED_MPH = 30.0;
+
+    private final Timer timer;
+
+    public HaversineEtaProvider(MeterRegistry meterRegistry) {
+        this.timer = EtaMetrics.latencyTimer(meterRegistry, NAME, "success");
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long[] estimateMinutes(double originLat, double originLng, double[] destLats, double[] destLngs) {
+        long start = System.nanoTime();
+        long[] etas = new long[destLats.length];
+        for (int i = 0; i < etas.length; i++) {
+            etas[i] = estimateMinutes(GeoUtils.distanceMiles(originLat, originLng, destLats[i], destLngs[i]));
+        }
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return etas;
+    }
+
+    /**
+     * ETA in minutes for a straight-line distance.
+     */
+    public long estimateMinutes(double distanceMiles) {
+        // Calculate time in minutes (distance / speed * 60)
+        long estimatedMinutes = Math.round((distanceMiles / AVERAGE_SPEED_MPH) * 60);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Haversine calculation: distance={} miles, ETA={} minutes",
+                    String.format("%.2f", distanceMiles), estimatedMinutes);
+        }
+        return estimatedMinutes;
+    }
+}
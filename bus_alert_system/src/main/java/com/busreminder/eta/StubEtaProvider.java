@@ -0,0 +1,51 @@
+package com.busreminder.eta;
+
+import com.busreminder.geo.GeoUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a routing provider, for development and load tests without a Google Maps key.
+ * <p>
+ * Road distance is taken as the straight line times a detour factor, driven at a fixed speed, so ETAs are
+ * deterministic, a little longer than the Haversine estimate, and cost no network calls. Select it with
+ * {@code eta.provider=stub}.
+ */
+@Component
+public class StubEtaProvider implements EtaProvider {
+
+    public static final String NAME = "stub";
+
+    @Value("${eta.stub.speed-mph:25}")
+    private Double speedMph;
+
+    @Value("${eta.stub.detour-factor:1.3}")
+    private Double detourFactor;
+
+    private final Timer timer;
+
+    public StubEtaProvider(MeterRegistry meterRegistry) {
+        this.timer = EtaMetrics.latencyTimer(meterRegistry, NAME, "success");
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long[] estimateMinutes(double originLat, double originLng, double[] destLats, double[] destLngs) {
+        long start = System.nanoTime();
+        double minutesPerMile = detourFactor / speedMph * 60;
+        long[] etas = new long[destLats.length];
+        for (int i = 0; i < etas.length; i++) {
+            etas[i] = Math.round(GeoUtils.distanceMiles(originLat, originLng, destLats[i], destLngs[i]) * minutesPerMile);
+        }
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return etas;
+    }
+}
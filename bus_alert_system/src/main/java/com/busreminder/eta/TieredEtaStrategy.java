@@ -0,0 +1,90 @@
+package com.busreminder.eta;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Works out ETAs for the pickup points a bus can still reach within the notification threshold.
+ * <p>
+ * The first tier is the reach filter in {@code LocationProcessingServiceImpl}: roads are never shorter than the
+ * straight line, so a pickup point further than {@code eta.max-speed-mph} covers in the threshold can never
+ * qualify and is never looked up. Every pickup point handed to this strategy is within reach, and only a routed
+ * ETA tells whether the bus is really within the threshold, so all of them are sent to the routing provider
+ * selected by {@code eta.provider}. A routing provider that is not available (e.g. no Google Maps key) leaves
+ * every ETA to Haversine.
+ */
+@Component
+public class TieredEtaStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredEtaStrategy.class);
+
+    @Value("${eta.provider:google}")
+    private String providerName;
+
+    private final HaversineEtaProvider haversine;
+    private final List<EtaProvider> providers;
+    private EtaProvider routing;
+
+    private final Counter estimated;
+    private final Counter routed;
+
+    public TieredEtaStrategy(HaversineEtaProvider haversine, List<EtaProvider> providers, MeterRegistry meterRegistry) {
+        this.haversine = haversine;
+        this.providers = providers;
+
+        this.estimated = tierCounter(meterRegistry, "estimated");
+        this.routed = tierCounter(meterRegistry, "routed");
+    }
+
+    @PostConstruct
+    public void init() {
+        routing = providers.stream()
+                .filter(provider -> provider.getName().equals(providerName))
+                .findFirst()
+                .orElse(null);
+        if (routing == null) {
+            logger.warn("Unknown ETA provider '{}', using Haversine formula for ETA calculation", providerName);
+            routing = haversine;
+        } else if (!routing.isAvailable()) {
+            logger.info("ETA provider '{}' is not configured, using Haversine formula for ETA calculation",
+                    providerName);
+            routing = haversine;
+        }
+        logger.info("ETA provider: {}", routing.getName());
+    }
+
+    private static Counter tierCounter(MeterRegistry meterRegistry, String tier) {
+        return Counter.builder("busreminder.eta.destinations")
+                .description("Pickup points an ETA was worked out for, by how it was worked out")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Name of the provider asked for routed ETAs.
+     */
+    public String getRoutingProviderName() {
+        return routing.getName();
+    }
+
+    /**
+     * Calculate ETAs from one origin to many destinations.
+     *
+     * @return ETA in minutes for each destination, in the same order
+     */
+    public long[] estimateMinutes(double originLat, double originLng, double[] destLats, double[] destLngs) {
+        if (routing == haversine) {
+            estimated.increment(destLats.length);
+        } else {
+            routed.increment(destLats.length);
+        }
+        return routing.estimateMinutes(originLat, originLng, destLats, destLngs);
+    }
+}
@@ -0,0 +1,73 @@
+package com.busreminder.geo;
+
+/**
+ * Great-circle distance helpers shared by the ETA calculation and the pickup index.
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_MILES = 3958.8;
+
+    /** Shortest distance covered by one degree of latitude (at the equator). */
+    public static final double MILES_PER_DEGREE_LATITUDE = 68.7;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Calculate the great-circle distance between two points using the Haversine formula.
+     *
+     * @return Distance in miles
+     */
+    public static double distanceMiles(double originLat, double originLng, double destLat, double destLng) {
+        double lat1Rad = Math.toRadians(originLat);
+        double lat2Rad = Math.toRadians(destLat);
+        double deltaLatRad = Math.toRadians(destLat - originLat);
+        double deltaLngRad = Math.toRadians(destLng - originLng);
+
+        double a = Math.sin(deltaLatRad / 2) * Math.sin(deltaLatRad / 2) +
+                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
+                Math.sin(deltaLngRad / 2) * Math.sin(deltaLngRad / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_MILES * c;
+    }
+
+    /**
+     * Encode a location as the integer form of a geohash: {@code bits} interleaved longitude/latitude bits,
+     * longitude first. Five bits correspond to one geohash character, so 35 bits is a 7-character cell
+     * (roughly 150 m x 150 m).
+     *
+     * @param bits Number of bits to encode, between 1 and 62
+     * @return Cell identifier shared by every location in the same geohash cell
+     */
+    public static long geohashCell(double latitude, double longitude, int bits) {
+        if (bits < 1 || bits > 62) {
+            throw new IllegalArgumentException("Geohash bits must be between 1 and 62");
+        }
+        double minLat = -90.0;
+        double maxLat = 90.0;
+        double minLng = -180.0;
+        double maxLng = 180.0;
+        long cell = 0;
+        for (int i = 0; i < bits; i++) {
+            cell <<= 1;
+            if ((i & 1) == 0) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    cell |= 1;
+                    minLng = mid;
+                } else {
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    cell |= 1;
+                    minLat = mid;
+                } else {
+                    maxLat = mid;
+                }
+            }
+        }
+        return cell;
+    }
+}
@@ -0,0 +1,155 @@
+package com.busreminder.geo;
+
+import java.util.Arrays;
+
+/**
+ * Immutable 2-d tree over pickup coordinates.
+ * <p>
+ * Built once per bus snapshot and queried on every ping to find the pickup points within a radius
+ * of the bus, so passengers that are out of reach are skipped without computing a distance.
+ * Query results are positions into the coordinate arrays the index was built from.
+ */
+public final class PickupIndex {
+
+    private static final PickupIndex EMPTY = new PickupIndex(new double[0], new double[0], new int[0]);
+
+    // Tree order: the node for [lo, hi) is at (lo + hi) >>> 1, split on latitude at even depths
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] positions;
+
+    private PickupIndex(double[] latitudes, double[] longitudes, int[] positions) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.positions = positions;
+    }
+
+    /**
+     * Build an index over parallel latitude/longitude arrays.
+     *
+     * @param latitudes Pickup latitudes in degrees
+     * @param longitudes Pickup longitudes in degrees, same length as {@code latitudes}
+     * @return Index whose query results are positions into the given arrays
+     */
+    public static PickupIndex build(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Latitude and longitude arrays must have the same length");
+        }
+        int size = latitudes.length;
+        if (size == 0) {
+            return EMPTY;
+        }
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        split(order, latitudes, longitudes, 0, size, 0);
+
+        double[] treeLatitudes = new double[size];
+        double[] treeLongitudes = new double[size];
+        int[] treePositions = new int[size];
+        for (int i = 0; i < size; i++) {
+            treeLatitudes[i] = latitudes[order[i]];
+            treeLongitudes[i] = longitudes[order[i]];
+            treePositions[i] = order[i];
+        }
+        return new PickupIndex(treeLatitudes, treeLongitudes, treePositions);
+    }
+
+    /**
+     * Find every pickup point within a great-circle radius of the given location.
+     *
+     * @param latitude Center latitude in degrees
+     * @param longitude Center longitude in degrees
+     * @param radiusMiles Search radius in miles
+     * @return Positions of matching points in the arrays the index was built from, in ascending order
+     */
+    public int[] findWithin(double latitude, double longitude, double radiusMiles) {
+        if (positions.length == 0 || radiusMiles < 0) {
+            return new int[0];
+        }
+
+        double deltaLat = radiusMiles / GeoUtils.MILES_PER_DEGREE_LATITUDE;
+        double maxAbsLat = Math.min(90.0, Math.abs(latitude) + deltaLat);
+        double cosLat = Math.cos(Math.toRadians(maxAbsLat));
+        // Near the poles every longitude is within reach
+        double deltaLng = cosLat < 1e-6 ? 360.0 : deltaLat / cosLat;
+
+        Query query = new Query(latitude - deltaLat, latitude + deltaLat,
+                longitude - deltaLng, longitude + deltaLng);
+        search(query, 0, positions.length, 0);
+
+        int[] matches = new int[query.count];
+        int count = 0;
+        for (int i = 0; i < query.count; i++) {
+            int node = query.nodes[i];
+            if (GeoUtils.distanceMiles(latitude, longitude, latitudes[node], longitudes[node]) <= radiusMiles) {
+                matches[count++] = positions[node];
+            }
+        }
+        int[] result = Arrays.copyOf(matches, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    public int size() {
+        return positions.length;
+    }
+
+    private void search(Query query, int lo, int hi, int depth) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double lat = latitudes[mid];
+        double lng = longitudes[mid];
+        if (lat >= query.minLat && lat <= query.maxLat && lng >= query.minLng && lng <= query.maxLng) {
+            query.add(mid);
+        }
+
+        double value = (depth & 1) == 0 ? lat : lng;
+        double min = (depth & 1) == 0 ? query.minLat : query.minLng;
+        double max = (depth & 1) == 0 ? query.maxLat : query.maxLng;
+        if (min <= value) {
+            search(query, lo, mid, depth + 1);
+        }
+        if (max >= value) {
+            search(query, mid + 1, hi, depth + 1);
+        }
+    }
+
+    private static void split(Integer[] order, double[] latitudes, double[] longitudes, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        double[] axis = (depth & 1) == 0 ? latitudes : longitudes;
+        Arrays.sort(order, lo, hi, (a, b) -> Double.compare(axis[a], axis[b]));
+        int mid = (lo + hi) >>> 1;
+        split(order, latitudes, longitudes, lo, mid, depth + 1);
+        split(order, latitudes, longitudes, mid + 1, hi, depth + 1);
+    }
+
+    private static final class Query {
+        private final double minLat;
+        private final double maxLat;
+        private final double minLng;
+        private final double maxLng;
+        private int[] nodes = new int[16];
+        private int count;
+
+        private Query(double minLat, double maxLat, double minLng, double maxLng) {
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLng = minLng;
+            this.maxLng = maxLng;
+        }
+
+        private void add(int node) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count * 2);
+            }
+            nodes[count++] = node;
+        }
+    }
+}
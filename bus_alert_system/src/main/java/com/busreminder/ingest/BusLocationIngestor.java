@@ -0,0 +1,222 @@
+package com.busreminder.ingest;
+
+import com.busreminder.dto.BusLocationEvent;
+import com.busreminder.dto.IngestResult;
+import com.busreminder.service.LocationProcessingService;
+import com.busreminder.service.NotificationService;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes in batches of bus locations, such as a whole fleet tick from a telematics gateway, and processes them
+ * off the request thread.
+ * <p>
+ * A batch is NDJSON (one event per line) or a JSON array of events, read one event at a time with Jackson's
+ * streaming parser and conflated to the newest event per bus before anything is queued, so a malformed batch is
+ * rejected as a whole. Each bus is then processed by one of {@code location.ingest.workers} threads. A bus waiting
+ * to be processed holds only its newest event: a later batch replaces it instead of queuing another, and a bus is
+ * never processed by two workers at once. At most {@code location.ingest.max-pending-buses} buses wait at a time;
+ * events of further buses are rejected.
+ */
+@Component
+public class BusLocationIngestor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusLocationIngestor.class);
+
+    private final ObjectMapper objectMapper;
+    private final LocationProcessingService locationProcessingService;
+    private final NotificationService notificationService;
+
+    private final int maxPendingBuses;
+    private final long shutdownTimeoutSeconds;
+    private final ThreadPoolExecutor executor;
+
+    // Newest unprocessed event per bus, and the buses with a worker task queued or running
+    private final Map<String, BusLocationEvent> pending = new ConcurrentHashMap<>();
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+
+    private final Timer consumeTimer;
+    private final Counter acceptedEvents;
+    private final Counter conflatedEvents;
+    private final Counter invalidEvents;
+    private final Counter rejectedEvents;
+
+    public BusLocationIngestor(ObjectMapper objectMapper,
+                               LocationProcessingService locationProcessingService,
+                               NotificationService notificationService,
+                               MeterRegistry meterRegistry,
+                               @Value("${location.ingest.workers:4}") int workers,
+                               @Value("${location.ingest.max-pending-buses:10000}") int maxPendingBuses,
+                               @Value("${location.ingest.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds) {
+        this.objectMapper = objectMapper;
+        this.locationProcessingService = locationProcessingService;
+        this.notificationService = notificationService;
+        this.maxPendingBuses = maxPendingBuses;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+
+        // The queue never holds more than one task per pending bus
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                task -> new Thread(task, "location-ingest-" + threadNumber.incrementAndGet()));
+
+        this.consumeTimer = Timer.builder("busreminder.location.consume")
+                .description("Time from receiving a bus location to handing its notifications to the dispatcher")
+                .register(meterRegistry);
+        this.acceptedEvents = eventCounter(meterRegistry, "accepted");
+        this.conflatedEvents = eventCounter(meterRegistry, "conflated");
+        this.invalidEvents = eventCounter(meterRegistry, "invalid");
+        this.rejectedEvents = eventCounter(meterRegistry, "rejected");
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("busreminder.location.ingest.events")
+                .description("Bus location events received in bulk, by what became of them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Read a batch of events and queue the newest one of each bus for processing.
+     *
+     * @param body NDJSON or a JSON array of {@link BusLocationEvent}s
+     * @return What became of the events
+     * @throws JsonProcessingException If the batch is not well-formed; nothing has been queued then
+     * @throws IOException If the batch could not be read; nothing has been queued then
+     */
+    public IngestResult ingest(InputStream body) throws IOException {
+        LatestLocations latest = new LatestLocations();
+        int received = 0;
+        int invalid = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "Expected a bus location event, got " + token);
+                }
+                BusLocationEvent event = objectMapper.readValue(parser, BusLocationEvent.class);
+                received++;
+                if (isValid(event)) {
+                    latest.offer(event);
+                } else {
+                    invalid++;
+                }
+                // An array cut off before its end fails here
+                token = parser.nextToken();
+            }
+        }
+
+        int accepted = 0;
+        int rejected = 0;
+        for (BusLocationEvent event : latest.values()) {
+            if (submit(event)) {
+                accepted++;
+            } else {
+                rejected++;
+            }
+        }
+        int conflated = received - invalid - latest.size();
+
+        acceptedEvents.increment(accepted);
+        conflatedEvents.increment(conflated);
+        invalidEvents.increment(invalid);
+        rejectedEvents.increment(rejected);
+        logger.debug("Bulk location batch: {} received, {} queued, {} conflated, {} invalid, {} rejected",
+                received, accepted, conflated, invalid, rejected);
+        return new IngestResult(received, accepted, conflated, invalid, rejected);
+    }
+
+    private static boolean isValid(BusLocationEvent event) {
+        return event.getBusId() != null && !event.getBusId().isBlank()
+                && event.getLatitude() != null && event.getLongitude() != null;
+    }
+
+    /**
+     * Make the event its bus's pending one, unless a newer one is pending, and schedule the bus.
+     *
+     * @return {@code false} if too many buses are pending already
+     */
+    private boolean submit(BusLocationEvent event) {
+        String busId = event.getBusId();
+        if (!pending.containsKey(busId) && pending.size() >= maxPendingBuses) {
+            return false;
+        }
+        pending.merge(busId, event,
+                (current, candidate) -> LatestLocations.isOlder(candidate, current) ? current : candidate);
+        if (scheduled.add(busId)) {
+            executor.execute(() -> drain(busId));
+        }
+        return true;
+    }
+
+    /**
+     * Process the bus's pending event, and again as long as a new one arrives before the bus is unscheduled.
+     */
+    private void drain(String busId) {
+        do {
+            BusLocationEvent event = pending.remove(busId);
+            if (event != null) {
+                try {
+                    consumeTimer.record(() -> process(event));
+                } catch (Exception e) {
+                    logger.error("Error processing bus location event for bus {}", busId, e);
+                }
+            }
+            scheduled.remove(busId);
+        } while (pending.containsKey(busId) && scheduled.add(busId));
+    }
+
+    private void process(BusLocationEvent event) {
+        var notificationsToSend = locationProcessingService.processBusLocation(
+                event.getBusId(),
+                event.getLatitude(),
+                event.getLongitude()
+        );
+        if (!notificationsToSend.isEmpty()) {
+            notificationService.sendNotifications(notificationsToSend);
+        }
+    }
+
+    public int getPendingBusCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Bulk location processing did not finish within {}s, {} buses not processed",
+                        shutdownTimeoutSeconds, pending.size());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.busreminder.ingest;
+
+import com.busreminder.dto.BusLocationEvent;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Newest location per bus among the events offered, in the order the buses were first seen.
+ * Events are ordered by timestamp; events without a parseable timestamp by the order they were offered in.
+ */
+public final class LatestLocations {
+
+    private final Map<String, BusLocationEvent> latestByBus = new LinkedHashMap<>();
+
+    /**
+     * Keep the event if it is the newest of its bus so far.
+     *
+     * @return {@code false} if the bus already had a newer event
+     */
+    public boolean offer(BusLocationEvent event) {
+        BusLocationEvent current = latestByBus.get(event.getBusId());
+        if (current != null && isOlder(event, current)) {
+            return false;
+        }
+        latestByBus.put(event.getBusId(), event);
+        return true;
+    }
+
+    public Collection<BusLocationEvent> values() {
+        return latestByBus.values();
+    }
+
+    public int size() {
+        return latestByBus.size();
+    }
+
+    /**
+     * Whether the candidate is older than the current event; only when both have a parseable timestamp.
+     */
+    public static boolean isOlder(BusLocationEvent candidate, BusLocationEvent current) {
+        Instant candidateTime = timestampOf(candidate);
+        Instant currentTime = timestampOf(current);
+        return candidateTime != null && currentTime != null && candidateTime.isBefore(currentTime);
+    }
+
+    /**
+     * The event's timestamp, from its decoded epoch milliseconds if it has them.
+     *
+     * @return The instant, or {@code null} if the timestamp is missing or not parseable
+     */
+    public static Instant timestampOf(BusLocationEvent event) {
+        Long millis = event.getTimestampMillis();
+        return millis != null ? Instant.ofEpochMilli(millis) : parseTimestamp(event.getTimestamp());
+    }
+
+    /**
+     * Parse an ISO 8601 timestamp with offset.
+     *
+     * @return The instant, or {@code null} if the timestamp is missing or not parseable
+     */
+    public static Instant parseTimestamp(String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
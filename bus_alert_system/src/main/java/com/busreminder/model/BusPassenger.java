@@ -1,11 +1,16 @@
 package com.busreminder.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "bus_passenger")
+@Table(name = "bus_passenger", indexes = {
+    @Index(name = "idx_bus_passenger_passenger_id", columnList = "passenger_id"),
+    @Index(name = "idx_bus_passenger_pnr_id_notified", columnList = "pnr_id, notified")
+})
 public class BusPassenger {
 
     @Id
@@ -36,6 +41,11 @@ public class BusPassenger {
     @Column(name = "notified", nullable = false)
     private Boolean notified = false;
 
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'PENDING'")
+    @Column(name = "trip_state", nullable = false, length = 16)
+    private TripState tripState = TripState.PENDING;
+
     @Column(name = "notification_sent_at")
     private LocalDateTime notificationSentAt;
 
@@ -53,6 +63,9 @@ public class BusPassenger {
         if (notified == null) {
             notified = false;
         }
+        if (tripState == null) {
+            tripState = TripState.PENDING;
+        }
     }
 
     // Getters and Setters
@@ -128,6 +141,14 @@ public class BusPassenger {
         this.notified = notified;
     }
 
+    public TripState getTripState() {
+        return tripState;
+    }
+
+    public void setTripState(TripState tripState) {
+        this.tripState = tripState;
+    }
+
     public LocalDateTime getNotificationSentAt() {
         return notificationSentAt;
     }
@@ -0,0 +1,11 @@
+package com.busreminder.model;
+
+/**
+ * How a passenger is told that the bus is approaching. Each channel is a separate outbox entry.
+ */
+public enum NotificationChannel {
+
+    SMS,
+
+    CALL
+}
@@ -0,0 +1,22 @@
+package com.busreminder.model;
+
+/**
+ * Delivery status of a notification outbox entry.
+ */
+public enum OutboxStatus {
+
+    /** Not yet delivered; picked up by the outbox relay */
+    PENDING,
+
+    /** Being delivered by the instance that claimed it, until its lease runs out */
+    IN_PROGRESS,
+
+    /** Accepted by Twilio */
+    SENT,
+
+    /** Not sent because Twilio is not configured */
+    SKIPPED,
+
+    /** Gave up after the maximum number of attempts */
+    FAILED
+}
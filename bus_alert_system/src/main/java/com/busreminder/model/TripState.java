@@ -0,0 +1,31 @@
+package com.busreminder.model;
+
+/**
+ * Where a passenger is in a bus trip. States only ever move forward, in declaration order.
+ */
+public enum TripState {
+
+    /** Waiting for the bus to come within the notification threshold */
+    PENDING,
+
+    /** Within the threshold; the notification has been queued but not yet delivered */
+    IMMINENT,
+
+    /** SMS and call have been sent */
+    NOTIFIED,
+
+    /** Boarded the bus; no notification is needed any more */
+    PICKED_UP;
+
+    public boolean canAdvanceTo(TripState next) {
+        return next.ordinal() > ordinal();
+    }
+
+    /**
+     * Whether the passenger must be left out of the unnotified passengers of the bus.
+     * Kept in sync with the {@code notified} column when the state is written to the database.
+     */
+    public boolean isSettled() {
+        return this == NOTIFIED || this == PICKED_UP;
+    }
+}
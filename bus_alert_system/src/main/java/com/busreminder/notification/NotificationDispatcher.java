@@ -0,0 +1,181 @@
+package com.busreminder.notification;
+
+import com.busreminder.concurrent.VirtualThreads;
+import com.busreminder.trip.TripStateWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded worker pool that delivers notifications off the location processing thread.
+ * <p>
+ * Tasks wait in a fixed-capacity queue. When the queue is full the submitting thread runs the task itself,
+ * which slows the Kafka listener down instead of dropping notifications. On shutdown the queue is drained
+ * before the application context closes.
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true} on Java 21 every batch runs on its own virtual thread instead.
+ * The pool size and queue capacity then only bound how many batches may be in flight at once; beyond that the
+ * submitting thread again delivers the batch itself.
+ * <p>
+ * Depends on the {@link TripStateWriter} so that it is shut down first and the trip states of the drained batches
+ * are still written.
+ */
+@Component
+@DependsOn("tripStateWriter")
+public class NotificationDispatcher implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    // Platform-thread mode
+    private final ThreadPoolExecutor executor;
+
+    // Virtual-thread mode
+    private final ThreadFactory virtualThreadFactory;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private volatile boolean shutdown;
+
+    private final long shutdownTimeoutSeconds;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    public NotificationDispatcher(@Value("${notification.dispatch.workers:4}") int workers,
+                                  @Value("${notification.dispatch.queue-capacity:1000}") int queueCapacity,
+                                  @Value("${notification.dispatch.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+        this.maxInFlight = workers + queueCapacity;
+
+        if (VirtualThreads.isEnabled(virtualThreads)) {
+            logger.info("Notification dispatch uses virtual threads, at most {} batches in flight", maxInFlight);
+            this.executor = null;
+            this.virtualThreadFactory = VirtualThreads.factory("notification-dispatch-");
+            this.inFlight = new Semaphore(maxInFlight);
+            return;
+        }
+        if (virtualThreads) {
+            logger.warn("Virtual threads need Java 21; notification dispatch uses {} platform threads", workers);
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.virtualThreadFactory = null;
+        this.inFlight = null;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> new Thread(task, "notification-dispatch-" + threadNumber.incrementAndGet()),
+                (task, pool) -> {
+                    // Backpressure: run on the caller rather than drop the notification
+                    callerRuns.incrementAndGet();
+                    task.run();
+                });
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        submitted.incrementAndGet();
+        Runnable tracked = () -> {
+            try {
+                task.run();
+                completed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.error("Notification dispatch task failed: {}", e.getMessage(), e);
+            }
+        };
+
+        if (executor != null) {
+            executor.execute(tracked);
+        } else if (shutdown || !inFlight.tryAcquire()) {
+            // Backpressure: run on the caller rather than drop the notification
+            callerRuns.incrementAndGet();
+            tracked.run();
+        } else {
+            virtualThreadFactory.newThread(() -> {
+                try {
+                    tracked.run();
+                } finally {
+                    inFlight.release();
+                }
+            }).start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor == null) {
+            shutdownVirtualThreads();
+            return;
+        }
+        logger.info("Draining {} queued notification tasks", executor.getQueue().size());
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Notification dispatcher did not drain within {} seconds; {} tasks dropped",
+                        shutdownTimeoutSeconds, executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void shutdownVirtualThreads() {
+        shutdown = true;
+        logger.info("Waiting for {} in-flight notification tasks", getActiveCount());
+        try {
+            // Every running batch holds a permit, so holding all of them means every batch has finished
+            if (inFlight.tryAcquire(maxInFlight, shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                inFlight.release(maxInFlight);
+            } else {
+                logger.warn("Notification dispatcher did not drain within {} seconds; {} tasks still running",
+                        shutdownTimeoutSeconds, getActiveCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return executor == null;
+    }
+
+    public int getQueueDepth() {
+        // Virtual threads start straight away, so nothing ever waits in a queue
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor == null ? maxInFlight - inFlight.availablePermits() : executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRuns.get();
+    }
+}
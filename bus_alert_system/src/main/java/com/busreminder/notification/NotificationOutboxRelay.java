@@ -0,0 +1,420 @@
+package com.busreminder.notification;
+
+import com.busreminder.dto.NotificationRequest;
+import com.busreminder.model.NotificationChannel;
+import com.busreminder.model.NotificationOutbox;
+import com.busreminder.model.OutboxStatus;
+import com.busreminder.model.TripState;
+import com.busreminder.repository.NotificationOutboxRepository;
+import com.busreminder.trip.TripStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transactional outbox for notifications.
+ * <p>
+ * Claimed passengers are appended as one entry per channel in a single batched INSERT and handed straight to the
+ * {@link NotificationDispatcher}. An entry whose row already exists, because the passenger was claimed before on the
+ * same bus or by another instance, is skipped rather than delivered again. After a batch is delivered its entries'
+ * statuses are written with one UPDATE per outcome. Entries whose delivery failed, or whose claim ran out because
+ * their instance stopped, are picked up again by a sweep every {@code pollIntervalMillis} until they reach
+ * {@code maxAttempts}.
+ * <p>
+ * Entries are claimed in the database, for {@code leaseSeconds} and renewed while they are being sent, so the sweeps
+ * of other instances leave them alone; within an instance an entry is only handed out while no other delivery of it
+ * is in flight. Sent entries are never handed out again, so retries do not repeat a notification. Only a crash
+ * between a Twilio call and the status UPDATE of its batch, or a claim running out while a send is blocked, can still
+ * send a notification twice.
+ */
+@Component
+public class NotificationOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxRelay.class);
+
+    @Value("${notification.outbox.poll-interval-millis:5000}")
+    private Long pollIntervalMillis;
+
+    @Value("${notification.outbox.batch-size:500}")
+    private Integer batchSize;
+
+    @Value("${notification.outbox.max-attempts:3}")
+    private Integer maxAttempts;
+
+    @Value("${notification.outbox.retention-hours:24}")
+    private Long retentionHours;
+
+    @Value("${notification.outbox.lease-seconds:300}")
+    private Long leaseSeconds;
+
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final TwilioNotificationSender notificationSender;
+    private final NotificationDispatcher notificationDispatcher;
+    private final TripStateStore tripStateStore;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong claims = new AtomicLong();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong appendFailures = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final Map<OutboxStatus, AtomicLong> deliveries = new EnumMap<>(OutboxStatus.class);
+
+    private final Timer appendTimer;
+    private final Timer queueWaitTimer;
+    private final Timer deliveryTimer;
+
+    private ScheduledExecutorService scheduler;
+
+    public NotificationOutboxRelay(NotificationOutboxRepository notificationOutboxRepository,
+                                   TwilioNotificationSender notificationSender,
+                                   NotificationDispatcher notificationDispatcher,
+                                   TripStateStore tripStateStore,
+                                   MeterRegistry meterRegistry) {
+        this.notificationOutboxRepository = notificationOutboxRepository;
+        this.notificationSender = notificationSender;
+        this.notificationDispatcher = notificationDispatcher;
+        this.tripStateStore = tripStateStore;
+        for (OutboxStatus status : OutboxStatus.values()) {
+            deliveries.put(status, new AtomicLong());
+        }
+
+        this.appendTimer = Timer.builder("busreminder.notification.outbox.append")
+                .description("Time to insert the outbox entries of a notification batch")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("busreminder.notification.queue.wait")
+                .description("Time a notification batch waits for a dispatcher worker")
+                .register(meterRegistry);
+        this.deliveryTimer = Timer.builder("busreminder.notification.delivery")
+                .description("Time to send a notification batch and record its outbox statuses")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> new Thread(task, "notification-outbox-relay"));
+        scheduler.scheduleWithFixedDelay(this::sweepQuietly, pollIntervalMillis, pollIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, 1, 1, TimeUnit.HOURS);
+        logger.info("Notification outbox claims are held by {} for {} s at a time", instanceId, leaseSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Batches already handed to the dispatcher are drained by its own shutdown
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Append the SMS and call of every request to the outbox in one batched INSERT, claimed by this instance, then
+     * queue their delivery. If a row already exists the entries are inserted one by one and those already in the
+     * outbox are skipped. If the database cannot take the rows at all they are still delivered, but will not be
+     * retried.
+     *
+     * @param requests Notifications of passengers already claimed in the trip state
+     */
+    public void append(List<NotificationRequest> requests) {
+        String claim = nextClaim();
+        LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(leaseSeconds);
+        List<NotificationOutbox> entries = toEntries(requests, claim, leaseUntil);
+        // Claim the entries before they are visible to the sweep
+        for (NotificationOutbox entry : entries) {
+            inFlight.add(entry.getIdempotencyKey());
+        }
+
+        try {
+            appendTimer.record(() -> notificationOutboxRepository.saveAll(entries));
+            dispatch(claim, entries);
+        } catch (DataIntegrityViolationException e) {
+            // The batch was rolled back; fresh entries, as the failed ones may already be marked as persisted
+            List<NotificationOutbox> unrecorded = new ArrayList<>();
+            List<NotificationOutbox> appended = appendEach(toEntries(requests, claim, leaseUntil), unrecorded);
+            if (!appended.isEmpty()) {
+                dispatch(claim, appended);
+            }
+            if (!unrecorded.isEmpty()) {
+                dispatch(null, unrecorded);
+            }
+        } catch (Exception e) {
+            appendFailures.incrementAndGet();
+            logger.error("Error appending {} notifications to the outbox, delivering without retry: {}",
+                    entries.size(), e.getMessage(), e);
+            dispatch(null, entries);
+        }
+    }
+
+    /**
+     * Insert the entries one at a time, leaving out those whose row already exists.
+     *
+     * @param unrecorded Receives the entries the database could not take, to deliver without a row
+     * @return Entries inserted
+     */
+    private List<NotificationOutbox> appendEach(List<NotificationOutbox> entries,
+                                                List<NotificationOutbox> unrecorded) {
+        List<NotificationOutbox> appended = new ArrayList<>(entries.size());
+        for (NotificationOutbox entry : entries) {
+            try {
+                notificationOutboxRepository.save(entry);
+                appended.add(entry);
+            } catch (DataIntegrityViolationException e) {
+                inFlight.remove(entry.getIdempotencyKey());
+                duplicates.incrementAndGet();
+                logger.info("Notification {} is already in the outbox, not delivering it again",
+                        entry.getIdempotencyKey());
+            } catch (Exception e) {
+                appendFailures.incrementAndGet();
+                logger.error("Error appending notification {} to the outbox, delivering without retry: {}",
+                        entry.getIdempotencyKey(), e.getMessage(), e);
+                unrecorded.add(entry);
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Claim the oldest entries that no instance is delivering, pending ones and those whose claim has run out, and
+     * hand them to the dispatcher. Entries already in flight on this instance are left out.
+     *
+     * @return Number of entries dispatched
+     */
+    public int sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> keys = new ArrayList<>();
+        for (NotificationOutbox entry : notificationOutboxRepository.findClaimable(now,
+                PageRequest.of(0, batchSize))) {
+            if (!inFlight.contains(entry.getIdempotencyKey())) {
+                keys.add(entry.getIdempotencyKey());
+            }
+        }
+        if (keys.isEmpty()) {
+            return 0;
+        }
+
+        // Only the rows this UPDATE claims are delivered; another instance may have claimed the rest
+        String claim = nextClaim();
+        if (notificationOutboxRepository.claim(keys, claim, now.plusSeconds(leaseSeconds), now) == 0) {
+            return 0;
+        }
+        List<NotificationOutbox> entries = new ArrayList<>(keys.size());
+        for (NotificationOutbox entry : notificationOutboxRepository.findByClaimedByAndStatus(claim,
+                OutboxStatus.IN_PROGRESS)) {
+            if (inFlight.add(entry.getIdempotencyKey())) {
+                entries.add(entry);
+            }
+        }
+        if (!entries.isEmpty()) {
+            logger.info("Retrying {} pending notifications from the outbox", entries.size());
+            dispatch(claim, entries);
+        }
+        return entries.size();
+    }
+
+    /**
+     * @param claim Claim the entries' rows are held by, or {@code null} if they have no rows
+     */
+    private void dispatch(String claim, List<NotificationOutbox> entries) {
+        long queuedAt = System.nanoTime();
+        notificationDispatcher.execute(() -> {
+            queueWaitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            long renewAt = queuedAt + TimeUnit.SECONDS.toNanos(leaseSeconds) / 2;
+            deliveryTimer.record(() -> deliver(claim, entries, renewAt));
+        });
+    }
+
+    /**
+     * Runs on a dispatcher worker: sends every entry, records the outcomes with one UPDATE per status, then moves
+     * the passengers with an entry sent or skipped to notified. Passengers whose every entry failed stay imminent
+     * until a retry from the sweep succeeds. The trip state is written to the database by the
+     * {@code TripStateWriter}.
+     * <p>
+     * Sends can wait long on the Twilio rate limits, so the claim is renewed every half lease. Entries whose claim ran
+     * out and was taken by another instance are not sent.
+     */
+    private void deliver(String claim, List<NotificationOutbox> entries, long renewAt) {
+        try {
+            Map<OutboxStatus, List<String>> keysByStatus = new EnumMap<>(OutboxStatus.class);
+            List<NotificationOutbox> delivered = new ArrayList<>(entries.size());
+            List<NotificationOutbox> unsent = entries;
+            int held = entries.size();
+            int next = 0;
+            while (next < unsent.size()) {
+                if (claim != null && System.nanoTime() - renewAt >= 0) {
+                    renewAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(leaseSeconds) / 2;
+                    int stillHeld = renewClaim(claim, held);
+                    if (stillHeld < held) {
+                        unsent = stillClaimed(claim, unsent.subList(next, unsent.size()));
+                        next = 0;
+                        held = stillHeld;
+                        continue;
+                    }
+                }
+                NotificationOutbox entry = unsent.get(next++);
+                OutboxStatus status = notificationSender.send(entry);
+                deliveries.get(status).incrementAndGet();
+                keysByStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(entry.getIdempotencyKey());
+                if (status == OutboxStatus.SENT || status == OutboxStatus.SKIPPED) {
+                    delivered.add(entry);
+                }
+            }
+            recordStatuses(keysByStatus);
+            for (NotificationOutbox entry : delivered) {
+                tripStateStore.advance(entry.getBusId(), entry.getPassengerId(), TripState.NOTIFIED);
+            }
+        } finally {
+            release(entries);
+        }
+    }
+
+    /**
+     * Extend the lease of a claim.
+     *
+     * @param held Rows the claim held at its last renewal
+     * @return Rows it still holds; {@code held} if the renewal failed, as the claim is then kept until it runs out
+     */
+    private int renewClaim(String claim, int held) {
+        try {
+            return notificationOutboxRepository.renewClaim(claim, LocalDateTime.now().plusSeconds(leaseSeconds));
+        } catch (Exception e) {
+            logger.error("Error renewing outbox claim {}: {}", claim, e.getMessage(), e);
+            return held;
+        }
+    }
+
+    private List<NotificationOutbox> stillClaimed(String claim, List<NotificationOutbox> entries) {
+        Set<String> keys = new HashSet<>();
+        for (NotificationOutbox entry : notificationOutboxRepository.findByClaimedByAndStatus(claim,
+                OutboxStatus.IN_PROGRESS)) {
+            keys.add(entry.getIdempotencyKey());
+        }
+        List<NotificationOutbox> claimed = new ArrayList<>(entries.size());
+        for (NotificationOutbox entry : entries) {
+            if (keys.contains(entry.getIdempotencyKey())) {
+                claimed.add(entry);
+            }
+        }
+        logger.warn("{} notifications of outbox claim {} were taken over by another instance, not sending them",
+                entries.size() - claimed.size(), claim);
+        return claimed;
+    }
+
+    private String nextClaim() {
+        return instanceId + "-" + claims.incrementAndGet();
+    }
+
+    private void recordStatuses(Map<OutboxStatus, List<String>> keysByStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        keysByStatus.forEach((status, keys) -> {
+            try {
+                if (status == OutboxStatus.FAILED) {
+                    notificationOutboxRepository.recordFailedAttempt(keys, maxAttempts);
+                } else {
+                    notificationOutboxRepository.updateStatus(keys, status, now);
+                }
+            } catch (Exception e) {
+                // The entries stay claimed until the lease runs out, then a sweep sends them again
+                logger.error("Error recording outbox status {} for {} entries: {}", status, keys.size(),
+                        e.getMessage(), e);
+            }
+        });
+    }
+
+    private void release(List<NotificationOutbox> entries) {
+        for (NotificationOutbox entry : entries) {
+            inFlight.remove(entry.getIdempotencyKey());
+        }
+    }
+
+    /**
+     * Delete entries that were settled more than {@code retentionHours} ago.
+     *
+     * @return Number of entries deleted
+     */
+    public int purge() {
+        int deleted = notificationOutboxRepository.deleteSettledBefore(
+                LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            logger.info("Deleted {} settled notifications from the outbox", deleted);
+        }
+        return deleted;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            logger.error("Notification outbox sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (Exception e) {
+            logger.error("Notification outbox purge failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private static List<NotificationOutbox> toEntries(List<NotificationRequest> requests, String claim,
+                                                      LocalDateTime leaseUntil) {
+        List<NotificationOutbox> entries = new ArrayList<>(requests.size() * 2);
+        for (NotificationRequest request : requests) {
+            entries.add(toEntry(request, NotificationChannel.SMS, claim, leaseUntil));
+            entries.add(toEntry(request, NotificationChannel.CALL, claim, leaseUntil));
+        }
+        return entries;
+    }
+
+    private static NotificationOutbox toEntry(NotificationRequest request, NotificationChannel channel,
+                                              String claim, LocalDateTime leaseUntil) {
+        NotificationOutbox entry = new NotificationOutbox();
+        entry.setIdempotencyKey(NotificationOutbox.idempotencyKey(request.getBusId(), request.getPassengerId(),
+                channel));
+        entry.setBusId(request.getBusId());
+        entry.setPassengerId(request.getPassengerId());
+        entry.setChannel(channel);
+        entry.setPassengerName(request.getPassengerName());
+        entry.setPassengerPhone(request.getPassengerPhone());
+        entry.setPickupAddress(request.getPickupAddress());
+        entry.setEstimatedMinutes(request.getEstimatedMinutes());
+        entry.setStatus(OutboxStatus.IN_PROGRESS);
+        entry.setClaimedBy(claim);
+        entry.setLeaseUntil(leaseUntil);
+        return entry;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getAppendFailureCount() {
+        return appendFailures.get();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    public long getDeliveryCount(OutboxStatus status) {
+        return deliveries.get(status).get();
+    }
+}
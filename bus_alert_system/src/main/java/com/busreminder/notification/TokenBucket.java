@@ -0,0 +1,103 @@
+package com.busreminder.notification;
+
+/**
+ * Token bucket with an adaptive rate, handing out reservations rather than rejecting callers.
+ * <p>
+ * {@link #reserve} always takes a token, letting the balance go negative, and returns how long the caller has to
+ * wait before using it. Callers are therefore served in the order they reserved, at {@code rate} per second once
+ * the burst is spent. {@link #throttled} halves the rate and pushes the balance back by a backoff period;
+ * {@link #succeeded} raises the rate again in steps of a tenth of the configured rate.
+ */
+public final class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double maxRate;
+    private final double minRate;
+    private final double burst;
+
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private int consecutiveThrottles;
+
+    /**
+     * @param ratePerSecond Configured rate, which is also the ceiling of the adaptive rate
+     * @param burst Tokens that can be saved up while idle
+     * @param nowNanos Current {@link System#nanoTime()}
+     */
+    public TokenBucket(double ratePerSecond, double burst, long nowNanos) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        }
+        this.maxRate = ratePerSecond;
+        this.minRate = ratePerSecond / 16;
+        this.burst = Math.max(1, burst);
+        this.rate = ratePerSecond;
+        this.tokens = this.burst;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Take one token.
+     *
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @return Nanoseconds to wait before the token may be used; 0 if it may be used straight away
+     */
+    public synchronized long reserve(long nowNanos) {
+        refill(nowNanos);
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * NANOS_PER_SECOND);
+    }
+
+    /**
+     * How long a reservation made now would have to wait, without making it.
+     *
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @return Nanoseconds until the next token is free; 0 if one is free now
+     */
+    public synchronized long waitNanos(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate * NANOS_PER_SECOND);
+    }
+
+    /**
+     * Record a throttled request: halve the rate and hold every caller back by {@code backoffNanos}.
+     *
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @param backoffNanos How long no token is handed out
+     */
+    public synchronized void throttled(long nowNanos, long backoffNanos) {
+        refill(nowNanos);
+        rate = Math.max(minRate, rate / 2);
+        tokens = Math.min(tokens, 0) - backoffNanos / NANOS_PER_SECOND * rate;
+        consecutiveThrottles++;
+    }
+
+    /**
+     * Record a request that went through, raising the rate back towards the configured one.
+     */
+    public synchronized void succeeded() {
+        rate = Math.min(maxRate, rate + maxRate / 10);
+        consecutiveThrottles = 0;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed / NANOS_PER_SECOND * rate);
+            lastRefillNanos = nowNanos;
+        }
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Throttled requests since the last one that went through.
+     */
+    public synchronized int getConsecutiveThrottles() {
+        return consecutiveThrottles;
+    }
+}
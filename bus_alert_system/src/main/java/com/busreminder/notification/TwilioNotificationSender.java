@@ -0,0 +1,186 @@
+package com.busreminder.notification;
+
+import com.busreminder.model.NotificationChannel;
+import com.busreminder.model.NotificationOutbox;
+import com.busreminder.model.OutboxStatus;
+import com.twilio.Twilio;
+import com.twilio.rest.api.v2010.account.Call;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.rest.api.v2010.account.MessageCreator;
+import com.twilio.type.PhoneNumber;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends one notification outbox entry through Twilio, as an SMS or a voice call.
+ * <p>
+ * Twilio's create endpoints take no idempotency token, so the outbox entry's idempotency key is logged with the
+ * returned SID; repeat sends are prevented by the outbox, which only hands out pending entries. Every request goes
+ * through the {@link TwilioRateLimiter}, which picks the least loaded sender of the {@link TwilioSenderPool}, paces
+ * it and retries it when Twilio answers HTTP 429.
+ */
+@Component
+public class TwilioNotificationSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwilioNotificationSender.class);
+
+    @Value("${twilio.account.sid:}")
+    private String twilioAccountSid;
+
+    @Value("${twilio.auth.token:}")
+    private String twilioAuthToken;
+
+    @Value("${twilio.voice.url:}")
+    private String twilioVoiceUrl;
+
+    private final TwilioSenderPool senderPool;
+    private final TwilioRateLimiter rateLimiter;
+
+    private final Timer smsSuccessTimer;
+    private final Timer smsErrorTimer;
+    private final Timer callSuccessTimer;
+    private final Timer callErrorTimer;
+
+    public TwilioNotificationSender(TwilioSenderPool senderPool, TwilioRateLimiter rateLimiter,
+                                    MeterRegistry meterRegistry) {
+        this.senderPool = senderPool;
+        this.rateLimiter = rateLimiter;
+
+        this.smsSuccessTimer = twilioTimer(meterRegistry, "sms", "success");
+        this.smsErrorTimer = twilioTimer(meterRegistry, "sms", "error");
+        this.callSuccessTimer = twilioTimer(meterRegistry, "call", "success");
+        this.callErrorTimer = twilioTimer(meterRegistry, "call", "error");
+    }
+
+    private static Timer twilioTimer(MeterRegistry meterRegistry, String channel, String outcome) {
+        return Timer.builder("busreminder.twilio.request")
+                .description("Twilio API call latency; the count with outcome=error is the error count")
+                .tag("channel", channel)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (twilioAccountSid != null && !twilioAccountSid.isEmpty()
+            && twilioAuthToken != null && !twilioAuthToken.isEmpty()) {
+            Twilio.init(twilioAccountSid, twilioAuthToken);
+            logger.info("Twilio initialized successfully");
+        } else {
+            logger.warn("Twilio credentials not configured. SMS and calls will not be sent.");
+        }
+    }
+
+    /**
+     * Send the entry over its channel.
+     *
+     * @param entry Outbox entry to deliver
+     * @return {@code SENT}, {@code SKIPPED} if Twilio is not configured, or {@code FAILED} if Twilio rejected it
+     */
+    public OutboxStatus send(NotificationOutbox entry) {
+        switch (entry.getChannel()) {
+            case SMS:
+                return sendSMS(entry);
+            case CALL:
+                return makeCall(entry);
+            default:
+                throw new IllegalArgumentException("Unknown notification channel: " + entry.getChannel());
+        }
+    }
+
+    private OutboxStatus sendSMS(NotificationOutbox entry) {
+        try {
+            List<String> senders = senderPool.getSenders(NotificationChannel.SMS);
+            if (twilioAccountSid == null || twilioAccountSid.isEmpty() || senders.isEmpty()) {
+                logger.warn("Twilio not configured. Skipping SMS to {}", entry.getPassengerPhone());
+                return OutboxStatus.SKIPPED;
+            }
+
+            Message message = rateLimiter.execute(NotificationChannel.SMS, senders,
+                sender -> timed(smsSuccessTimer, smsErrorTimer, () -> messageCreator(entry, sender).create()));
+
+            logger.info("SMS sent to {}: Message SID: {}, key: {}", entry.getPassengerPhone(), message.getSid(),
+                    entry.getIdempotencyKey());
+            return OutboxStatus.SENT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted before sending SMS to {}", entry.getPassengerPhone());
+            return OutboxStatus.FAILED;
+        } catch (Exception e) {
+            logger.error("Error sending SMS to {}: {}", entry.getPassengerPhone(), e.getMessage(), e);
+            return OutboxStatus.FAILED;
+        }
+    }
+
+    private OutboxStatus makeCall(NotificationOutbox entry) {
+        try {
+            List<String> senders = senderPool.getSenders(NotificationChannel.CALL);
+            if (twilioAccountSid == null || twilioAccountSid.isEmpty() || senders.isEmpty()
+                || twilioVoiceUrl == null || twilioVoiceUrl.isEmpty()) {
+                logger.warn("Twilio not configured. Skipping call to {}", entry.getPassengerPhone());
+                return OutboxStatus.SKIPPED;
+            }
+
+            // Create call with TwiML URL or use voice URL
+            Call call = rateLimiter.execute(NotificationChannel.CALL, senders,
+                sender -> timed(callSuccessTimer, callErrorTimer, () -> Call.creator(
+                    new PhoneNumber(entry.getPassengerPhone()),
+                    new PhoneNumber(sender),
+                    URI.create(twilioVoiceUrl)
+                ).create()));
+
+            logger.info("Call initiated to {}: Call SID: {}, key: {}", entry.getPassengerPhone(), call.getSid(),
+                    entry.getIdempotencyKey());
+            return OutboxStatus.SENT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted before making call to {}", entry.getPassengerPhone());
+            return OutboxStatus.FAILED;
+        } catch (Exception e) {
+            logger.error("Error making call to {}: {}", entry.getPassengerPhone(), e.getMessage(), e);
+            return OutboxStatus.FAILED;
+        }
+    }
+
+    /**
+     * Time one Twilio request, excluding any wait for the rate limiter.
+     */
+    private static <T> T timed(Timer successTimer, Timer errorTimer, Supplier<T> request) {
+        long start = System.nanoTime();
+        try {
+            T result = request.get();
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            errorTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private static MessageCreator messageCreator(NotificationOutbox entry, String sender) {
+        PhoneNumber to = new PhoneNumber(entry.getPassengerPhone());
+        if (TwilioSenderPool.isMessagingService(sender)) {
+            return Message.creator(to, sender, messageText(entry));
+        }
+        return Message.creator(to, new PhoneNumber(sender), messageText(entry));
+    }
+
+    private static String messageText(NotificationOutbox entry) {
+        return String.format(
+            "Dear %s, your bus will arrive at %s in approximately %d minutes. Please be ready at the pickup point.",
+            entry.getPassengerName() != null ? entry.getPassengerName() : "Passenger",
+            entry.getPickupAddress() != null ? entry.getPickupAddress() : "your pickup location",
+            entry.getEstimatedMinutes()
+        );
+    }
+}
@@ -0,0 +1,242 @@
+package com.busreminder.notification;
+
+import com.busreminder.model.NotificationChannel;
+import com.twilio.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces Twilio requests to the send rates Twilio allows.
+ * <p>
+ * Every sender number has its own {@link TokenBucket} per channel, so SMS and calls are limited separately, at
+ * {@code twilio.rate-limit.sms-per-second} and {@code twilio.rate-limit.calls-per-second} unless the number has an
+ * override. A request waits for its token on the calling dispatcher worker, so a burst queues up and drains at the
+ * allowed rate instead of being rejected. Across the account at most {@code max-concurrent-requests} requests are
+ * open at once.
+ * <p>
+ * A request that may go out from any of several senders uses the one whose bucket frees up first, taking turns
+ * among senders that are equally free, so throughput grows with the number of senders.
+ * <p>
+ * A request answered with HTTP 429 halves its bucket's rate, holds the bucket back for an exponentially growing
+ * backoff and is retried, up to {@code max-throttle-retries} times. Requests that go through raise the rate again.
+ */
+@Component
+public class TwilioRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwilioRateLimiter.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int TWILIO_TOO_MANY_REQUESTS = 20429;
+
+    @Value("${twilio.rate-limit.sms-per-second:1}")
+    private Double smsPerSecond;
+
+    @Value("${twilio.rate-limit.calls-per-second:1}")
+    private Double callsPerSecond;
+
+    @Value("${twilio.rate-limit.sms-per-second.overrides:}")
+    private String smsPerSecondOverrides;
+
+    @Value("${twilio.rate-limit.calls-per-second.overrides:}")
+    private String callsPerSecondOverrides;
+
+    @Value("${twilio.rate-limit.burst:1}")
+    private Integer burst;
+
+    @Value("${twilio.rate-limit.max-concurrent-requests:20}")
+    private Integer maxConcurrentRequests;
+
+    @Value("${twilio.rate-limit.throttle-backoff-millis:1000}")
+    private Long throttleBackoffMillis;
+
+    @Value("${twilio.rate-limit.max-backoff-millis:30000}")
+    private Long maxBackoffMillis;
+
+    @Value("${twilio.rate-limit.max-throttle-retries:5}")
+    private Integer maxThrottleRetries;
+
+    /**
+     * Sleeps for the given number of nanoseconds; replaced in tests.
+     */
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    private LongSupplier nanoClock = System::nanoTime;
+    private Sleeper sleeper = TimeUnit.NANOSECONDS::sleep;
+
+    private final Map<NotificationChannel, Map<String, Double>> overrides = new EnumMap<>(NotificationChannel.class);
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private Semaphore concurrentRequests;
+    private final AtomicInteger nextSender = new AtomicInteger();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<NotificationChannel, Timer> waitTimers = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, Counter> throttledCounters = new EnumMap<>(NotificationChannel.class);
+    private final Map<String, Counter> senderCounters = new ConcurrentHashMap<>();
+
+    public TwilioRateLimiter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            String tag = channel.name().toLowerCase();
+            waitTimers.put(channel, Timer.builder("busreminder.twilio.rate.limit.wait")
+                    .description("Time a Twilio request waited for the rate limiter")
+                    .tag("channel", tag)
+                    .register(meterRegistry));
+            throttledCounters.put(channel, Counter.builder("busreminder.twilio.throttled")
+                    .description("Twilio requests answered with HTTP 429")
+                    .tag("channel", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        overrides.put(NotificationChannel.SMS, parseOverrides(smsPerSecondOverrides));
+        overrides.put(NotificationChannel.CALL, parseOverrides(callsPerSecondOverrides));
+        concurrentRequests = new Semaphore(maxConcurrentRequests, true);
+        logger.info("Twilio rate limits: {} SMS/s and {} calls/s per number, {} concurrent requests",
+                smsPerSecond, callsPerSecond, maxConcurrentRequests);
+    }
+
+    /**
+     * Parse {@code +15551234567=10,+15557654321=5} into rates per sender number.
+     */
+    static Map<String, Double> parseOverrides(String overrides) {
+        Map<String, Double> rates = new HashMap<>();
+        if (overrides == null || overrides.isBlank()) {
+            return rates;
+        }
+        for (String pair : overrides.split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected number=rate, got: " + pair.trim());
+            }
+            rates.put(parts[0].trim(), Double.parseDouble(parts[1].trim()));
+        }
+        return rates;
+    }
+
+    /**
+     * Run a Twilio request from the least loaded of the given senders once its rate allows it, retrying it while
+     * Twilio answers HTTP 429. A retry picks the sender again, so it can move to a sender that was not throttled.
+     *
+     * @param channel Channel the request sends on
+     * @param senders Senders the request may go out from; not empty
+     * @param request Twilio request, given the sender to send from
+     * @return Result of the request
+     * @throws InterruptedException If interrupted while waiting; the request has then not been sent
+     */
+    public <T> T execute(NotificationChannel channel, List<String> senders, Function<String, T> request)
+            throws InterruptedException {
+        for (int retries = 0; ; retries++) {
+            long waitStart = nanoClock.getAsLong();
+            String sender = selectSender(channel, senders, waitStart);
+            TokenBucket bucket = bucket(channel, sender);
+            long waitNanos = bucket.reserve(waitStart);
+            if (waitNanos > 0) {
+                sleeper.sleep(waitNanos);
+            }
+            concurrentRequests.acquire();
+            waitTimers.get(channel).record(nanoClock.getAsLong() - waitStart, TimeUnit.NANOSECONDS);
+            senderCounter(channel, sender).increment();
+            try {
+                T result = request.apply(sender);
+                bucket.succeeded();
+                return result;
+            } catch (ApiException e) {
+                if (!isThrottled(e)) {
+                    throw e;
+                }
+                throttledCounters.get(channel).increment();
+                long backoffNanos = backoffNanos(bucket.getConsecutiveThrottles());
+                bucket.throttled(nanoClock.getAsLong(), backoffNanos);
+                if (retries >= maxThrottleRetries) {
+                    throw e;
+                }
+                logger.warn("Twilio throttled {} from {}; backing off {} ms at {} per second", channel, sender,
+                        TimeUnit.NANOSECONDS.toMillis(backoffNanos), String.format("%.2f", bucket.getRate()));
+            } finally {
+                concurrentRequests.release();
+            }
+        }
+    }
+
+    /**
+     * The sender whose bucket frees up first, starting the search one sender further on each time so that equally
+     * free senders take turns.
+     */
+    private String selectSender(NotificationChannel channel, List<String> senders, long nowNanos) {
+        if (senders.size() == 1) {
+            return senders.get(0);
+        }
+        int first = Math.floorMod(nextSender.getAndIncrement(), senders.size());
+        String selected = null;
+        long selectedWait = Long.MAX_VALUE;
+        for (int i = 0; i < senders.size() && selectedWait > 0; i++) {
+            String sender = senders.get((first + i) % senders.size());
+            long wait = bucket(channel, sender).waitNanos(nowNanos);
+            if (wait < selectedWait) {
+                selected = sender;
+                selectedWait = wait;
+            }
+        }
+        return selected;
+    }
+
+    private TokenBucket bucket(NotificationChannel channel, String fromNumber) {
+        return buckets.computeIfAbsent(channel.name() + ":" + fromNumber, key -> {
+            double defaultRate = channel == NotificationChannel.SMS ? smsPerSecond : callsPerSecond;
+            double rate = overrides.get(channel).getOrDefault(fromNumber, defaultRate);
+            return new TokenBucket(rate, burst, nanoClock.getAsLong());
+        });
+    }
+
+    private Counter senderCounter(NotificationChannel channel, String sender) {
+        return senderCounters.computeIfAbsent(channel.name() + ":" + sender, key ->
+                Counter.builder("busreminder.twilio.sender.requests")
+                        .description("Twilio requests sent, by sender")
+                        .tag("channel", channel.name().toLowerCase())
+                        .tag("sender", sender)
+                        .register(meterRegistry));
+    }
+
+    private long backoffNanos(int consecutiveThrottles) {
+        long backoffMillis = throttleBackoffMillis << Math.min(consecutiveThrottles, 20);
+        return TimeUnit.MILLISECONDS.toNanos(Math.min(backoffMillis, maxBackoffMillis));
+    }
+
+    static boolean isThrottled(ApiException e) {
+        return Integer.valueOf(TOO_MANY_REQUESTS).equals(e.getStatusCode())
+                || Integer.valueOf(TWILIO_TOO_MANY_REQUESTS).equals(e.getCode());
+    }
+
+    /**
+     * Current rate of a sender number's bucket, or {@code NaN} if it has not sent on the channel yet.
+     */
+    public double getRate(NotificationChannel channel, String fromNumber) {
+        TokenBucket bucket = buckets.get(channel.name() + ":" + fromNumber);
+        return bucket == null ? Double.NaN : bucket.getRate();
+    }
+
+    public int getOpenRequestCount() {
+        return maxConcurrentRequests - concurrentRequests.availablePermits();
+    }
+}
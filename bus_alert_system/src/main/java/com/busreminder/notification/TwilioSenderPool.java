@@ -0,0 +1,63 @@
+package com.busreminder.notification;
+
+import com.busreminder.model.NotificationChannel;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Twilio senders notifications go out from.
+ * <p>
+ * {@code twilio.phone.numbers} lists sender numbers and messaging service SIDs ({@code MG...}); if it is empty,
+ * {@code twilio.phone.number} is the only sender. A messaging service can only send SMS, so calls go out from the
+ * phone numbers alone. Which sender a request uses is picked by the {@link TwilioRateLimiter}.
+ */
+@Component
+public class TwilioSenderPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwilioSenderPool.class);
+
+    private static final String MESSAGING_SERVICE_PREFIX = "MG";
+
+    @Value("${twilio.phone.numbers:}")
+    private String twilioPhoneNumbers;
+
+    @Value("${twilio.phone.number:}")
+    private String twilioPhoneNumber;
+
+    private List<String> smsSenders = List.of();
+    private List<String> callSenders = List.of();
+
+    @PostConstruct
+    public void init() {
+        List<String> senders = new ArrayList<>();
+        if (twilioPhoneNumbers != null && !twilioPhoneNumbers.isBlank()) {
+            for (String sender : twilioPhoneNumbers.split(",")) {
+                if (!sender.isBlank() && !senders.contains(sender.trim())) {
+                    senders.add(sender.trim());
+                }
+            }
+        } else if (twilioPhoneNumber != null && !twilioPhoneNumber.isEmpty()) {
+            senders.add(twilioPhoneNumber);
+        }
+        smsSenders = List.copyOf(senders);
+        callSenders = senders.stream().filter(sender -> !isMessagingService(sender)).toList();
+        logger.info("Twilio senders: {} for SMS, {} for calls", smsSenders.size(), callSenders.size());
+    }
+
+    /**
+     * Senders that can send on the channel; empty if none is configured.
+     */
+    public List<String> getSenders(NotificationChannel channel) {
+        return channel == NotificationChannel.CALL ? callSenders : smsSenders;
+    }
+
+    public static boolean isMessagingService(String sender) {
+        return sender.startsWith(MESSAGING_SERVICE_PREFIX);
+    }
+}
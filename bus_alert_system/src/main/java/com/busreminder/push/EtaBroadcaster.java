@@ -0,0 +1,357 @@
+package com.busreminder.push;
+
+import com.busreminder.cache.PickupPoints;
+import com.busreminder.concurrent.VirtualThreads;
+import com.busreminder.dto.EtaUpdate;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes the ETAs computed for every bus location to the subscribers of the bus or of the passenger.
+ * <p>
+ * Publishing never blocks location processing: each event is added to a per-subscriber buffer of
+ * {@code eta.stream.buffer-size} events, dropping the subscriber's oldest event when the buffer is full. A
+ * subscriber with buffered events has a writer thread of its own, which ends once its buffer is empty, so a send
+ * blocked on a slow connection holds up no other subscriber: a slow subscriber only ever misses stale ETAs of its
+ * own. At most {@code eta.stream.writers} platform threads write at once; a subscriber that finds them all busy
+ * keeps its events buffered and tries again with its next ETA. A watchdog drops a subscriber whose send has been
+ * blocked for {@code eta.stream.send-timeout-millis} as soon as the timeout passes, and its stream is completed
+ * once the send returns. With {@code spring.threads.virtual.enabled=true} on Java 21 the writers are virtual
+ * threads and not limited. Subscribers of a bus get one {@value #BUS_EVENT}
+ * event per location with the ETAs of all its passengers in reach, subscribers of a passenger one {@value
+ * #PASSENGER_EVENT} event with theirs. At most {@code eta.stream.max-subscribers} subscribe at once.
+ */
+@Component
+public class EtaBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(EtaBroadcaster.class);
+
+    public static final String BUS_EVENT = "etas";
+    public static final String PASSENGER_EVENT = "eta";
+
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long sendTimeoutNanos;
+    private final Executor executor;
+    private final ThreadPoolExecutor platformExecutor;
+    private final ScheduledExecutorService watchdog;
+
+    private final Map<String, Set<Subscription>> busSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> passengerSubscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public EtaBroadcaster(@Value("${eta.stream.buffer-size:16}") int bufferSize,
+                          @Value("${eta.stream.max-subscribers:10000}") int maxSubscribers,
+                          @Value("${eta.stream.send-timeout-millis:10000}") long sendTimeoutMillis,
+                          @Value("${eta.stream.writers:64}") int writers,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("ETA stream buffer size must be positive");
+        }
+        if (sendTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("ETA stream send timeout must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "eta-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkIntervalMillis = Math.max(sendTimeoutMillis / 4, 1);
+        watchdog.scheduleWithFixedDelay(this::dropStuckSubscribers, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+
+        if (VirtualThreads.isEnabled(virtualThreads)) {
+            ThreadFactory threadFactory = VirtualThreads.factory("eta-stream-");
+            this.platformExecutor = null;
+            this.executor = task -> threadFactory.newThread(task).start();
+            return;
+        }
+        if (writers <= 0) {
+            throw new IllegalArgumentException("ETA stream writers must be positive");
+        }
+        // One thread per subscriber being written to, up to the limit; idle threads are kept a while for the next
+        // ETAs. The default abort policy rejects a subscriber when every writer is busy
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.platformExecutor = new ThreadPoolExecutor(writers, writers, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "eta-stream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        platformExecutor.allowCoreThreadTimeOut(true);
+        this.executor = platformExecutor;
+    }
+
+    /**
+     * Subscribe to the ETAs of all passengers of a bus.
+     *
+     * @return The subscription, or {@code null} if {@code eta.stream.max-subscribers} subscribe already
+     */
+    public Subscription subscribeToBus(String busId, EtaSink sink) {
+        return subscribe(busSubscriptions, busId, sink);
+    }
+
+    /**
+     * Subscribe to the ETAs of a passenger's bus to their pickup point.
+     *
+     * @return The subscription, or {@code null} if {@code eta.stream.max-subscribers} subscribe already
+     */
+    public Subscription subscribeToPassenger(String passengerId, EtaSink sink) {
+        return subscribe(passengerSubscriptions, passengerId, sink);
+    }
+
+    private Subscription subscribe(Map<String, Set<Subscription>> subscriptions, String key, EtaSink sink) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        Subscription subscription = new Subscription(subscriptions, key, sink);
+        subscriptions.compute(key, (k, subscribers) -> {
+            Set<Subscription> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            set.add(subscription);
+            return set;
+        });
+        return subscription;
+    }
+
+    /**
+     * Queue the ETAs computed for a bus location to the subscribers of the bus and of its passengers.
+     *
+     * @param pickups Pickup points the ETAs are to
+     * @param estimatedMinutes ETA to each pickup point, by position
+     */
+    public void publish(String busId, PickupPoints pickups, long[] estimatedMinutes) {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        Instant computedAt = Instant.now();
+        Set<Subscription> busSubscribers = busSubscriptions.get(busId);
+        List<EtaUpdate> updates = null;
+        if (busSubscribers != null) {
+            updates = new ArrayList<>(estimatedMinutes.length);
+            for (int i = 0; i < estimatedMinutes.length; i++) {
+                updates.add(new EtaUpdate(busId, pickups.getPassenger(i).passengerId(), estimatedMinutes[i],
+                        computedAt));
+            }
+            List<EtaUpdate> busUpdates = Collections.unmodifiableList(updates);
+            busSubscribers.forEach(subscription -> subscription.offer(BUS_EVENT, busUpdates));
+        }
+        if (passengerSubscriptions.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < estimatedMinutes.length; i++) {
+            String passengerId = pickups.getPassenger(i).passengerId();
+            Set<Subscription> passengerSubscribers = passengerSubscriptions.get(passengerId);
+            if (passengerSubscribers != null) {
+                EtaUpdate update = updates != null
+                        ? updates.get(i)
+                        : new EtaUpdate(busId, passengerId, estimatedMinutes[i], computedAt);
+                passengerSubscribers.forEach(subscription -> subscription.offer(PASSENGER_EVENT, update));
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Number of events written to subscribers.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Number of events dropped from full subscriber buffers.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void dropStuckSubscribers() {
+        long now = System.nanoTime();
+        for (Map<String, Set<Subscription>> subscriptions : List.of(busSubscriptions, passengerSubscriptions)) {
+            subscriptions.values().forEach(subscribers -> subscribers.forEach(subscription -> {
+                try {
+                    subscription.dropIfStuck(now);
+                } catch (RuntimeException e) {
+                    logger.warn("Checking ETA subscriber to {} failed", subscription.key, e);
+                }
+            }));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        for (Map<String, Set<Subscription>> subscriptions : List.of(busSubscriptions, passengerSubscriptions)) {
+            subscriptions.values().forEach(subscribers -> subscribers.forEach(subscription -> {
+                subscription.cancel();
+                subscription.sink.complete();
+            }));
+        }
+        if (platformExecutor != null) {
+            platformExecutor.shutdownNow();
+        }
+    }
+
+    private record Event(String name, Object data) {
+    }
+
+    /**
+     * One subscriber's interest in a bus or passenger, with the events waiting to be written to it.
+     */
+    public final class Subscription {
+
+        private final Map<String, Set<Subscription>> subscriptions;
+        private final String key;
+        private final EtaSink sink;
+
+        // Guarded by itself
+        private final ArrayDeque<Event> buffer = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicBoolean timedOut = new AtomicBoolean();
+        // System.nanoTime() when the send in progress started, 0 when none is
+        private volatile long sendStartedNanos;
+
+        private Subscription(Map<String, Set<Subscription>> subscriptions, String key, EtaSink sink) {
+            this.subscriptions = subscriptions;
+            this.key = key;
+            this.sink = sink;
+        }
+
+        private void offer(String name, Object data) {
+            if (cancelled.get()) {
+                return;
+            }
+            synchronized (buffer) {
+                if (buffer.size() == bufferSize) {
+                    buffer.pollFirst();
+                    droppedCount.incrementAndGet();
+                }
+                buffer.addLast(new Event(name, data));
+            }
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Every writer is busy: the events stay buffered for the next offer
+                    draining.set(false);
+                }
+            }
+        }
+
+        /**
+         * Drop the subscriber if the send in progress has been blocked for longer than the send timeout. Completing
+         * the stream may wait for the send, so it is left to the writer once the send returns.
+         */
+        private void dropIfStuck(long nowNanos) {
+            long sendStarted = sendStartedNanos;
+            if (sendStarted != 0 && nowNanos - sendStarted > sendTimeoutNanos && timedOut.compareAndSet(false, true)) {
+                logger.debug("ETA subscriber to {} has been blocked for over {}ms, dropping it", key,
+                        TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                cancel();
+                completeIfTimedOut();
+            }
+        }
+
+        /**
+         * Write the buffered events, and again as long as one arrives before the subscription stops draining.
+         */
+        private void drain() {
+            do {
+                Event event;
+                while (!cancelled.get() && (event = poll()) != null) {
+                    sendStartedNanos = System.nanoTime();
+                    try {
+                        sink.send(event.name(), event.data());
+                        sentCount.incrementAndGet();
+                    } catch (Exception e) {
+                        logger.debug("ETA subscriber to {} is gone: {}", key, e.getMessage());
+                        cancel();
+                    } finally {
+                        sendStartedNanos = 0;
+                    }
+                }
+                draining.set(false);
+            } while (!cancelled.get() && hasBuffered() && draining.compareAndSet(false, true));
+            completeIfTimedOut();
+        }
+
+        /**
+         * Complete the stream of a subscriber dropped by the watchdog, unless a writer is still sending to it.
+         * Holding the draining flag afterwards keeps it from being completed twice.
+         */
+        private void completeIfTimedOut() {
+            if (timedOut.get() && draining.compareAndSet(false, true)) {
+                sink.complete();
+            }
+        }
+
+        private Event poll() {
+            synchronized (buffer) {
+                return buffer.pollFirst();
+            }
+        }
+
+        private boolean hasBuffered() {
+            synchronized (buffer) {
+                return !buffer.isEmpty();
+            }
+        }
+
+        /**
+         * Stop pushing events to the subscriber. Events not written yet are discarded.
+         */
+        public void cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            subscriptions.computeIfPresent(key, (k, subscribers) -> {
+                subscribers.remove(this);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+            subscriberCount.decrementAndGet();
+            synchronized (buffer) {
+                buffer.clear();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.busreminder.push;
+
+import java.io.IOException;
+
+/**
+ * Connection to one ETA stream subscriber, such as a Server-Sent Events response.
+ */
+public interface EtaSink {
+
+    /**
+     * Write one event to the subscriber. May block while the subscriber's connection is slow.
+     *
+     * @throws IOException If the subscriber is gone; no further event is sent to it then
+     */
+    void send(String eventName, Object data) throws IOException;
+
+    /**
+     * End the stream, on shutdown or after a send was blocked past the send timeout.
+     */
+    void complete();
+}
@@ -1,14 +1,75 @@
 package com.busreminder.repository;
 
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.dto.PassengerTripState;
 import com.busreminder.model.BusPassenger;
+import com.busreminder.model.TripState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface BusPassengerRepository extends JpaRepository<BusPassenger, Long> {
     List<BusPassenger> findByPnrIdIn(List<String> pnrIds);
     List<BusPassenger> findByPnrIdInAndNotifiedFalse(List<String> pnrIds);
-}
 
+    /**
+     * Load the unnotified passengers of a bus in one query, joining through its PNRs.
+     * Returns read-only projections rather than managed entities.
+     *
+     * @param busId Bus identifier
+     * @return Unnotified passengers on the bus
+     */
+    @Query("SELECT new com.busreminder.dto.PassengerPickup(p.passengerId, p.passengerName, p.passengerPhone, " +
+           "p.pickupLatitude, p.pickupLongitude, p.pickupAddress) " +
+           "FROM BusPnr b JOIN BusPassenger p ON p.pnrId = b.pnrId " +
+           "WHERE b.busId = :busId AND p.notified = false")
+    List<PassengerPickup> findUnnotifiedPickupsByBusId(@Param("busId") String busId);
+
+    /**
+     * Load the trip states of every passenger on every bus that is in one of the given states.
+     *
+     * @param tripStates Trip states to load
+     * @return Bus, passenger and trip state of each matching row
+     */
+    @Query("SELECT new com.busreminder.dto.PassengerTripState(b.busId, p.passengerId, p.tripState) " +
+           "FROM BusPnr b JOIN BusPassenger p ON p.pnrId = b.pnrId " +
+           "WHERE p.tripState IN :tripStates")
+    List<PassengerTripState> findTripStates(@Param("tripStates") Collection<TripState> tripStates);
+
+    /**
+     * Mark every row for the given passenger IDs as notified in a single UPDATE.
+     *
+     * @param passengerIds Passenger identifiers to mark
+     * @param sentAt Time the SMS and call were dispatched
+     * @return Number of rows updated
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BusPassenger p SET p.notified = true, p.tripState = com.busreminder.model.TripState.NOTIFIED, " +
+           "p.notificationSentAt = :sentAt, p.callMadeAt = :sentAt " +
+           "WHERE p.passengerId IN :passengerIds")
+    int markNotified(@Param("passengerIds") Collection<String> passengerIds, @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Set the trip state of every row for the given passenger IDs in a single UPDATE.
+     *
+     * @param passengerIds Passenger identifiers to update
+     * @param tripState New trip state
+     * @param notified Value for the {@code notified} column, which keeps settled passengers out of the unnotified query
+     * @return Number of rows updated
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BusPassenger p SET p.tripState = :tripState, p.notified = :notified " +
+           "WHERE p.passengerId IN :passengerIds")
+    int updateTripState(@Param("passengerIds") Collection<String> passengerIds,
+                        @Param("tripState") TripState tripState, @Param("notified") boolean notified);
+}
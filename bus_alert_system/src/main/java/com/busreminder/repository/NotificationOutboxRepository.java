@@ -0,0 +1,131 @@
+package com.busreminder.repository;
+
+import com.busreminder.dto.PassengerTripState;
+import com.busreminder.model.NotificationOutbox;
+import com.busreminder.model.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, String> {
+
+    /**
+     * Entries no instance is delivering: pending ones, and those whose claim has run out. Oldest first.
+     *
+     * @param now Current time, against which leases are checked
+     * @param pageable Maximum number of entries to return
+     * @return Matching entries, oldest first
+     */
+    @Query("SELECT o FROM NotificationOutbox o WHERE o.status = com.busreminder.model.OutboxStatus.PENDING " +
+           "OR (o.status = com.busreminder.model.OutboxStatus.IN_PROGRESS AND o.leaseUntil < :now) " +
+           "ORDER BY o.createdAt ASC")
+    List<NotificationOutbox> findClaimable(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claim the given entries for one delivery in a single conditional UPDATE. Entries another instance claimed in
+     * the meantime are left alone, so each entry is claimed by one instance at a time.
+     *
+     * @param idempotencyKeys Entries to claim
+     * @param claimedBy Claim, unique to this delivery
+     * @param leaseUntil Time until which the claim holds
+     * @param now Current time, against which leases are checked
+     * @return Number of rows claimed
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE NotificationOutbox o SET o.status = com.busreminder.model.OutboxStatus.IN_PROGRESS, " +
+           "o.claimedBy = :claimedBy, o.leaseUntil = :leaseUntil " +
+           "WHERE o.idempotencyKey IN :idempotencyKeys " +
+           "AND (o.status = com.busreminder.model.OutboxStatus.PENDING " +
+           "OR (o.status = com.busreminder.model.OutboxStatus.IN_PROGRESS AND o.leaseUntil < :now))")
+    int claim(@Param("idempotencyKeys") Collection<String> idempotencyKeys, @Param("claimedBy") String claimedBy,
+              @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+
+    /**
+     * Extend a claim on the entries that still hold it.
+     *
+     * @param claimedBy Claim to extend
+     * @param leaseUntil New time until which the claim holds
+     * @return Number of rows still held by the claim
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE NotificationOutbox o SET o.leaseUntil = :leaseUntil " +
+           "WHERE o.claimedBy = :claimedBy AND o.status = com.busreminder.model.OutboxStatus.IN_PROGRESS")
+    int renewClaim(@Param("claimedBy") String claimedBy, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Entries still held by a claim.
+     *
+     * @param claimedBy Claim
+     * @param status {@link OutboxStatus#IN_PROGRESS}
+     * @return Matching entries
+     */
+    List<NotificationOutbox> findByClaimedByAndStatus(String claimedBy, OutboxStatus status);
+
+    /**
+     * Every passenger with an outbox entry, whatever its status, as an {@code IMMINENT} trip state.
+     * A passenger with an entry has been claimed for a notification and must not be queued again.
+     *
+     * @return Bus and passenger of every entry
+     */
+    @Query("SELECT DISTINCT new com.busreminder.dto.PassengerTripState(o.busId, o.passengerId, " +
+           "com.busreminder.model.TripState.IMMINENT) FROM NotificationOutbox o")
+    List<PassengerTripState> findClaims();
+
+    /**
+     * Set the status of the given entries in a single UPDATE.
+     *
+     * @param idempotencyKeys Entries to update
+     * @param status New status
+     * @param sentAt Time the entries were handed to Twilio
+     * @return Number of rows updated
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE NotificationOutbox o SET o.status = :status, o.sentAt = :sentAt, o.attempts = o.attempts + 1 " +
+           "WHERE o.idempotencyKey IN :idempotencyKeys")
+    int updateStatus(@Param("idempotencyKeys") Collection<String> idempotencyKeys,
+                     @Param("status") OutboxStatus status, @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Count a failed attempt for the given entries in a single UPDATE, giving up on those that reach the maximum and
+     * returning the others to pending for the sweep.
+     * The status is assigned before the attempts, since MySQL evaluates the assignments left to right.
+     *
+     * @param idempotencyKeys Entries whose delivery failed
+     * @param maxAttempts Attempts after which an entry is marked {@code FAILED}
+     * @return Number of rows updated
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE NotificationOutbox o SET " +
+           "o.status = CASE WHEN o.attempts + 1 >= :maxAttempts " +
+           "THEN com.busreminder.model.OutboxStatus.FAILED ELSE com.busreminder.model.OutboxStatus.PENDING END, " +
+           "o.attempts = o.attempts + 1 " +
+           "WHERE o.idempotencyKey IN :idempotencyKeys")
+    int recordFailedAttempt(@Param("idempotencyKeys") Collection<String> idempotencyKeys,
+                            @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Delete entries that are settled (sent, skipped or failed) and were created before the cutoff.
+     *
+     * @param cutoff Creation time before which settled entries are deleted
+     * @return Number of rows deleted
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM NotificationOutbox o " +
+           "WHERE o.status NOT IN (com.busreminder.model.OutboxStatus.PENDING, " +
+           "com.busreminder.model.OutboxStatus.IN_PROGRESS) AND o.createdAt < :cutoff")
+    int deleteSettledBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -11,6 +11,8 @@ public interface NotificationService {
     
     /**
      * Send notifications (SMS and voice calls) to passengers.
+     * The batch is appended to the notification outbox and delivered asynchronously on the notification
+     * dispatcher; this method only claims the passengers and queues the batch.
      * 
      * @param requests List of notification requests to process
      */
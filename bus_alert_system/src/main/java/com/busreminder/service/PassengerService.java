@@ -1,5 +1,8 @@
 package com.busreminder.service;
 
+import com.busreminder.cache.DuePickups;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.model.BusPnr;
 import com.busreminder.model.BusPassenger;
 
 import java.util.List;
@@ -19,9 +22,45 @@ public interface PassengerService {
     
     /**
      * Get all unnotified passengers for a given bus ID.
+     * Served from the in-memory passenger cache after the first load for the bus.
      * 
      * @param busId Bus identifier
-     * @return List of unnotified passengers on the bus
+     * @return Read-only pickup details of the unnotified passengers on the bus
      */
-    List<BusPassenger> getUnnotifiedPassengersByBusId(String busId);
+    List<PassengerPickup> getUnnotifiedPassengersByBusId(String busId);
+
+    /**
+     * Get the pickup points of unnotified passengers of a bus within a straight-line radius whose recheck time
+     * has come.
+     * Uses the spatial index of the cached passenger snapshot, so out-of-range passengers are never visited,
+     * and returns the coordinates as primitive arrays for the ETA calculation.
+     * 
+     * @param busId Bus identifier
+     * @param latitude Bus current latitude
+     * @param longitude Bus current longitude
+     * @param radiusMiles Search radius in miles
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @return Due pickup points of unnotified passengers within the radius
+     */
+    DuePickups getDuePickupsNear(String busId, double latitude, double longitude, double radiusMiles,
+                                 long nowNanos);
+
+    /**
+     * Link a PNR to a bus and invalidate the cached passengers for that bus.
+     * Passengers belonging to the PNR should be saved before the link is created.
+     * 
+     * @param busId Bus identifier
+     * @param pnrId PNR identifier
+     * @return Saved bus-PNR link
+     */
+    BusPnr addPnr(String busId, String pnrId);
+
+    /**
+     * Record that a passenger has boarded the bus, so they are no longer considered for a notification.
+     * 
+     * @param busId Bus identifier
+     * @param passengerId Passenger identifier
+     * @return {@code true} if the passenger was not already recorded as picked up
+     */
+    boolean markPickedUp(String busId, String passengerId);
 }
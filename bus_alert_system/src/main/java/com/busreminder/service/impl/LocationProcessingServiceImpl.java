@@ -1,185 +1,136 @@
 package com.busreminder.service.impl;
 
+import com.busreminder.cache.DuePickups;
+import com.busreminder.cache.PickupPoints;
 import com.busreminder.dto.NotificationRequest;
-import com.busreminder.model.BusPassenger;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.eta.TieredEtaStrategy;
+import com.busreminder.geo.GeoUtils;
+import com.busreminder.push.EtaBroadcaster;
 import com.busreminder.service.LocationProcessingService;
 import com.busreminder.service.PassengerService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.net.URI;
-import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 @Service
 public class LocationProcessingServiceImpl implements LocationProcessingService {
 
     private static final Logger logger = LoggerFactory.getLogger(LocationProcessingServiceImpl.class);
 
-    @Value("${google.maps.api.key:}")
-    private String googleMapsApiKey;
-
-    @Value("${google.maps.api.url:https://maps.googleapis.com/maps/api/distancematrix/json}")
-    private String googleMapsApiUrl;
-
     @Value("${notification.threshold.minutes:10}")
     private Long notificationThresholdMinutes;
 
+    @Value("${eta.max-speed-mph:70}")
+    private Double maxSpeedMph;
+
+    @Value("${eta.recheck.max-delay-seconds:60}")
+    private Long maxRecheckDelaySeconds;
+
     private final PassengerService passengerService;
-    private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private final TieredEtaStrategy etaStrategy;
+    private final EtaBroadcaster etaBroadcaster;
+
+    private final Timer processTimer;
+    private final Counter evaluatedPickups;
+    private final Counter deferredPickups;
 
-    public LocationProcessingServiceImpl(PassengerService passengerService, ObjectMapper objectMapper) {
+    // Clock the recheck times are measured on
+    private LongSupplier nanoClock = System::nanoTime;
+
+    public LocationProcessingServiceImpl(PassengerService passengerService, TieredEtaStrategy etaStrategy,
+                                         EtaBroadcaster etaBroadcaster, MeterRegistry meterRegistry) {
         this.passengerService = passengerService;
-        this.objectMapper = objectMapper;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.etaStrategy = etaStrategy;
+        this.etaBroadcaster = etaBroadcaster;
+
+        this.processTimer = Timer.builder("busreminder.location.process")
+                .description("Time to work out the notifications for one bus location")
+                .register(meterRegistry);
+        this.evaluatedPickups = Counter.builder("busreminder.location.pickups")
+                .description("Pickup points within reach of a bus location, by whether their ETA was evaluated")
+                .tag("outcome", "evaluated")
+                .register(meterRegistry);
+        this.deferredPickups = Counter.builder("busreminder.location.pickups")
+                .description("Pickup points within reach of a bus location, by whether their ETA was evaluated")
+                .tag("outcome", "deferred")
+                .register(meterRegistry);
     }
 
     @Override
     public List<NotificationRequest> processBusLocation(String busId, Double busLatitude, Double busLongitude) {
-        List<BusPassenger> passengers = passengerService.getUnnotifiedPassengersByBusId(busId);
+        return processTimer.record(() -> findNotificationsToSend(busId, busLatitude, busLongitude));
+    }
+
+    /**
+     * Evaluate the passengers within reach whose recheck time has come and schedule the next evaluation of those
+     * not notified.
+     * <p>
+     * No ETA provider reports an average speed above {@code maxSpeedMph}, so a passenger whose ETA is over the
+     * threshold cannot qualify before the bus, driving the straight line at that speed, is within the threshold
+     * of the pickup point. The passenger is skipped until then, for at most {@code maxRecheckDelaySeconds}; zero
+     * evaluates every passenger within reach on every location. Nothing is assumed about how the ETA changes
+     * along the road, so a pickup point already within reach is evaluated again on the next location.
+     */
+    private List<NotificationRequest> findNotificationsToSend(String busId, double busLatitude, double busLongitude) {
+        // A pickup point further away than the bus can drive within the threshold can never qualify,
+        // since road distance is never shorter than the straight line
+        long now = nanoClock.getAsLong();
+        double reachMiles = maxSpeedMph * notificationThresholdMinutes / 60.0;
+        DuePickups due = passengerService.getDuePickupsNear(busId, busLatitude, busLongitude, reachMiles, now);
+        deferredPickups.increment(due.getDeferredCount());
+        PickupPoints pickups = due.getPickupPoints();
         List<NotificationRequest> notificationsToSend = new ArrayList<>();
+        if (pickups.isEmpty()) {
+            return notificationsToSend;
+        }
+        evaluatedPickups.increment(pickups.size());
 
-        for (BusPassenger passenger : passengers) {
-            Long estimatedMinutes = calculateETA(
-                    busLatitude, 
-                    busLongitude, 
-                    passenger.getPickupLatitude().doubleValue(), 
-                    passenger.getPickupLongitude().doubleValue()
-            );
+        long threshold = notificationThresholdMinutes;
+        long[] estimatedMinutes = etaStrategy.estimateMinutes(busLatitude, busLongitude,
+                pickups.getLatitudes(), pickups.getLongitudes());
+        etaBroadcaster.publish(busId, pickups, estimatedMinutes);
 
-            if (estimatedMinutes != null && estimatedMinutes <= notificationThresholdMinutes) {
+        // Passenger details are only read for passengers that are actually notified
+        for (int i = 0; i < estimatedMinutes.length; i++) {
+            if (estimatedMinutes[i] <= threshold) {
+                PassengerPickup passenger = pickups.getPassenger(i);
                 NotificationRequest request = new NotificationRequest();
-                request.setPassengerId(passenger.getPassengerId());
-                request.setPassengerName(passenger.getPassengerName());
-                request.setPassengerPhone(passenger.getPassengerPhone());
-                request.setPickupLatitude(passenger.getPickupLatitude());
-                request.setPickupLongitude(passenger.getPickupLongitude());
-                request.setPickupAddress(passenger.getPickupAddress());
-                request.setEstimatedMinutes(estimatedMinutes);
+                request.setBusId(busId);
+                request.setPassengerId(passenger.passengerId());
+                request.setPassengerName(passenger.passengerName());
+                request.setPassengerPhone(passenger.passengerPhone());
+                request.setPickupLatitude(passenger.pickupLatitude());
+                request.setPickupLongitude(passenger.pickupLongitude());
+                request.setPickupAddress(passenger.pickupAddress());
+                request.setEstimatedMinutes(estimatedMinutes[i]);
                 
                 notificationsToSend.add(request);
+            } else if (maxRecheckDelaySeconds > 0) {
+                double distanceMiles = GeoUtils.distanceMiles(busLatitude, busLongitude,
+                        pickups.getLatitudes()[i], pickups.getLongitudes()[i]);
+                due.scheduleRecheck(i, now + recheckDelayNanos(distanceMiles - reachMiles));
             }
         }
 
         return notificationsToSend;
     }
 
-    private Long calculateETA(Double originLat, Double originLng, Double destLat, Double destLng) {
-        // If API key is not configured, fall back to Haversine formula
-        if (googleMapsApiKey == null || googleMapsApiKey.isEmpty()) {
-            logger.debug("Google Maps API key not configured, using Haversine formula for ETA calculation");
-            return calculateETAHaversine(originLat, originLng, destLat, destLng);
-        }
-
-        try {
-            // Build Google Maps Distance Matrix API URL
-            String origin = originLat + "," + originLng;
-            String destination = destLat + "," + destLng;
-            
-            String url = String.format("%s?origins=%s&destinations=%s&key=%s&units=imperial",
-                    googleMapsApiUrl,
-                    URLEncoder.encode(origin, StandardCharsets.UTF_8),
-                    URLEncoder.encode(destination, StandardCharsets.UTF_8),
-                    URLEncoder.encode(googleMapsApiKey, StandardCharsets.UTF_8));
-
-            // Make HTTP request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            // Parse JSON response
-            if (response.statusCode() == 200) {
-                JsonNode jsonNode = objectMapper.readTree(response.body());
-                
-                // Check for API errors
-                String status = jsonNode.path("status").asText();
-                if (!"OK".equals(status)) {
-                    String errorMessage = jsonNode.path("error_message").asText("Unknown error");
-                    logger.warn("Google Maps API returned status: {} - {}", status, errorMessage);
-                    return calculateETAHaversine(originLat, originLng, destLat, destLng);
-                }
-
-                // Extract duration from response
-                JsonNode rows = jsonNode.path("rows");
-                if (rows.isArray() && rows.size() > 0) {
-                    JsonNode elements = rows.get(0).path("elements");
-                    if (elements.isArray() && elements.size() > 0) {
-                        JsonNode element = elements.get(0);
-                        String elementStatus = element.path("status").asText();
-                        
-                        if ("OK".equals(elementStatus)) {
-                            // Get duration in seconds from "duration" field
-                            JsonNode duration = element.path("duration");
-                            if (duration.has("value")) {
-                                long durationSeconds = duration.path("value").asLong();
-                                // Convert to minutes
-                                long durationMinutes = (durationSeconds + 30) / 60; // Round up
-                                logger.debug("Calculated ETA: {} minutes ({} seconds)", durationMinutes, durationSeconds);
-                                return durationMinutes;
-                            }
-                        } else {
-                            logger.warn("Google Maps API element status: {}", elementStatus);
-                        }
-                    }
-                }
-            } else {
-                logger.error("Google Maps API returned status code: {}", response.statusCode());
-            }
-        } catch (Exception e) {
-            logger.error("Error calling Google Maps Distance Matrix API: {}", e.getMessage(), e);
-        }
-
-        // Fall back to Haversine formula if API call fails
-        logger.debug("Falling back to Haversine formula for ETA calculation");
-        return calculateETAHaversine(originLat, originLng, destLat, destLng);
-    }
-
     /**
-     * Calculate ETA using Haversine formula (great circle distance)
-     * Assumes average speed of 30 mph (48 km/h) for urban areas
+     * Time the bus needs at {@code maxSpeedMph} to cover the straight-line miles between it and the reach of the
+     * threshold, capped by {@code maxRecheckDelaySeconds}.
      */
-    private Long calculateETAHaversine(Double originLat, Double originLng, Double destLat, Double destLng) {
-        final double EARTH_RADIUS_MILES = 3958.8; // Earth radius in miles
-        final double AVERAGE_SPEED_MPH = 30.0; // Average urban speed in miles per hour
-
-        // Convert latitude and longitude from degrees to radians
-        double lat1Rad = Math.toRadians(originLat);
-        double lat2Rad = Math.toRadians(destLat);
-        double deltaLatRad = Math.toRadians(destLat - originLat);
-        double deltaLngRad = Math.toRadians(destLng - originLng);
-
-        // Haversine formula
-        double a = Math.sin(deltaLatRad / 2) * Math.sin(deltaLatRad / 2) +
-                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                Math.sin(deltaLngRad / 2) * Math.sin(deltaLngRad / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        double distanceMiles = EARTH_RADIUS_MILES * c;
-
-        // Calculate time in minutes (distance / speed * 60)
-        long estimatedMinutes = Math.round((distanceMiles / AVERAGE_SPEED_MPH) * 60);
-        
-        logger.debug("Haversine calculation: distance={} miles, ETA={} minutes", 
-                String.format("%.2f", distanceMiles), estimatedMinutes);
-        
-        return estimatedMinutes;
+    private long recheckDelayNanos(double milesBeyondReach) {
+        double seconds = Math.min(Math.max(milesBeyondReach, 0) / maxSpeedMph * 3600, maxRecheckDelaySeconds);
+        return (long) (seconds * TimeUnit.SECONDS.toNanos(1));
     }
 }
-
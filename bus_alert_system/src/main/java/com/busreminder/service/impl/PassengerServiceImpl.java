@@ -1,10 +1,17 @@
 package com.busreminder.service.impl;
 
+import com.busreminder.cache.BusPassengerCache;
+import com.busreminder.cache.DuePickups;
+import com.busreminder.dto.PassengerPickup;
 import com.busreminder.model.BusPnr;
 import com.busreminder.model.BusPassenger;
+import com.busreminder.model.TripState;
 import com.busreminder.repository.BusPnrRepository;
 import com.busreminder.repository.BusPassengerRepository;
 import com.busreminder.service.PassengerService;
+import com.busreminder.trip.TripStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -15,15 +22,41 @@ public class PassengerServiceImpl implements PassengerService {
 
     private final BusPnrRepository busPnrRepository;
     private final BusPassengerRepository busPassengerRepository;
+    private final BusPassengerCache busPassengerCache;
+    private final TripStateStore tripStateStore;
+
+    private final Timer passengersByBusTimer;
+    private final Timer unnotifiedByBusTimer;
+    private final Timer savePnrTimer;
 
     public PassengerServiceImpl(BusPnrRepository busPnrRepository, 
-                               BusPassengerRepository busPassengerRepository) {
+                               BusPassengerRepository busPassengerRepository,
+                               BusPassengerCache busPassengerCache,
+                               TripStateStore tripStateStore,
+                               MeterRegistry meterRegistry) {
         this.busPnrRepository = busPnrRepository;
         this.busPassengerRepository = busPassengerRepository;
+        this.busPassengerCache = busPassengerCache;
+        this.tripStateStore = tripStateStore;
+
+        this.passengersByBusTimer = dbTimer(meterRegistry, "passengers_by_bus");
+        this.unnotifiedByBusTimer = dbTimer(meterRegistry, "unnotified_passengers_by_bus");
+        this.savePnrTimer = dbTimer(meterRegistry, "save_bus_pnr");
+    }
+
+    private static Timer dbTimer(MeterRegistry meterRegistry, String query) {
+        return Timer.builder("busreminder.passenger.db.query")
+                .description("Time spent in the database by PassengerService, per operation")
+                .tag("query", query)
+                .register(meterRegistry);
     }
 
     @Override
     public List<BusPassenger> getPassengersByBusId(String busId) {
+        return passengersByBusTimer.record(() -> findPassengersByBusId(busId));
+    }
+
+    private List<BusPassenger> findPassengersByBusId(String busId) {
         List<BusPnr> pnrs = busPnrRepository.findByBusId(busId);
         List<String> pnrIds = pnrs.stream()
                 .map(BusPnr::getPnrId)
@@ -37,17 +70,46 @@ public class PassengerServiceImpl implements PassengerService {
     }
 
     @Override
-    public List<BusPassenger> getUnnotifiedPassengersByBusId(String busId) {
-        List<BusPnr> pnrs = busPnrRepository.findByBusId(busId);
-        List<String> pnrIds = pnrs.stream()
-                .map(BusPnr::getPnrId)
-                .collect(Collectors.toList());
-        
-        if (pnrIds.isEmpty()) {
-            return List.of();
+    public List<PassengerPickup> getUnnotifiedPassengersByBusId(String busId) {
+        return busPassengerCache.getSnapshot(busId, this::loadUnnotifiedPassengers).getPassengers();
+    }
+
+    @Override
+    public DuePickups getDuePickupsNear(String busId, double latitude, double longitude, double radiusMiles,
+                                        long nowNanos) {
+        return busPassengerCache.getSnapshot(busId, this::loadUnnotifiedPassengers)
+                .findDueWithin(latitude, longitude, radiusMiles, nowNanos);
+    }
+
+    @Override
+    public BusPnr addPnr(String busId, String pnrId) {
+        BusPnr busPnr = new BusPnr();
+        busPnr.setBusId(busId);
+        busPnr.setPnrId(pnrId);
+        BusPnr saved = savePnrTimer.record(() -> busPnrRepository.save(busPnr));
+
+        busPassengerCache.evict(busId);
+        return saved;
+    }
+
+    @Override
+    public boolean markPickedUp(String busId, String passengerId) {
+        if (!tripStateStore.advance(busId, passengerId, TripState.PICKED_UP)) {
+            return false;
         }
-        
-        return busPassengerRepository.findByPnrIdInAndNotifiedFalse(pnrIds);
+        busPassengerCache.markNotified(List.of(passengerId));
+        return true;
     }
-}
 
+    /**
+     * Load the unnotified passengers of a bus, leaving out those the trip state has already claimed.
+     * The {@code notified} column lags the trip state until the {@code TripStateWriter} has flushed it.
+     */
+    private List<PassengerPickup> loadUnnotifiedPassengers(String busId) {
+        List<PassengerPickup> passengers = unnotifiedByBusTimer.record(
+                () -> busPassengerRepository.findUnnotifiedPickupsByBusId(busId));
+        return passengers.stream()
+                .filter(passenger -> !tripStateStore.isClaimed(busId, passenger.passengerId()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,115 @@
+package com.busreminder.trip;
+
+import com.busreminder.dto.PassengerTripState;
+import com.busreminder.model.TripState;
+import com.busreminder.repository.BusPassengerRepository;
+import com.busreminder.repository.NotificationOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory trip state of every passenger on every bus; the source of truth for notification dedupe.
+ * <p>
+ * Passengers without an entry are {@link TripState#PENDING}. States only move forward, so a passenger can be
+ * claimed for a notification exactly once. Every change is handed to the {@link TripStateWriter}, which persists it
+ * asynchronously. On startup the settled states are loaded from the database, and every passenger with a
+ * notification outbox entry is {@link TripState#IMMINENT}; the outbox relay delivers any entry still pending.
+ */
+@Component
+public class TripStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripStateStore.class);
+
+    private final BusPassengerRepository busPassengerRepository;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final TripStateWriter tripStateWriter;
+
+    private final Map<String, Map<String, TripState>> statesByBus = new ConcurrentHashMap<>();
+
+    public TripStateStore(BusPassengerRepository busPassengerRepository,
+                          NotificationOutboxRepository notificationOutboxRepository,
+                          TripStateWriter tripStateWriter) {
+        this.busPassengerRepository = busPassengerRepository;
+        this.notificationOutboxRepository = notificationOutboxRepository;
+        this.tripStateWriter = tripStateWriter;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<PassengerTripState> settled = busPassengerRepository.findTripStates(
+                EnumSet.of(TripState.NOTIFIED, TripState.PICKED_UP));
+        List<PassengerTripState> claimed = notificationOutboxRepository.findClaims();
+        settled.forEach(this::restore);
+        claimed.forEach(this::restore);
+        logger.info("Rebuilt trip states of {} settled and {} claimed passengers on {} buses",
+                settled.size(), claimed.size(), statesByBus.size());
+    }
+
+    private void restore(PassengerTripState state) {
+        statesByBus.computeIfAbsent(state.busId(), id -> new ConcurrentHashMap<>())
+                .merge(state.passengerId(), state.tripState(), (a, b) -> a.canAdvanceTo(b) ? b : a);
+    }
+
+    /**
+     * Get the trip state of a passenger on a bus.
+     *
+     * @param busId Bus identifier
+     * @param passengerId Passenger identifier
+     * @return Current trip state, {@link TripState#PENDING} if nothing has happened yet
+     */
+    public TripState getState(String busId, String passengerId) {
+        Map<String, TripState> states = statesByBus.get(busId);
+        TripState state = states == null ? null : states.get(passengerId);
+        return state == null ? TripState.PENDING : state;
+    }
+
+    /**
+     * Whether the passenger has moved past {@link TripState#PENDING} on the bus and must not be notified again.
+     */
+    public boolean isClaimed(String busId, String passengerId) {
+        return getState(busId, passengerId) != TripState.PENDING;
+    }
+
+    /**
+     * Move a passenger forward to the given state.
+     *
+     * @param busId Bus identifier
+     * @param passengerId Passenger identifier
+     * @param next State to move to
+     * @return {@code true} if the state changed, {@code false} if the passenger was already in or past it
+     */
+    public boolean advance(String busId, String passengerId, TripState next) {
+        Map<String, TripState> states = statesByBus.computeIfAbsent(busId, id -> new ConcurrentHashMap<>());
+        boolean[] advanced = new boolean[1];
+        states.compute(passengerId, (id, current) -> {
+            TripState from = current == null ? TripState.PENDING : current;
+            if (!from.canAdvanceTo(next)) {
+                return current;
+            }
+            advanced[0] = true;
+            return next;
+        });
+        if (advanced[0]) {
+            tripStateWriter.enqueue(passengerId, next);
+        }
+        return advanced[0];
+    }
+
+    /**
+     * Number of passengers, across all buses, that are past {@link TripState#PENDING}.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, TripState> states : statesByBus.values()) {
+            size += states.size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,155 @@
+package com.busreminder.trip;
+
+import com.busreminder.model.TripState;
+import com.busreminder.repository.BusPassengerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes trip state changes to {@code bus_passenger} in the background.
+ * <p>
+ * Changes are coalesced per passenger, keeping only the latest state, and flushed every
+ * {@code flushIntervalMillis} with one bulk UPDATE per state and batch of passenger IDs. Notified passengers go
+ * through {@link BusPassengerRepository#markNotified}, so the send time is the time of the flush. A failed flush
+ * puts its changes back for the next one. Pending changes are flushed on shutdown.
+ */
+@Component
+public class TripStateWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripStateWriter.class);
+
+    @Value("${trip.state.flush-interval-millis:500}")
+    private Long flushIntervalMillis;
+
+    @Value("${trip.state.flush-batch-size:500}")
+    private Integer flushBatchSize;
+
+    private final BusPassengerRepository busPassengerRepository;
+
+    private final Map<String, TripState> pending = new ConcurrentHashMap<>();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Timer flushTimer;
+
+    private ScheduledExecutorService scheduler;
+
+    public TripStateWriter(BusPassengerRepository busPassengerRepository, MeterRegistry meterRegistry) {
+        this.busPassengerRepository = busPassengerRepository;
+
+        this.flushTimer = Timer.builder("busreminder.trip.state.flush")
+                .description("Time to write the pending trip state changes to the database")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> new Thread(task, "trip-state-writer"));
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(flushIntervalMillis * 2, TimeUnit.MILLISECONDS)) {
+                logger.warn("Trip state writer did not stop within {} ms", flushIntervalMillis * 2);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        if (!pending.isEmpty()) {
+            logger.warn("{} trip state changes were not written on shutdown", pending.size());
+        }
+    }
+
+    /**
+     * Queue a state change for the next flush, replacing any earlier state still pending for the passenger.
+     *
+     * @param passengerId Passenger identifier
+     * @param tripState New trip state
+     */
+    public void enqueue(String passengerId, TripState tripState) {
+        pending.merge(passengerId, tripState, TripStateWriter::later);
+    }
+
+    /**
+     * Write every pending change now.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<TripState, List<String>> passengersByState = new EnumMap<>(TripState.class);
+        for (String passengerId : pending.keySet()) {
+            TripState tripState = pending.remove(passengerId);
+            if (tripState != null) {
+                passengersByState.computeIfAbsent(tripState, s -> new ArrayList<>()).add(passengerId);
+            }
+        }
+        flushTimer.record(() -> passengersByState.forEach(this::write));
+    }
+
+    private void write(TripState tripState, List<String> passengerIds) {
+        for (int from = 0; from < passengerIds.size(); from += flushBatchSize) {
+            List<String> batch = passengerIds.subList(from, Math.min(from + flushBatchSize, passengerIds.size()));
+            try {
+                int updated = tripState == TripState.NOTIFIED
+                        ? busPassengerRepository.markNotified(batch, LocalDateTime.now())
+                        : busPassengerRepository.updateTripState(batch, tripState, tripState.isSettled());
+                written.addAndGet(batch.size());
+                logger.debug("Wrote trip state {} to {} rows for {} passengers", tripState, updated, batch.size());
+            } catch (Exception e) {
+                failed.addAndGet(batch.size());
+                logger.error("Error writing trip state {} for {} passengers: {}", tripState, batch.size(),
+                        e.getMessage(), e);
+                for (String passengerId : batch) {
+                    enqueue(passengerId, tripState);
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Trip state flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private static TripState later(TripState current, TripState next) {
+        return current.canAdvanceTo(next) ? next : current;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,193 @@
+package com.busreminder.cache;
+
+import com.busreminder.dto.PassengerPickup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusPassengerCacheTest {
+
+    private BusPassengerCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new BusPassengerCache();
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testGetUnnotifiedPassengers_LoadsOnceThenHits() {
+        // When
+        List<PassengerPickup> first = cache.getSnapshot("BUS001", this::load).getPassengers();
+        List<PassengerPickup> second = cache.getSnapshot("BUS001", this::load).getPassengers();
+
+        // Then
+        assertEquals(2, first.size());
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testGetUnnotifiedPassengers_ReturnsImmutableSnapshot() {
+        // When
+        List<PassengerPickup> passengers = cache.getSnapshot("BUS001", this::load).getPassengers();
+
+        // Then
+        assertThrows(UnsupportedOperationException.class, () -> passengers.remove(0));
+    }
+
+    @Test
+    void testMarkNotified_RemovesPassengerFromCachedBus() {
+        // Given
+        cache.getSnapshot("BUS001", this::load).getPassengers();
+
+        // When
+        cache.markNotified(List.of("BUS001_PASS01"));
+        List<PassengerPickup> result = cache.getSnapshot("BUS001", this::load).getPassengers();
+
+        // Then - snapshot is updated in place, no reload
+        assertEquals(1, result.size());
+        assertEquals("BUS001_PASS02", result.get(0).passengerId());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testMarkNotified_RebuildsSpatialIndex() {
+        // Given
+        cache.getSnapshot("BUS001", this::load);
+
+        // When
+        cache.markNotified(List.of("BUS001_PASS02"));
+        List<PassengerPickup> nearby = cache.getSnapshot("BUS001", this::load)
+                .findWithin(40.7128, -74.0060, 1.0).getPassengers();
+
+        // Then
+        assertEquals(1, nearby.size());
+        assertEquals("BUS001_PASS01", nearby.get(0).passengerId());
+    }
+
+    @Test
+    void testGetSnapshot_FindWithinSkipsFarPickups() {
+        // When - PASS01 and PASS02 are in Manhattan, PASS03 is near Philadelphia
+        BusPassengerSnapshot snapshot = cache.getSnapshot("BUS001", busId -> List.of(
+                createPassenger("PASS01"),
+                createPassenger("PASS02"),
+                createPassenger("PASS03", "40.0000", "-75.0000")));
+
+        // Then
+        assertEquals(3, snapshot.getPassengers().size());
+        assertEquals(2, snapshot.findWithin(40.7128, -74.0060, 12.0).size());
+        assertEquals(3, snapshot.findWithin(40.7128, -74.0060, 100.0).size());
+    }
+
+    @Test
+    void testFindDueWithin_SkipsPassengerUntilRecheck() {
+        // Given
+        BusPassengerSnapshot snapshot = cache.getSnapshot("BUS001", this::load);
+        DuePickups first = snapshot.findDueWithin(40.7128, -74.0060, 12.0, 0L);
+
+        // When
+        first.scheduleRecheck(0, 1_000L);
+        DuePickups beforeRecheck = snapshot.findDueWithin(40.7128, -74.0060, 12.0, 999L);
+        DuePickups atRecheck = snapshot.findDueWithin(40.7128, -74.0060, 12.0, 1_000L);
+
+        // Then
+        assertEquals(2, first.getPickupPoints().size());
+        assertEquals(1, beforeRecheck.getPickupPoints().size());
+        assertEquals(1, beforeRecheck.getDeferredCount());
+        assertEquals(2, atRecheck.getPickupPoints().size());
+        assertEquals(0, atRecheck.getDeferredCount());
+    }
+
+    @Test
+    void testMarkNotified_KeepsRecheckTimesOfRemainingPassengers() {
+        // Given - PASS02 is skipped until 1000
+        DuePickups due = cache.getSnapshot("BUS001", this::load).findDueWithin(40.7128, -74.0060, 12.0, 0L);
+        for (int i = 0; i < due.getPickupPoints().size(); i++) {
+            if ("BUS001_PASS02".equals(due.getPickupPoints().getPassenger(i).passengerId())) {
+                due.scheduleRecheck(i, 1_000L);
+            }
+        }
+
+        // When
+        cache.markNotified(List.of("BUS001_PASS01"));
+        DuePickups afterNotify = cache.getSnapshot("BUS001", this::load).findDueWithin(40.7128, -74.0060, 12.0, 500L);
+
+        // Then
+        assertTrue(afterNotify.getPickupPoints().isEmpty());
+        assertEquals(1, afterNotify.getDeferredCount());
+    }
+
+    @Test
+    void testMarkNotified_UnknownPassengerIsIgnored() {
+        // Given
+        cache.getSnapshot("BUS001", this::load).getPassengers();
+
+        // When
+        cache.markNotified(List.of("PASS999"));
+
+        // Then
+        assertEquals(2, cache.getSnapshot("BUS001", this::load).getPassengers().size());
+    }
+
+    @Test
+    void testEvict_ForcesReload() {
+        // Given
+        cache.getSnapshot("BUS001", this::load).getPassengers();
+
+        // When
+        cache.evict("BUS001");
+        cache.getSnapshot("BUS001", this::load).getPassengers();
+
+        // Then
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void testEvict_UnknownBusDoesNotCount() {
+        // When
+        cache.evict("BUS999");
+
+        // Then
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    void testInvalidateAll() {
+        // Given
+        cache.getSnapshot("BUS001", this::load).getPassengers();
+        cache.getSnapshot("BUS002", this::load).getPassengers();
+
+        // When
+        cache.invalidateAll();
+
+        // Then
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    private List<PassengerPickup> load(String busId) {
+        loads.incrementAndGet();
+        return List.of(createPassenger(busId + "_PASS01"), createPassenger(busId + "_PASS02"));
+    }
+
+    private PassengerPickup createPassenger(String passengerId) {
+        return createPassenger(passengerId, "40.7128", "-74.0060");
+    }
+
+    private PassengerPickup createPassenger(String passengerId, String latitude, String longitude) {
+        return new PassengerPickup(passengerId, "John Doe", "+1234567890",
+                new BigDecimal(latitude), new BigDecimal(longitude), "123 Main St");
+    }
+}
@@ -0,0 +1,115 @@
+package com.busreminder.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EtaCacheTest {
+
+    private AtomicLong now;
+    private EtaCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        cache = new EtaCache(60, 3, 7, now::get);
+    }
+
+    @Test
+    void testGet_Miss() {
+        // When
+        long result = cache.get(40.7128, -74.0060, 40.7580, -73.9855);
+
+        // Then
+        assertEquals(EtaCache.MISS, result);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.0, cache.getHitRate());
+    }
+
+    @Test
+    void testGet_HitWithinSameGeohashCell() {
+        // Given
+        cache.put(40.71280, -74.00600, 40.7580, -73.9855, 7L);
+
+        // When - origin moved a couple of meters
+        long result = cache.get(40.71282, -74.00601, 40.7580, -73.9855);
+
+        // Then
+        assertEquals(7L, result);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1.0, cache.getHitRate());
+    }
+
+    @Test
+    void testGet_MissInDifferentGeohashCell() {
+        // Given
+        cache.put(40.7128, -74.0060, 40.7580, -73.9855, 7L);
+
+        // When - origin moved about 1 km
+        long result = cache.get(40.7218, -74.0060, 40.7580, -73.9855);
+
+        // Then
+        assertEquals(EtaCache.MISS, result);
+    }
+
+    @Test
+    void testGet_MissForDifferentPickup() {
+        // Given
+        cache.put(40.7128, -74.0060, 40.7580, -73.9855, 7L);
+
+        // When
+        long result = cache.get(40.7128, -74.0060, 40.7590, -73.9855);
+
+        // Then
+        assertEquals(EtaCache.MISS, result);
+    }
+
+    @Test
+    void testGet_ExpiredEntry() {
+        // Given
+        cache.put(40.7128, -74.0060, 40.7580, -73.9855, 7L);
+
+        // When
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        long result = cache.get(40.7128, -74.0060, 40.7580, -73.9855);
+
+        // Then
+        assertEquals(EtaCache.MISS, result);
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() {
+        // Given - capacity is 3
+        cache.put(40.7128, -74.0060, 40.70, -73.90, 1L);
+        cache.put(40.7128, -74.0060, 40.71, -73.90, 2L);
+        cache.put(40.7128, -74.0060, 40.72, -73.90, 3L);
+        cache.get(40.7128, -74.0060, 40.70, -73.90);
+
+        // When
+        cache.put(40.7128, -74.0060, 40.73, -73.90, 4L);
+
+        // Then - the second entry was least recently used
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1L, cache.get(40.7128, -74.0060, 40.70, -73.90));
+        assertEquals(EtaCache.MISS, cache.get(40.7128, -74.0060, 40.71, -73.90));
+    }
+
+    @Test
+    void testClear() {
+        // Given
+        cache.put(40.7128, -74.0060, 40.7580, -73.9855, 7L);
+
+        // When
+        cache.clear();
+
+        // Then
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,70 @@
+package com.busreminder.cache;
+
+import com.busreminder.dto.PassengerPickup;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PickupPointsTest {
+
+    @Test
+    void testOf_ConvertsCoordinatesToDoubles() {
+        // When
+        PickupPoints points = PickupPoints.of(List.of(
+                createPassenger("PASS01", "40.7128", "-74.0060"),
+                createPassenger("PASS02", "40.7580", "-73.9855")));
+
+        // Then
+        assertEquals(2, points.size());
+        assertArrayEquals(new double[]{40.7128, 40.7580}, points.getLatitudes());
+        assertArrayEquals(new double[]{-74.0060, -73.9855}, points.getLongitudes());
+        assertEquals("PASS02", points.getPassenger(1).passengerId());
+    }
+
+    @Test
+    void testOf_EmptyList() {
+        // When
+        PickupPoints points = PickupPoints.of(List.of());
+
+        // Then
+        assertTrue(points.isEmpty());
+        assertSame(PickupPoints.empty(), points);
+    }
+
+    @Test
+    void testSelect_KeepsPassengersAndCoordinatesAligned() {
+        // Given
+        PickupPoints points = PickupPoints.of(List.of(
+                createPassenger("PASS01", "40.7128", "-74.0060"),
+                createPassenger("PASS02", "40.7580", "-73.9855"),
+                createPassenger("PASS03", "40.7614", "-73.9776")));
+
+        // When
+        PickupPoints selected = points.select(new int[]{2, 0});
+
+        // Then
+        assertEquals(2, selected.size());
+        assertEquals("PASS03", selected.getPassenger(0).passengerId());
+        assertEquals(40.7614, selected.getLatitudes()[0]);
+        assertEquals("PASS01", selected.getPassenger(1).passengerId());
+        assertEquals(-74.0060, selected.getLongitudes()[1]);
+        assertThrows(UnsupportedOperationException.class, () -> selected.getPassengers().clear());
+    }
+
+    @Test
+    void testSelect_NoPositions() {
+        // Given
+        PickupPoints points = PickupPoints.of(List.of(createPassenger("PASS01", "40.7128", "-74.0060")));
+
+        // When/Then
+        assertTrue(points.select(new int[0]).isEmpty());
+    }
+
+    private PassengerPickup createPassenger(String passengerId, String latitude, String longitude) {
+        return new PassengerPickup(passengerId, "John Doe", "+1234567890",
+                new BigDecimal(latitude), new BigDecimal(longitude), "123 Main St");
+    }
+}
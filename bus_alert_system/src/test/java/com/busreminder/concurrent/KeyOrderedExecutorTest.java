@@ -0,0 +1,132 @@
+package com.busreminder.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyOrderedExecutorTest {
+
+    private KeyOrderedExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdown(5);
+        }
+    }
+
+    @Test
+    void testExecute_SameKeyRunsInOrder() {
+        // Given
+        executor = new KeyOrderedExecutor("test-lane", 4);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            executor.execute("BUS001", () -> order.add(task));
+        }
+        assertTrue(executor.shutdown(5));
+
+        // Then
+        assertEquals(1000, order.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    void testExecute_OtherKeysRunWhileOneIsBlocked() throws InterruptedException {
+        // Given - two keys on different lanes
+        executor = new KeyOrderedExecutor("test-lane", 4);
+        String blockedKey = "BUS001";
+        String otherKey = keyOnOtherLane(blockedKey);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+
+        // When
+        executor.execute(blockedKey, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(otherKey, otherRan::countDown);
+
+        // Then
+        assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void testLaneOf_StableAndInRange() {
+        // Given
+        executor = new KeyOrderedExecutor("test-lane", 3);
+
+        // Then
+        assertEquals(0, executor.laneOf(null));
+        for (int i = 0; i < 100; i++) {
+            int lane = executor.laneOf("BUS" + i);
+            assertTrue(lane >= 0 && lane < 3);
+            assertEquals(lane, executor.laneOf("BUS" + i));
+        }
+    }
+
+    @Test
+    void testGetQueuedTaskCount() throws InterruptedException {
+        // Given - a lane busy with its first task
+        executor = new KeyOrderedExecutor("test-lane", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("BUS001", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        executor.execute("BUS001", () -> { });
+        executor.execute("BUS002", () -> { });
+
+        // Then
+        assertEquals(2, executor.getQueuedTaskCount());
+        release.countDown();
+    }
+
+    @Test
+    void testShutdown_RejectsNewTasks() {
+        // Given
+        executor = new KeyOrderedExecutor("test-lane", 2);
+        assertTrue(executor.shutdown(5));
+
+        // When & Then
+        assertThrows(RejectedExecutionException.class, () -> executor.execute("BUS001", () -> { }));
+    }
+
+    @Test
+    void testConstructor_NeedsALane() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyOrderedExecutor("test-lane", 0));
+    }
+
+    private String keyOnOtherLane(String key) {
+        for (int i = 0; ; i++) {
+            String candidate = "BUS" + i;
+            if (executor.laneOf(candidate) != executor.laneOf(key)) {
+                return candidate;
+            }
+        }
+    }
+}
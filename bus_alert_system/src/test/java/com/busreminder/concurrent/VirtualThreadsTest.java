@@ -0,0 +1,43 @@
+package com.busreminder.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadsTest {
+
+    @Test
+    void testIsEnabled_OnlyWhenRequested() {
+        assertFalse(VirtualThreads.isEnabled(null));
+        assertFalse(VirtualThreads.isEnabled(false));
+        assertEquals(VirtualThreads.isSupported(), VirtualThreads.isEnabled(true));
+    }
+
+    @Test
+    void testFactory_CreatesNamedThreads() throws InterruptedException {
+        assumeTrue(VirtualThreads.isSupported());
+
+        // Given
+        ThreadFactory factory = VirtualThreads.factory("test-");
+
+        // When
+        Thread thread = factory.newThread(() -> { });
+        thread.start();
+        thread.join();
+
+        // Then
+        assertTrue(thread.getName().startsWith("test-"));
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    void testFactory_UnsupportedBeforeJava21() {
+        assumeFalse(VirtualThreads.isSupported());
+
+        assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.factory("test-"));
+    }
+}
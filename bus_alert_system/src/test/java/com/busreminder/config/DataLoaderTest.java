@@ -1,5 +1,6 @@
 package com.busreminder.config;
 
+import com.busreminder.cache.BusPassengerCache;
 import com.busreminder.model.BusPnr;
 import com.busreminder.model.BusPassenger;
 import com.busreminder.repository.BusPnrRepository;
@@ -28,12 +29,15 @@ class DataLoaderTest {
     @Mock
     private BusPassengerRepository busPassengerRepository;
 
+    @Mock
+    private BusPassengerCache busPassengerCache;
+
     @InjectMocks
     private DataLoader dataLoader;
 
     @BeforeEach
     void setUp() {
-        reset(busPnrRepository, busPassengerRepository);
+        reset(busPnrRepository, busPassengerRepository, busPassengerCache);
     }
 
     @Test
@@ -48,6 +52,7 @@ class DataLoaderTest {
         verify(busPnrRepository).count();
         verify(busPnrRepository, never()).save(any(BusPnr.class));
         verify(busPassengerRepository, never()).save(any(BusPassenger.class));
+        verify(busPassengerCache, never()).invalidateAll();
     }
 
     @Test
@@ -66,6 +71,7 @@ class DataLoaderTest {
         verify(busPnrRepository, atLeastOnce()).count();
         verify(busPnrRepository, atLeastOnce()).save(any(BusPnr.class));
         verify(busPassengerRepository, atLeastOnce()).save(any(BusPassenger.class));
+        verify(busPassengerCache).invalidateAll();
     }
 
     @Test
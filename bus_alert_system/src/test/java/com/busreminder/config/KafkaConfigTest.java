@@ -1,10 +1,16 @@
 package com.busreminder.config;
 
+import com.busreminder.consumer.BusLocationEventDeserializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class KafkaConfigTest {
@@ -35,6 +41,26 @@ class KafkaConfigTest {
         assertNotNull(objectMapper);
         assertInstanceOf(ObjectMapper.class, objectMapper);
     }
-}
 
+    @Test
+    void testObjectMapperBean_WritesInstantsAsIsoStrings() throws Exception {
+        // When
+        String json = kafkaConfig.objectMapper().writeValueAsString(Instant.parse("2024-01-15T10:30:00Z"));
+
+        // Then
+        assertEquals("\"2024-01-15T10:30:00Z\"", json);
+    }
+
+    @Test
+    void testBusLocationDeserializerCustomizer() {
+        // Given
+        DefaultKafkaConsumerFactory<Object, Object> consumerFactory = new DefaultKafkaConsumerFactory<>(Map.of());
+
+        // When
+        kafkaConfig.busLocationDeserializerCustomizer(new ObjectMapper(), new SimpleMeterRegistry())
+                .customize(consumerFactory);
 
+        // Then
+        assertInstanceOf(BusLocationEventDeserializer.class, consumerFactory.getValueDeserializer());
+    }
+}
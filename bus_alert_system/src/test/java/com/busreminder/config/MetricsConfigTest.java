@@ -0,0 +1,256 @@
+package com.busreminder.config;
+
+import com.busreminder.cache.BusPassengerCache;
+import com.busreminder.cache.EtaCache;
+import com.busreminder.consumer.BusLocationConsumer;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.dto.NotificationRequest;
+import com.busreminder.eta.CircuitBreaker;
+import com.busreminder.eta.DistanceMatrixEtaProvider;
+import com.busreminder.ingest.BusLocationIngestor;
+import com.busreminder.model.NotificationChannel;
+import com.busreminder.model.NotificationOutbox;
+import com.busreminder.model.OutboxStatus;
+import com.busreminder.model.TripState;
+import com.busreminder.notification.NotificationDispatcher;
+import com.busreminder.notification.NotificationOutboxRelay;
+import com.busreminder.notification.TwilioNotificationSender;
+import com.busreminder.notification.TwilioRateLimiter;
+import com.busreminder.push.EtaBroadcaster;
+import com.busreminder.repository.BusPassengerRepository;
+import com.busreminder.repository.NotificationOutboxRepository;
+import com.busreminder.trip.TripStateStore;
+import com.busreminder.trip.TripStateWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MetricsConfigTest {
+
+    private MetricsConfig metricsConfig;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        metricsConfig = new MetricsConfig();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testBusPassengerCacheMetrics() {
+        // Given
+        BusPassengerCache cache = new BusPassengerCache();
+        metricsConfig.busPassengerCacheMetrics(cache).bindTo(meterRegistry);
+
+        // When
+        cache.getSnapshot("BUS001", busId -> List.<PassengerPickup>of());
+        cache.getSnapshot("BUS001", busId -> List.<PassengerPickup>of());
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("busreminder.cache.hits")
+                .tag("cache", "bus_passenger").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("busreminder.cache.misses")
+                .tag("cache", "bus_passenger").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("busreminder.cache.size")
+                .tag("cache", "bus_passenger").gauge().value());
+    }
+
+    @Test
+    void testEtaCacheMetrics() {
+        // Given
+        EtaCache cache = new EtaCache(60, 100, 7);
+        metricsConfig.etaCacheMetrics(cache).bindTo(meterRegistry);
+
+        // When
+        cache.get(40.7128, -74.0060, 40.7580, -73.9855);
+        cache.put(40.7128, -74.0060, 40.7580, -73.9855, 7L);
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("busreminder.cache.misses")
+                .tag("cache", "eta").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("busreminder.cache.hits")
+                .tag("cache", "eta").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("busreminder.cache.size")
+                .tag("cache", "eta").gauge().value());
+    }
+
+    @Test
+    void testEtaCircuitBreakerMetrics() {
+        // Given - a breaker that has opened twice
+        DistanceMatrixEtaProvider provider = mock(DistanceMatrixEtaProvider.class);
+        when(provider.getCircuitState()).thenReturn(CircuitBreaker.State.OPEN);
+        when(provider.getCircuitTransitionCount(any(CircuitBreaker.State.class))).thenReturn(0L);
+        when(provider.getCircuitTransitionCount(CircuitBreaker.State.OPEN)).thenReturn(2L);
+
+        // When
+        metricsConfig.etaCircuitBreakerMetrics(provider).bindTo(meterRegistry);
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("busreminder.eta.circuit.state").tag("state", "open").gauge().value());
+        assertEquals(0.0, meterRegistry.get("busreminder.eta.circuit.state").tag("state", "closed").gauge().value());
+        assertEquals(2.0, meterRegistry.get("busreminder.eta.circuit.transitions")
+                .tag("state", "open").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("busreminder.eta.circuit.transitions")
+                .tag("state", "half_open").functionCounter().count());
+    }
+
+    @Test
+    void testLocationLaneMetrics() {
+        // Given
+        BusLocationConsumer consumer = mock(BusLocationConsumer.class);
+        when(consumer.getQueuedRecordCount()).thenReturn(7);
+
+        // When
+        metricsConfig.locationLaneMetrics(consumer).bindTo(meterRegistry);
+
+        // Then
+        assertEquals(7.0, meterRegistry.get("busreminder.location.lanes.queued").gauge().value());
+    }
+
+    @Test
+    void testLocationIngestMetrics() {
+        // Given
+        BusLocationIngestor ingestor = mock(BusLocationIngestor.class);
+        when(ingestor.getPendingBusCount()).thenReturn(3);
+
+        // When
+        metricsConfig.locationIngestMetrics(ingestor).bindTo(meterRegistry);
+
+        // Then
+        assertEquals(3.0, meterRegistry.get("busreminder.location.ingest.pending.buses").gauge().value());
+    }
+
+    @Test
+    void testEtaStreamMetrics() {
+        // Given
+        EtaBroadcaster broadcaster = mock(EtaBroadcaster.class);
+        when(broadcaster.getSubscriberCount()).thenReturn(3);
+        when(broadcaster.getSentCount()).thenReturn(40L);
+        when(broadcaster.getDroppedCount()).thenReturn(2L);
+
+        // When
+        metricsConfig.etaStreamMetrics(broadcaster).bindTo(meterRegistry);
+
+        // Then
+        assertEquals(3.0, meterRegistry.get("busreminder.eta.stream.subscribers").gauge().value());
+        assertEquals(40.0, meterRegistry.get("busreminder.eta.stream.events")
+                .tag("outcome", "sent").functionCounter().count());
+        assertEquals(2.0, meterRegistry.get("busreminder.eta.stream.events")
+                .tag("outcome", "dropped").functionCounter().count());
+    }
+
+    @Test
+    void testTripStateMetrics() {
+        // Given
+        BusPassengerRepository repository = mock(BusPassengerRepository.class);
+        TripStateWriter writer = new TripStateWriter(repository, meterRegistry);
+        ReflectionTestUtils.setField(writer, "flushBatchSize", 500);
+        TripStateStore store = new TripStateStore(repository, mock(NotificationOutboxRepository.class), writer);
+        metricsConfig.tripStateMetrics(store, writer).bindTo(meterRegistry);
+
+        // When
+        store.advance("BUS001", "PASS001", TripState.IMMINENT);
+        store.advance("BUS001", "PASS002", TripState.IMMINENT);
+        int pendingBeforeFlush = (int) meterRegistry.get("busreminder.trip.state.pending.writes").gauge().value();
+        writer.flush();
+
+        // Then
+        assertEquals(2, pendingBeforeFlush);
+        assertEquals(2.0, meterRegistry.get("busreminder.trip.state.passengers").gauge().value());
+        assertEquals(0.0, meterRegistry.get("busreminder.trip.state.pending.writes").gauge().value());
+        assertEquals(2.0, meterRegistry.get("busreminder.trip.state.writes")
+                .tag("outcome", "written").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("busreminder.trip.state.writes")
+                .tag("outcome", "failed").functionCounter().count());
+    }
+
+    @Test
+    void testNotificationDispatcherMetrics() {
+        // Given
+        NotificationDispatcher dispatcher = new NotificationDispatcher(1, 10, 5, false);
+        metricsConfig.notificationDispatcherMetrics(dispatcher).bindTo(meterRegistry);
+
+        // When
+        dispatcher.execute(() -> { });
+        dispatcher.execute(() -> {
+            throw new IllegalStateException("Twilio down");
+        });
+        dispatcher.shutdown();
+
+        // Then
+        assertEquals(0.0, meterRegistry.get("busreminder.notification.queue.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("busreminder.notification.batches")
+                .tag("outcome", "completed").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("busreminder.notification.batches")
+                .tag("outcome", "failed").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("busreminder.notification.caller.runs").functionCounter().count());
+    }
+
+    @Test
+    void testNotificationOutboxMetrics() {
+        // Given - a dispatcher that runs batches inline and a sender whose SMS succeeds and call fails
+        NotificationOutboxRepository repository = mock(NotificationOutboxRepository.class);
+        TwilioNotificationSender sender = mock(TwilioNotificationSender.class);
+        when(sender.send(any(NotificationOutbox.class))).thenReturn(OutboxStatus.SENT, OutboxStatus.FAILED);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(1, 10, 5, false) {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+        };
+        NotificationOutboxRelay relay = new NotificationOutboxRelay(repository, sender, dispatcher,
+                mock(TripStateStore.class), meterRegistry);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(relay, "leaseSeconds", 300L);
+        metricsConfig.notificationOutboxMetrics(relay).bindTo(meterRegistry);
+        NotificationRequest request = new NotificationRequest();
+        request.setBusId("BUS001");
+        request.setPassengerId("PASS001");
+
+        // When
+        relay.append(List.of(request));
+
+        // Then
+        assertEquals(0.0, meterRegistry.get("busreminder.notification.outbox.in.flight").gauge().value());
+        assertEquals(0.0, meterRegistry.get("busreminder.notification.outbox.append.failures")
+                .functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("busreminder.notification.outbox.duplicates")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("busreminder.notification.outbox.deliveries")
+                .tag("outcome", "sent").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("busreminder.notification.outbox.deliveries")
+                .tag("outcome", "skipped").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("busreminder.notification.outbox.deliveries")
+                .tag("outcome", "failed").functionCounter().count());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testTwilioRateLimiterMetrics() throws InterruptedException {
+        // Given
+        TwilioRateLimiter rateLimiter = new TwilioRateLimiter(meterRegistry);
+        ReflectionTestUtils.setField(rateLimiter, "smsPerSecond", 100.0);
+        ReflectionTestUtils.setField(rateLimiter, "callsPerSecond", 100.0);
+        ReflectionTestUtils.setField(rateLimiter, "burst", 10);
+        ReflectionTestUtils.setField(rateLimiter, "maxConcurrentRequests", 5);
+        rateLimiter.init();
+        metricsConfig.twilioRateLimiterMetrics(rateLimiter).bindTo(meterRegistry);
+
+        // When - observed from inside a request
+        double openDuringRequest = rateLimiter.execute(NotificationChannel.SMS, List.of("+15550000001"),
+                sender -> meterRegistry.get("busreminder.twilio.requests.open").gauge().value());
+
+        // Then
+        assertEquals(1.0, openDuringRequest);
+        assertEquals(0.0, meterRegistry.get("busreminder.twilio.requests.open").gauge().value());
+    }
+}
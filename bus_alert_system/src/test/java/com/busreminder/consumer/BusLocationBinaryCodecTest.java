@@ -0,0 +1,106 @@
+package com.busreminder.consumer;
+
+import com.busreminder.dto.BusLocationEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusLocationBinaryCodecTest {
+
+    @Test
+    void testEncode_RoundTrip() {
+        // Given
+        BusLocationEvent event = createEvent("BUS001", 40.7128, -74.0060, "2024-01-15T10:30:00.123Z");
+
+        // When
+        byte[] encoded = BusLocationBinaryCodec.encode(event);
+        BusLocationEvent decoded = BusLocationBinaryCodec.decode(encoded);
+
+        // Then
+        assertEquals(34, encoded.length);
+        assertTrue(BusLocationBinaryCodec.isBinary(encoded));
+        assertEquals("BUS001", decoded.getBusId());
+        assertEquals(40.7128, decoded.getLatitude());
+        assertEquals(-74.0060, decoded.getLongitude());
+        assertEquals(Instant.parse("2024-01-15T10:30:00.123Z").toEpochMilli(), decoded.getTimestampMillis());
+        assertNull(decoded.getTimestamp());
+    }
+
+    @Test
+    void testEncode_MissingFields() {
+        // Given - no coordinates, and a timestamp that cannot be parsed
+        BusLocationEvent event = createEvent("BÜS-ÉTÉ", null, null, "yesterday");
+
+        // When
+        BusLocationEvent decoded = BusLocationBinaryCodec.decode(BusLocationBinaryCodec.encode(event));
+
+        // Then
+        assertEquals("BÜS-ÉTÉ", decoded.getBusId());
+        assertNull(decoded.getLatitude());
+        assertNull(decoded.getLongitude());
+        assertNull(decoded.getTimestampMillis());
+    }
+
+    @Test
+    void testEncode_PrefersDecodedMillis() {
+        // Given
+        BusLocationEvent event = createEvent(null, 40.7128, -74.0060, null);
+        event.setTimestampMillis(1_705_314_600_000L);
+
+        // When
+        BusLocationEvent decoded = BusLocationBinaryCodec.decode(BusLocationBinaryCodec.encode(event));
+
+        // Then
+        assertNull(decoded.getBusId());
+        assertEquals(1_705_314_600_000L, decoded.getTimestampMillis());
+    }
+
+    @Test
+    void testEncode_BusIdTooLong() {
+        // Given
+        BusLocationEvent event = createEvent("B".repeat(256), 40.7128, -74.0060, null);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> BusLocationBinaryCodec.encode(event));
+    }
+
+    @Test
+    void testIsBinary_JsonIsNot() {
+        assertFalse(BusLocationBinaryCodec.isBinary("{\"bus_id\":\"BUS001\"}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(BusLocationBinaryCodec.isBinary(new byte[0]));
+    }
+
+    @Test
+    void testDecode_RejectsMalformed() {
+        // Given
+        byte[] encoded = BusLocationBinaryCodec.encode(
+                createEvent("BUS001", 40.7128, -74.0060, "2024-01-15T10:30:00Z"));
+        byte[] otherVersion = encoded.clone();
+        otherVersion[1] = 2;
+        byte[] unknownField = encoded.clone();
+        unknownField[2] |= 1 << 4;
+        byte[] wrongBusIdLength = encoded.clone();
+        wrongBusIdLength[27] = 7;
+
+        // Then
+        assertNull(BusLocationBinaryCodec.decode(otherVersion));
+        assertNull(BusLocationBinaryCodec.decode(unknownField));
+        assertNull(BusLocationBinaryCodec.decode(wrongBusIdLength));
+        assertNull(BusLocationBinaryCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertNull(BusLocationBinaryCodec.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+        assertNull(BusLocationBinaryCodec.decode(Arrays.copyOf(encoded, 2)));
+    }
+
+    private BusLocationEvent createEvent(String busId, Double latitude, Double longitude, String timestamp) {
+        BusLocationEvent event = new BusLocationEvent();
+        event.setBusId(busId);
+        event.setLatitude(latitude);
+        event.setLongitude(longitude);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+}
@@ -5,18 +5,27 @@ import com.busreminder.dto.BusLocationEvent;
 import com.busreminder.dto.NotificationRequest;
 import com.busreminder.service.LocationProcessingService;
 import com.busreminder.service.NotificationService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -25,9 +34,6 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class BusLocationConsumerTest {
 
-    @Mock
-    private ObjectMapper objectMapper;
-
     @Mock
     private LocationProcessingService locationProcessingService;
 
@@ -37,75 +43,240 @@ class BusLocationConsumerTest {
     @Mock
     private KafkaConfig kafkaConfig;
 
-    @InjectMocks
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private MeterRegistry meterRegistry;
     private BusLocationConsumer busLocationConsumer;
 
+    private long nextOffset;
+
     @BeforeEach
     void setUp() {
-        reset(objectMapper, locationProcessingService, notificationService, kafkaConfig);
+        meterRegistry = new SimpleMeterRegistry();
+        busLocationConsumer = new BusLocationConsumer(locationProcessingService, notificationService, kafkaConfig,
+                meterRegistry, 4, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        busLocationConsumer.shutdown();
     }
 
     @Test
     void testConsume_ValidMessage() throws Exception {
         // Given
-        String message = "{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060,\"timestamp\":\"2024-01-15T10:30:00Z\"}";
-        BusLocationEvent event = new BusLocationEvent();
-        event.setBusId("BUS001");
-        event.setLatitude(40.7128);
-        event.setLongitude(-74.0060);
-        event.setTimestamp("2024-01-15T10:30:00Z");
+        BusLocationEvent event = createEvent("BUS001", 40.7128, -74.0060, "2024-01-15T10:30:00Z");
 
         NotificationRequest notificationRequest = new NotificationRequest();
         List<NotificationRequest> notifications = Arrays.asList(notificationRequest);
 
-        when(objectMapper.readValue(message, BusLocationEvent.class)).thenReturn(event);
         when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
                 .thenReturn(notifications);
 
         // When
-        busLocationConsumer.consume(message);
+        consume(record(event));
 
         // Then
-        verify(objectMapper, times(1)).readValue(eq(message), eq(BusLocationEvent.class));
         verify(locationProcessingService, times(1)).processBusLocation(eq("BUS001"), eq(40.7128), eq(-74.0060));
         verify(notificationService, times(1)).sendNotifications(eq(notifications));
+        verify(acknowledgment).acknowledge();
+        assertEquals(1, meterRegistry.get("busreminder.location.consume").timer().count());
+        assertEquals(1, meterRegistry.get("busreminder.location.event.age").timer().count());
     }
 
     @Test
     void testConsume_NoNotificationsToSend() throws Exception {
         // Given
-        String message = "{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060,\"timestamp\":\"2024-01-15T10:30:00Z\"}";
-        BusLocationEvent event = new BusLocationEvent();
-        event.setBusId("BUS001");
-        event.setLatitude(40.7128);
-        event.setLongitude(-74.0060);
+        BusLocationEvent event = createEvent("BUS001", 40.7128, -74.0060, null);
 
-        when(objectMapper.readValue(message, BusLocationEvent.class)).thenReturn(event);
         when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
                 .thenReturn(Collections.emptyList());
 
         // When
-        busLocationConsumer.consume(message);
+        consume(record(event));
 
         // Then
-        verify(objectMapper, times(1)).readValue(eq(message), eq(BusLocationEvent.class));
         verify(locationProcessingService, times(1)).processBusLocation(eq("BUS001"), eq(40.7128), eq(-74.0060));
         verify(notificationService, never()).sendNotifications(any());
     }
 
     @Test
     void testConsume_InvalidJson() throws Exception {
-        // Given
-        String invalidMessage = "invalid json";
-        when(objectMapper.readValue(invalidMessage, BusLocationEvent.class))
-                .thenThrow(new RuntimeException("Invalid JSON"));
+        // Given - the deserializer could not read the record
+        ConsumerRecord<String, BusLocationEvent> invalid = record(null);
 
         // When
-        busLocationConsumer.consume(invalidMessage);
+        consume(invalid);
 
-        // Then
-        verify(objectMapper, times(1)).readValue(eq(invalidMessage), eq(BusLocationEvent.class));
+        // Then - acknowledged, so its offset can be committed
         verify(locationProcessingService, never()).processBusLocation(anyString(), any(Double.class), any(Double.class));
         verify(notificationService, never()).sendNotifications(any());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testConsume_ProcessingErrorIsLogged() throws Exception {
+        // Given
+        when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
+                .thenThrow(new RuntimeException("Processing error"));
+
+        // When - must not throw, so the record is not redelivered forever
+        consume(record(createEvent("BUS001", 40.7128, -74.0060, null)));
+
+        // Then
+        verify(notificationService, never()).sendNotifications(any());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testConsume_EventAgeFromDecodedTimestamp() throws Exception {
+        // Given - only the decoded epoch milliseconds, five seconds ago
+        BusLocationEvent event = createEvent("BUS001", 40.7128, -74.0060, null);
+        event.setTimestampMillis(Instant.now().minusSeconds(5).toEpochMilli());
+        when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
+                .thenReturn(Collections.emptyList());
+
+        // When
+        consume(record(event));
+
+        // Then
+        double ageSeconds = meterRegistry.get("busreminder.location.event.age").timer()
+                .totalTime(TimeUnit.SECONDS);
+        assertEquals(5.0, ageSeconds, 1.0);
+    }
+
+    @Test
+    void testConsume_KeepsOrderPerBusAcrossLanes() throws Exception {
+        // Given - three buses interleaved, each reporting increasing latitudes
+        Map<String, List<Double>> processed = new ConcurrentHashMap<>();
+        when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
+                .thenAnswer(invocation -> {
+                    processed.computeIfAbsent(invocation.getArgument(0), busId -> Collections.synchronizedList(
+                            new ArrayList<>())).add(invocation.getArgument(1));
+                    return Collections.emptyList();
+                });
+        List<ConsumerRecord<String, BusLocationEvent>> records = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            records.add(record(createEvent("BUS00" + (i % 3), i, -74.0060, null)));
+        }
+
+        // When
+        consumeAll(records);
+
+        // Then - every record processed and acknowledged, each bus in the order its records arrived
+        for (int bus = 0; bus < 3; bus++) {
+            List<Double> latitudes = processed.get("BUS00" + bus);
+            assertEquals(100, latitudes.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i * 3 + bus, latitudes.get(i).doubleValue());
+            }
+        }
+        verify(acknowledgment, times(300)).acknowledge();
+    }
+
+    @Test
+    void testConsumeBatch_KeepsNewestPositionPerBus() throws Exception {
+        // Given - BUS001 reports twice (out of order), BUS002 once
+        ConsumerRecord<String, BusLocationEvent> newer =
+                record(createEvent("BUS001", 40.7200, -74.0000, "2024-01-15T10:31:00Z"));
+        ConsumerRecord<String, BusLocationEvent> older =
+                record(createEvent("BUS001", 40.7100, -74.0100, "2024-01-15T10:30:00Z"));
+        ConsumerRecord<String, BusLocationEvent> other =
+                record(createEvent("BUS002", 40.7500, -73.9800, "2024-01-15T10:30:30Z"));
+        when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
+                .thenReturn(Collections.emptyList());
+
+        // When
+        busLocationConsumer.consumeBatch(Arrays.asList(newer, older, other), acknowledgment);
+
+        // Then - the older BUS001 fix is dropped even though it arrived later
+        verify(locationProcessingService, times(1)).processBusLocation(eq("BUS001"), eq(40.7200), eq(-74.0000));
+        verify(locationProcessingService, times(1)).processBusLocation(eq("BUS002"), eq(40.7500), eq(-73.9800));
+        verify(locationProcessingService, times(2)).processBusLocation(anyString(), any(Double.class), any(Double.class));
+        verify(acknowledgment, times(1)).acknowledge();
+    }
+
+    @Test
+    void testConsumeBatch_WithoutTimestampsLaterRecordWins() throws Exception {
+        // Given
+        ConsumerRecord<String, BusLocationEvent> first =
+                record(createEvent("BUS001", 40.7100, -74.0100, null));
+        ConsumerRecord<String, BusLocationEvent> second =
+                record(createEvent("BUS001", 40.7200, -74.0000, null));
+        when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
+                .thenReturn(Collections.emptyList());
+
+        // When
+        busLocationConsumer.consumeBatch(Arrays.asList(first, second), acknowledgment);
+
+        // Then
+        verify(locationProcessingService, times(1)).processBusLocation(anyString(), any(Double.class), any(Double.class));
+        verify(locationProcessingService).processBusLocation(eq("BUS001"), eq(40.7200), eq(-74.0000));
+    }
+
+    @Test
+    void testConsumeBatch_SkipsInvalidRecordsAndSendsNotifications() throws Exception {
+        // Given
+        List<NotificationRequest> notifications = Arrays.asList(new NotificationRequest());
+        ConsumerRecord<String, BusLocationEvent> invalid = record(null);
+        ConsumerRecord<String, BusLocationEvent> valid =
+                record(createEvent("BUS001", 40.7128, -74.0060, "2024-01-15T10:30:00Z"));
+        when(locationProcessingService.processBusLocation(anyString(), any(Double.class), any(Double.class)))
+                .thenReturn(notifications);
+
+        // When
+        busLocationConsumer.consumeBatch(Arrays.asList(invalid, valid), acknowledgment);
+
+        // Then
+        verify(locationProcessingService, times(1)).processBusLocation(eq("BUS001"), eq(40.7128), eq(-74.0060));
+        verify(notificationService, times(1)).sendNotifications(eq(notifications));
+    }
+
+    @Test
+    void testConsumeBatch_ProcessingErrorDoesNotStopOtherBuses() throws Exception {
+        // Given
+        ConsumerRecord<String, BusLocationEvent> bus1 =
+                record(createEvent("BUS001", 40.7128, -74.0060, null));
+        ConsumerRecord<String, BusLocationEvent> bus2 =
+                record(createEvent("BUS002", 40.7500, -73.9800, null));
+        when(locationProcessingService.processBusLocation(eq("BUS001"), any(Double.class), any(Double.class)))
+                .thenThrow(new RuntimeException("Processing error"));
+        when(locationProcessingService.processBusLocation(eq("BUS002"), any(Double.class), any(Double.class)))
+                .thenReturn(Collections.emptyList());
+
+        // When
+        busLocationConsumer.consumeBatch(Arrays.asList(bus1, bus2), acknowledgment);
+
+        // Then
+        verify(locationProcessingService).processBusLocation(eq("BUS002"), eq(40.7500), eq(-73.9800));
+    }
+
+    private void consume(ConsumerRecord<String, BusLocationEvent> record) {
+        consumeAll(List.of(record));
+    }
+
+    /**
+     * Hand records to the listener and wait for the lanes to process them.
+     */
+    private void consumeAll(List<ConsumerRecord<String, BusLocationEvent>> records) {
+        for (ConsumerRecord<String, BusLocationEvent> record : records) {
+            busLocationConsumer.consume(record, acknowledgment);
+        }
+        busLocationConsumer.shutdown();
+    }
+
+    private ConsumerRecord<String, BusLocationEvent> record(BusLocationEvent event) {
+        String key = event != null ? event.getBusId() : null;
+        return new ConsumerRecord<>("bus-location-updates", 0, nextOffset++, key, event);
+    }
+
+    private BusLocationEvent createEvent(String busId, double latitude, double longitude, String timestamp) {
+        BusLocationEvent event = new BusLocationEvent();
+        event.setBusId(busId);
+        event.setLatitude(latitude);
+        event.setLongitude(longitude);
+        event.setTimestamp(timestamp);
+        return event;
     }
 }
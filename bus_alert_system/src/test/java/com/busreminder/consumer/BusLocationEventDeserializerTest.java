@@ -0,0 +1,113 @@
+package com.busreminder.consumer;
+
+import com.busreminder.dto.BusLocationEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusLocationEventDeserializerTest {
+
+    private MeterRegistry meterRegistry;
+    private BusLocationEventDeserializer deserializer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deserializer = new BusLocationEventDeserializer(new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    void testDeserialize_Decoded() {
+        // When
+        BusLocationEvent event = deserialize(
+                "{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060,\"timestamp\":\"2024-01-15T10:30:00Z\"}");
+
+        // Then
+        assertEquals("BUS001", event.getBusId());
+        assertNotNull(event.getTimestampMillis());
+        assertEquals(1.0, count("decoded"));
+        assertEquals(0.0, count("jackson"));
+    }
+
+    @Test
+    void testDeserialize_EscapedStringFallsBackToJackson() {
+        // When
+        BusLocationEvent event = deserialize("{\"bus_id\":\"BUS\\u0030\\u0030\\u0031\",\"latitude\":40.7128,"
+                + "\"longitude\":-74.0060}");
+
+        // Then
+        assertEquals("BUS001", event.getBusId());
+        assertEquals(40.7128, event.getLatitude());
+        assertEquals(1.0, count("jackson"));
+    }
+
+    @Test
+    void testDeserialize_BinaryFromSerializer() {
+        // Given
+        BusLocationEvent sent = new BusLocationEvent();
+        sent.setBusId("BUS001");
+        sent.setLatitude(40.7128);
+        sent.setLongitude(-74.0060);
+        sent.setTimestamp("2024-01-15T10:30:00Z");
+        byte[] record = new BusLocationEventSerializer().serialize("bus-location-updates", sent);
+
+        // When
+        BusLocationEvent event = deserializer.deserialize("bus-location-updates", record);
+
+        // Then
+        assertEquals("BUS001", event.getBusId());
+        assertEquals(40.7128, event.getLatitude());
+        assertEquals(-74.0060, event.getLongitude());
+        assertEquals(Instant.parse("2024-01-15T10:30:00Z").toEpochMilli(), event.getTimestampMillis());
+        assertEquals(1.0, count("binary"));
+        assertEquals(0.0, count("decoded"));
+    }
+
+    @Test
+    void testDeserialize_UnknownBinaryVersion() {
+        // Given
+        byte[] record = {BusLocationBinaryCodec.MAGIC, 9, 0};
+
+        // When
+        BusLocationEvent event = deserializer.deserialize("bus-location-updates", record);
+
+        // Then
+        assertNull(event);
+        assertEquals(1.0, count("failed"));
+    }
+
+    @Test
+    void testDeserialize_InvalidJson() {
+        // When - logged, not thrown, so the partition is not stuck on the record
+        BusLocationEvent event = deserialize("invalid json");
+
+        // Then
+        assertNull(event);
+        assertEquals(1.0, count("failed"));
+    }
+
+    @Test
+    void testDeserialize_Tombstone() {
+        // When
+        BusLocationEvent event = deserializer.deserialize("bus-location-updates", null);
+
+        // Then
+        assertNull(event);
+        assertEquals(0.0, count("failed"));
+    }
+
+    private BusLocationEvent deserialize(String message) {
+        return deserializer.deserialize("bus-location-updates", message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double count(String decoder) {
+        return meterRegistry.get("busreminder.location.deserialize").tag("decoder", decoder).counter().count();
+    }
+}
@@ -0,0 +1,130 @@
+package com.busreminder.consumer;
+
+import com.busreminder.dto.BusLocationEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusLocationJsonDecoderTest {
+
+    @Test
+    void testDecode_ProducerMessage() {
+        // Given
+        String message = "{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060,"
+                + "\"timestamp\":\"2024-01-15T10:30:00Z\"}";
+
+        // When
+        BusLocationEvent event = decode(message);
+
+        // Then
+        assertNotNull(event);
+        assertEquals("BUS001", event.getBusId());
+        assertEquals(40.7128, event.getLatitude());
+        assertEquals(-74.0060, event.getLongitude());
+        assertEquals("2024-01-15T10:30:00Z", event.getTimestamp());
+        assertEquals(OffsetDateTime.parse("2024-01-15T10:30:00Z").toInstant().toEpochMilli(),
+                event.getTimestampMillis());
+    }
+
+    @Test
+    void testDecode_WhitespaceNullsAndIntegers() {
+        // When
+        BusLocationEvent event = decode(" {\n \"bus_id\" : null , \"latitude\" : 40 , \"longitude\" : -0 }\n");
+
+        // Then - integers are converted like Jackson does, so -0 is 0.0
+        assertNotNull(event);
+        assertNull(event.getBusId());
+        assertEquals(40.0, event.getLatitude());
+        assertEquals(0.0, event.getLongitude());
+        assertNull(event.getTimestamp());
+        assertNull(event.getTimestampMillis());
+    }
+
+    @Test
+    void testDecode_TimestampForms() {
+        assertEquals(epochMillis("2024-02-29T23:59:59.999+05:30"),
+                decode("{\"timestamp\":\"2024-02-29T23:59:59.999999999+05:30\"}").getTimestampMillis());
+        assertEquals(epochMillis("2024-01-15T10:30Z"),
+                decode("{\"timestamp\":\"2024-01-15T10:30Z\"}").getTimestampMillis());
+        assertEquals(epochMillis("1969-12-31T23:59:59.9991Z"),
+                decode("{\"timestamp\":\"1969-12-31T23:59:59.9991Z\"}").getTimestampMillis());
+    }
+
+    @Test
+    void testDecode_TimestampNotDecodedKeepsString() {
+        // Given - not a valid date, and an offset form the decoder leaves to OffsetDateTime
+        BusLocationEvent invalidDate = decode("{\"timestamp\":\"2023-02-29T10:00:00Z\"}");
+        BusLocationEvent otherForm = decode("{\"timestamp\":\"2024-01-15T10:30:00+0100\"}");
+
+        // Then
+        assertEquals("2023-02-29T10:00:00Z", invalidDate.getTimestamp());
+        assertNull(invalidDate.getTimestampMillis());
+        assertEquals("2024-01-15T10:30:00+0100", otherForm.getTimestamp());
+        assertNull(otherForm.getTimestampMillis());
+    }
+
+    @Test
+    void testDecode_LeavesOtherShapesToJackson() {
+        String[] messages = {
+                "",
+                "null",
+                "[1]",
+                "{\"bus_id\":\"BUS001\",\"speed\":12}",
+                "{\"bus_id\":\"BUS\\u0031\"}",
+                "{\"bus_id\":\"BÜS001\"}",
+                "{\"bus_id\":42}",
+                "{\"latitude\":\"40.7\"}",
+                "{\"latitude\":01}",
+                "{\"latitude\":1.}",
+                "{\"latitude\":-}",
+                "{\"latitude\":1,}",
+                "{\"latitude\":1 \"longitude\":2}",
+                "{\"bus_id\":\"BUS001\"} trailing",
+                "{\"bus_id\":\"BUS001\""
+        };
+        for (String message : messages) {
+            assertNull(decode(message), message);
+        }
+    }
+
+    @Test
+    void testDecode_SameAsJackson() throws Exception {
+        // Given - coordinates with every number of decimals, exponents and many digits
+        ObjectMapper objectMapper = new ObjectMapper();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            String longitude = switch (i % 3) {
+                case 0 -> Double.toString(random.nextDouble() * 360 - 180);
+                case 1 -> String.format(Locale.ROOT, "%." + random.nextInt(20) + "f", random.nextDouble() * 360 - 180);
+                default -> String.format(Locale.ROOT, "%e", random.nextDouble() * 360 - 180);
+            };
+            String message = "{\"bus_id\":\"BUS" + i + "\",\"latitude\":" + latitude + ",\"longitude\":" + longitude
+                    + ",\"timestamp\":\"2024-01-15T10:30:00Z\"}";
+
+            // When
+            BusLocationEvent decoded = decode(message);
+            BusLocationEvent expected = objectMapper.readValue(message, BusLocationEvent.class);
+
+            // Then
+            assertNotNull(decoded, message);
+            assertEquals(expected.getBusId(), decoded.getBusId(), message);
+            assertEquals(expected.getLatitude(), decoded.getLatitude(), message);
+            assertEquals(expected.getLongitude(), decoded.getLongitude(), message);
+        }
+    }
+
+    private static BusLocationEvent decode(String message) {
+        return BusLocationJsonDecoder.decode(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long epochMillis(String timestamp) {
+        return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+    }
+}
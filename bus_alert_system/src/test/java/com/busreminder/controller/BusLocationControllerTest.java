@@ -1,9 +1,13 @@
 package com.busreminder.controller;
 
 import com.busreminder.dto.BusLocationEvent;
+import com.busreminder.dto.IngestResult;
 import com.busreminder.dto.NotificationRequest;
+import com.busreminder.ingest.BusLocationIngestor;
 import com.busreminder.service.LocationProcessingService;
 import com.busreminder.service.NotificationService;
+import com.busreminder.service.PassengerService;
+import com.fasterxml.jackson.core.JsonParseException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,6 +17,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collections;
@@ -31,12 +38,18 @@ class BusLocationControllerTest {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private PassengerService passengerService;
+
+    @Mock
+    private BusLocationIngestor busLocationIngestor;
+
     @InjectMocks
     private BusLocationController busLocationController;
 
     @BeforeEach
     void setUp() {
-        reset(locationProcessingService, notificationService);
+        reset(locationProcessingService, notificationService, passengerService, busLocationIngestor);
     }
 
     @Test
@@ -151,6 +164,97 @@ class BusLocationControllerTest {
         verify(notificationService).sendNotifications(notifications);
     }
 
+    @Test
+    void testRecordPickup() {
+        // Given
+        when(passengerService.markPickedUp("BUS001", "PASS001")).thenReturn(true);
+
+        // When
+        ResponseEntity<Map<String, Object>> response = busLocationController.recordPickup("BUS001", "PASS001");
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("success", response.getBody().get("status"));
+        assertEquals("PASS001", response.getBody().get("passengerId"));
+        assertEquals(true, response.getBody().get("pickedUp"));
+    }
+
+    @Test
+    void testRecordPickup_AlreadyRecorded() {
+        // Given
+        when(passengerService.markPickedUp("BUS001", "PASS001")).thenReturn(false);
+
+        // When
+        ResponseEntity<Map<String, Object>> response = busLocationController.recordPickup("BUS001", "PASS001");
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(false, response.getBody().get("pickedUp"));
+    }
+
+    @Test
+    void testRecordPickup_Exception() {
+        // Given
+        when(passengerService.markPickedUp("BUS001", "PASS001")).thenThrow(new RuntimeException("Store error"));
+
+        // When
+        ResponseEntity<Map<String, Object>> response = busLocationController.recordPickup("BUS001", "PASS001");
+
+        // Then
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals("error", response.getBody().get("status"));
+    }
+
+    @Test
+    void testBulkUpdateBusLocations_Accepted() throws Exception {
+        // Given
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+        when(busLocationIngestor.ingest(body)).thenReturn(new IngestResult(5, 2, 2, 1, 0));
+
+        // When
+        ResponseEntity<Map<String, Object>> response = busLocationController.bulkUpdateBusLocations(body);
+
+        // Then
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("accepted", response.getBody().get("status"));
+        assertEquals(5, response.getBody().get("received"));
+        assertEquals(2, response.getBody().get("accepted"));
+        assertEquals(2, response.getBody().get("conflated"));
+        assertEquals(1, response.getBody().get("invalid"));
+        assertEquals(0, response.getBody().get("rejected"));
+        verifyNoInteractions(locationProcessingService, notificationService);
+    }
+
+    @Test
+    void testBulkUpdateBusLocations_MalformedBatch() throws Exception {
+        // Given
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+        when(busLocationIngestor.ingest(body)).thenThrow(new JsonParseException(null, "Unexpected end-of-input"));
+
+        // When
+        ResponseEntity<Map<String, Object>> response = busLocationController.bulkUpdateBusLocations(body);
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("error", response.getBody().get("status"));
+        assertEquals("Unexpected end-of-input", response.getBody().get("message"));
+    }
+
+    @Test
+    void testBulkUpdateBusLocations_ReadError() throws Exception {
+        // Given
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+        when(busLocationIngestor.ingest(body)).thenThrow(new IOException("Connection reset"));
+
+        // When
+        ResponseEntity<Map<String, Object>> response = busLocationController.bulkUpdateBusLocations(body);
+
+        // Then
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals("error", response.getBody().get("status"));
+    }
+
     @Test
     void testHealth() {
         // When
@@ -0,0 +1,91 @@
+package com.busreminder.controller;
+
+import com.busreminder.config.KafkaConfig;
+import com.busreminder.dto.EtaUpdate;
+import com.busreminder.push.EtaBroadcaster;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EtaStreamControllerTest {
+
+    private EtaBroadcaster etaBroadcaster;
+    private EtaStreamController etaStreamController;
+
+    @BeforeEach
+    void setUp() {
+        etaBroadcaster = new EtaBroadcaster(4, 2, 10000, 16, false);
+        etaStreamController = new EtaStreamController(etaBroadcaster);
+        ReflectionTestUtils.setField(etaStreamController, "timeoutMillis", 60000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        etaBroadcaster.shutdown();
+    }
+
+    @Test
+    void testStreamBusEtas_Subscribes() {
+        // When
+        ResponseEntity<SseEmitter> response = etaStreamController.streamBusEtas("BUS001");
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(60000L, response.getBody().getTimeout());
+        assertEquals(1, etaBroadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void testStreamPassengerEta_Subscribes() {
+        // When
+        ResponseEntity<SseEmitter> response = etaStreamController.streamPassengerEta("PASS001");
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(1, etaBroadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void testStream_TooManySubscribers() {
+        // Given
+        etaStreamController.streamBusEtas("BUS001");
+        etaStreamController.streamPassengerEta("PASS001");
+
+        // When
+        ResponseEntity<SseEmitter> response = etaStreamController.streamBusEtas("BUS002");
+
+        // Then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(2, etaBroadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void testEtaUpdate_WrittenAsJson() throws Exception {
+        // Given - the converter Spring MVC writes SSE event data with, on the application's ObjectMapper
+        MappingJackson2HttpMessageConverter converter =
+                new MappingJackson2HttpMessageConverter(new KafkaConfig().objectMapper());
+        EtaUpdate update = new EtaUpdate("BUS001", "PASS001", 7, Instant.parse("2024-01-15T10:30:00Z"));
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        // When
+        converter.write(update, MediaType.APPLICATION_JSON, message);
+
+        // Then
+        assertEquals("{\"busId\":\"BUS001\",\"passengerId\":\"PASS001\",\"estimatedMinutes\":7,"
+                + "\"computedAt\":\"2024-01-15T10:30:00Z\"}", message.getBodyAsString());
+    }
+}
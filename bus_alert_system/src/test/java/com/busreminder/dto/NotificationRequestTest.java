@@ -12,6 +12,7 @@ class NotificationRequestTest {
     void testGettersAndSetters() {
         // Given
         NotificationRequest request = new NotificationRequest();
+        String busId = "BUS001";
         String passengerId = "PASS001";
         String passengerName = "John Doe";
         String passengerPhone = "+1234567890";
@@ -21,6 +22,7 @@ class NotificationRequestTest {
         Long estimatedMinutes = 10L;
 
         // When
+        request.setBusId(busId);
         request.setPassengerId(passengerId);
         request.setPassengerName(passengerName);
         request.setPassengerPhone(passengerPhone);
@@ -30,6 +32,7 @@ class NotificationRequestTest {
         request.setEstimatedMinutes(estimatedMinutes);
 
         // Then
+        assertEquals(busId, request.getBusId());
         assertEquals(passengerId, request.getPassengerId());
         assertEquals(passengerName, request.getPassengerName());
         assertEquals(passengerPhone, request.getPassengerPhone());
@@ -45,6 +48,7 @@ class NotificationRequestTest {
         NotificationRequest request = new NotificationRequest();
 
         // When
+        request.setBusId(null);
         request.setPassengerId(null);
         request.setPassengerName(null);
         request.setPassengerPhone(null);
@@ -54,6 +58,7 @@ class NotificationRequestTest {
         request.setEstimatedMinutes(null);
 
         // Then
+        assertNull(request.getBusId());
         assertNull(request.getPassengerId());
         assertNull(request.getPassengerName());
         assertNull(request.getPassengerPhone());
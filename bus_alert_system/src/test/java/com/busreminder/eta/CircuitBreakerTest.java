@@ -0,0 +1,131 @@
+package com.busreminder.eta;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(3);
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        // 50% failed or slow of the last 10 calls, at least 4 of them, opens for 30 seconds; 2 probes
+        breaker = new CircuitBreaker("test", 50, 50, TimeUnit.SECONDS.toNanos(2), 10, 4, OPEN_NANOS, 2);
+    }
+
+    @Test
+    void testRecord_OpensOnFailureRate() {
+        // When
+        recordCalls(2, FAST, true);
+        recordCalls(2, FAST, false);
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(0));
+        assertEquals(1, breaker.getTransitionCount(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    void testRecord_OpensOnSlowCallRate() {
+        // When - every call succeeds, but half of them slowly
+        recordCalls(2, FAST, true);
+        recordCalls(2, SLOW, true);
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testRecord_StaysClosedBelowMinimumCalls() {
+        // When
+        recordCalls(3, FAST, false);
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(0));
+    }
+
+    @Test
+    void testRecord_RateIsOverLastWindowSizeCalls() {
+        // Given - two failures among ten calls
+        recordCalls(3, FAST, true);
+        recordCalls(2, FAST, false);
+        recordCalls(5, FAST, true);
+
+        // When - three more failures push the three oldest successes out of the window
+        recordCalls(2, FAST, false);
+        CircuitBreaker.State afterFourFailures = breaker.getState();
+        recordCalls(1, FAST, false);
+
+        // Then - 5 of the last 10 failed, although only 5 of all 13 did
+        assertEquals(CircuitBreaker.State.CLOSED, afterFourFailures);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testTryAcquire_HalfOpenAfterOpenPeriodAndLimitsProbes() {
+        // Given
+        recordCalls(4, FAST, false);
+
+        // When
+        boolean beforeOpenPeriod = breaker.tryAcquire(OPEN_NANOS - 1);
+        boolean firstProbe = breaker.tryAcquire(OPEN_NANOS);
+        boolean secondProbe = breaker.tryAcquire(OPEN_NANOS);
+        boolean thirdProbe = breaker.tryAcquire(OPEN_NANOS);
+
+        // Then
+        assertFalse(beforeOpenPeriod);
+        assertTrue(firstProbe);
+        assertTrue(secondProbe);
+        assertFalse(thirdProbe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void testRecord_SuccessfulProbesClose() {
+        // Given
+        recordCalls(4, FAST, false);
+        breaker.tryAcquire(OPEN_NANOS);
+        breaker.tryAcquire(OPEN_NANOS);
+
+        // When
+        breaker.record(FAST, true, OPEN_NANOS);
+        breaker.record(FAST, true, OPEN_NANOS);
+
+        // Then - closed with an empty window
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        recordCalls(3, FAST, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getTransitionCount(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    void testRecord_SlowProbeOpensAgain() {
+        // Given
+        recordCalls(4, FAST, false);
+        breaker.tryAcquire(OPEN_NANOS);
+
+        // When
+        breaker.record(SLOW, true, OPEN_NANOS);
+
+        // Then - open for another full period
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(2 * OPEN_NANOS - 1));
+        assertEquals(2, breaker.getTransitionCount(CircuitBreaker.State.OPEN));
+    }
+
+    private void recordCalls(int count, long durationNanos, boolean success) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(breaker.tryAcquire(0));
+            breaker.record(durationNanos, success, 0);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.busreminder.eta;
+
+import com.busreminder.cache.EtaCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixEtaProviderTest {
+
+    private static final double BUS_LAT = 40.7128;
+    private static final double BUS_LNG = -74.0060;
+    // ~3.3 miles from the bus, ~7 minutes at 30 mph
+    private static final double PICKUP_LAT = 40.7580;
+    private static final double PICKUP_LNG = -73.9855;
+
+    private MeterRegistry meterRegistry;
+    private EtaCache etaCache;
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        etaCache = new EtaCache(60, 1000, 7);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+            if (server.getExecutor() instanceof ExecutorService executor) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void testIsAvailable_OnlyWithApiKey() {
+        // Given
+        DistanceMatrixEtaProvider provider = new DistanceMatrixEtaProvider(new ObjectMapper(), etaCache,
+                new HaversineEtaProvider(meterRegistry), meterRegistry);
+
+        // When/Then
+        ReflectionTestUtils.setField(provider, "googleMapsApiKey", "");
+        assertFalse(provider.isAvailable());
+        ReflectionTestUtils.setField(provider, "googleMapsApiKey", "test-key");
+        assertTrue(provider.isAvailable());
+        assertEquals("google", provider.getName());
+    }
+
+    @Test
+    void testEstimateMinutes_BatchesDestinationsIntoOneRequest() throws Exception {
+        // Given - element 0 is 5 minutes, element 1 has no route (Haversine ~7 minutes), element 2 is 30 minutes
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, destinations ->
+                "{\"status\":\"OK\",\"rows\":[{\"elements\":["
+                        + "{\"status\":\"OK\",\"duration\":{\"value\":300}},"
+                        + "{\"status\":\"ZERO_RESULTS\"},"
+                        + "{\"status\":\"OK\",\"duration\":{\"value\":1800}}]}]}");
+        DistanceMatrixEtaProvider provider = createProvider();
+
+        // When
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(3), pickupLngs(3));
+
+        // Then - one HTTP call carried all three destinations
+        assertEquals(1, queries.size());
+        assertEquals(3, destinationCount(queries.get(0)));
+        assertEquals(5L, etas[0]);
+        assertEquals(7L, etas[1]);
+        assertEquals(30L, etas[2]);
+        assertEquals(1, meterRegistry.get("busreminder.eta.latency")
+                .tag("provider", "google").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("busreminder.eta.latency")
+                .tag("provider", "haversine").timer().count());
+    }
+
+    @Test
+    void testEstimateMinutes_ChunksDestinationsToApiLimit() throws Exception {
+        // Given - every destination is 2 minutes away
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, DistanceMatrixEtaProviderTest::twoMinutesEach);
+        DistanceMatrixEtaProvider provider = createProvider();
+
+        // When
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(30), pickupLngs(30));
+
+        // Then - 25 + 5 destinations, in whichever order the concurrent requests arrived
+        assertEquals(2, queries.size());
+        assertEquals(Arrays.asList(5, 25), queries.stream()
+                .map(DistanceMatrixEtaProviderTest::destinationCount).sorted().toList());
+        assertTrue(Arrays.stream(etas).allMatch(eta -> eta == 2L));
+    }
+
+    @Test
+    void testEstimateMinutes_VirtualThreadsHandleResponses() throws Exception {
+        // Given - every destination is 2 minutes away; on Java 17 the HttpClient keeps its default executor
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, DistanceMatrixEtaProviderTest::twoMinutesEach);
+        DistanceMatrixEtaProvider provider = createProvider();
+        ReflectionTestUtils.setField(provider, "virtualThreads", true);
+        provider.init();
+
+        // When
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(60), pickupLngs(60));
+
+        // Then - 25 + 25 + 10 destinations, every ETA filled in
+        assertEquals(3, queries.size());
+        assertTrue(Arrays.stream(etas).allMatch(eta -> eta == 2L));
+        assertEquals(3, meterRegistry.get("busreminder.eta.latency")
+                .tag("provider", "google").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void testEstimateMinutes_PerBusLimitCapsConcurrentRequests() throws Exception {
+        // Given - five requests of 100ms each, at most two at a time for the ping
+        AtomicInteger maxInFlight = new AtomicInteger();
+        startSlowDistanceMatrixServer(100, maxInFlight);
+        DistanceMatrixEtaProvider provider = createProvider();
+        ReflectionTestUtils.setField(provider, "maxConcurrentRequestsPerBus", 2);
+
+        // When
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(125), pickupLngs(125));
+
+        // Then - all five answered, never more than two in flight
+        assertTrue(Arrays.stream(etas).allMatch(eta -> eta == 2L));
+        assertEquals(5, meterRegistry.get("busreminder.eta.latency")
+                .tag("provider", "google").tag("outcome", "success").timer().count());
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    void testEstimateMinutes_DeadlineFallsBackToHaversine() throws Exception {
+        // Given - the API answers after 2 seconds but the ping only waits 200ms
+        startSlowDistanceMatrixServer(2000, new AtomicInteger());
+        DistanceMatrixEtaProvider provider = createProvider();
+        ReflectionTestUtils.setField(provider, "pingDeadlineMillis", 200L);
+
+        // When
+        long start = System.nanoTime();
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then - Haversine ETA instead of the 2 minutes the API would have said
+        assertTrue(elapsedMillis < 1500, "ping took " + elapsedMillis + "ms");
+        assertEquals(7L, etas[0]);
+        assertEquals(1.0, meterRegistry.get("busreminder.eta.fallback").tag("reason", "deadline").counter().count());
+    }
+
+    @Test
+    void testEstimateMinutes_GlobalLimitFallsBackToHaversine() throws Exception {
+        // Given - no request slots left for the whole service
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, DistanceMatrixEtaProviderTest::twoMinutesEach);
+        DistanceMatrixEtaProvider provider = createProvider();
+        ReflectionTestUtils.setField(provider, "maxConcurrentRequests", 0);
+        provider.init();
+
+        // When
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+
+        // Then
+        assertTrue(queries.isEmpty());
+        assertEquals(7L, etas[0]);
+        assertEquals(1.0, meterRegistry.get("busreminder.eta.fallback")
+                .tag("reason", "concurrency_limit").counter().count());
+    }
+
+    @Test
+    void testEstimateMinutes_RepeatedPingServedFromEtaCache() throws Exception {
+        // Given
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, destinations ->
+                "{\"status\":\"OK\",\"rows\":[{\"elements\":["
+                        + "{\"status\":\"OK\",\"duration\":{\"value\":300}}]}]}");
+        DistanceMatrixEtaProvider provider = createProvider();
+
+        // When - second ping is a few meters from the first
+        long[] first = provider.estimateMinutes(40.71280, -74.00600, pickupLats(1), pickupLngs(1));
+        long[] second = provider.estimateMinutes(40.71282, -74.00601, pickupLats(1), pickupLngs(1));
+
+        // Then - only the first ping reached the API
+        assertEquals(1, queries.size());
+        assertEquals(5L, first[0]);
+        assertEquals(5L, second[0]);
+    }
+
+    @Test
+    void testEstimateMinutes_HaversineFallbackIsNotCached() throws Exception {
+        // Given - the API cannot route the destination
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, destinations ->
+                "{\"status\":\"OK\",\"rows\":[{\"elements\":[{\"status\":\"ZERO_RESULTS\"}]}]}");
+        DistanceMatrixEtaProvider provider = createProvider();
+
+        // When
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+
+        // Then
+        assertEquals(7L, etas[0]);
+        assertEquals(0, etaCache.size());
+    }
+
+    @Test
+    void testEstimateMinutes_ErrorStatusFallsBackToHaversine() throws Exception {
+        // Given
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, destinations ->
+                "{\"status\":\"REQUEST_DENIED\",\"error_message\":\"The provided API key is invalid.\"}");
+        DistanceMatrixEtaProvider provider = createProvider();
+
+        // When
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(2), pickupLngs(2));
+
+        // Then
+        assertEquals(1, queries.size());
+        assertArrayEquals(new long[]{7L, 7L}, etas);
+        assertEquals(1, meterRegistry.get("busreminder.eta.latency")
+                .tag("provider", "google").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void testEstimateMinutes_OpenCircuitFallsBackWithoutRequests() throws Exception {
+        // Given - the API answers every request with an error
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, destinations -> "{\"status\":\"UNKNOWN_ERROR\"}");
+        DistanceMatrixEtaProvider provider = createProvider();
+
+        // When - two failed pings open the circuit, the third is not sent
+        provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+        provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+
+        // Then
+        assertEquals(2, queries.size());
+        assertEquals(7L, etas[0]);
+        assertEquals(CircuitBreaker.State.OPEN, provider.getCircuitState());
+        assertEquals(1, provider.getCircuitTransitionCount(CircuitBreaker.State.OPEN));
+        assertEquals(1.0, meterRegistry.get("busreminder.eta.fallback")
+                .tag("reason", "circuit_open").counter().count());
+    }
+
+    @Test
+    void testEstimateMinutes_HalfOpenProbeClosesCircuit() throws Exception {
+        // Given - the circuit opened on two errors and the API has recovered
+        AtomicInteger failures = new AtomicInteger(2);
+        List<String> queries = new CopyOnWriteArrayList<>();
+        startDistanceMatrixServer(queries, destinations -> failures.getAndDecrement() > 0
+                ? "{\"status\":\"UNKNOWN_ERROR\"}" : twoMinutesEach(destinations));
+        DistanceMatrixEtaProvider provider = createProvider();
+        ReflectionTestUtils.setField(provider, "circuitOpenMillis", 0L);
+        provider.init();
+        provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+        provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+
+        // When - the open period is over, so the next ping is a probe
+        long[] etas = provider.estimateMinutes(BUS_LAT, BUS_LNG, pickupLats(1), pickupLngs(1));
+
+        // Then
+        assertEquals(3, queries.size());
+        assertEquals(2L, etas[0]);
+        assertEquals(CircuitBreaker.State.CLOSED, provider.getCircuitState());
+        assertEquals(1, provider.getCircuitTransitionCount(CircuitBreaker.State.HALF_OPEN));
+    }
+
+    private DistanceMatrixEtaProvider createProvider() {
+        DistanceMatrixEtaProvider provider = new DistanceMatrixEtaProvider(new ObjectMapper(), etaCache,
+                new HaversineEtaProvider(meterRegistry), meterRegistry);
+        ReflectionTestUtils.setField(provider, "googleMapsApiKey", "test-key");
+        ReflectionTestUtils.setField(provider, "googleMapsApiUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/distancematrix");
+        ReflectionTestUtils.setField(provider, "maxConcurrentRequests", 64);
+        ReflectionTestUtils.setField(provider, "maxConcurrentRequestsPerBus", 4);
+        ReflectionTestUtils.setField(provider, "pingDeadlineMillis", 5000L);
+        ReflectionTestUtils.setField(provider, "circuitFailureRateThreshold", 50);
+        ReflectionTestUtils.setField(provider, "circuitSlowCallRateThreshold", 50);
+        ReflectionTestUtils.setField(provider, "circuitSlowCallMillis", 2000L);
+        ReflectionTestUtils.setField(provider, "circuitWindowSize", 4);
+        ReflectionTestUtils.setField(provider, "circuitMinimumCalls", 2);
+        ReflectionTestUtils.setField(provider, "circuitOpenMillis", 30000L);
+        ReflectionTestUtils.setField(provider, "circuitHalfOpenProbes", 1);
+        ReflectionTestUtils.setField(provider, "virtualThreads", false);
+        provider.init();
+        return provider;
+    }
+
+    private void startDistanceMatrixServer(List<String> queries, IntFunction<String> responseForDestinations)
+            throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/distancematrix", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            queries.add(query);
+            byte[] body = responseForDestinations.apply(destinationCount(query)).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    /**
+     * Distance Matrix stub answering every destination with 2 minutes after {@code delayMillis}, handling
+     * requests concurrently and recording the highest number in flight at once.
+     */
+    private void startSlowDistanceMatrixServer(long delayMillis, AtomicInteger maxInFlight) throws IOException {
+        AtomicInteger inFlight = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/distancematrix", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            byte[] bytes = twoMinutesEach(destinationCount(exchange.getRequestURI().getRawQuery()))
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    private static String twoMinutesEach(int destinations) {
+        StringBuilder body = new StringBuilder("{\"status\":\"OK\",\"rows\":[{\"elements\":[");
+        for (int i = 0; i < destinations; i++) {
+            body.append(i > 0 ? "," : "").append("{\"status\":\"OK\",\"duration\":{\"value\":120}}");
+        }
+        return body.append("]}]}").toString();
+    }
+
+    private static int destinationCount(String rawQuery) {
+        for (String param : rawQuery.split("&")) {
+            if (param.startsWith("destinations=")) {
+                String destinations = URLDecoder.decode(param.substring("destinations=".length()), StandardCharsets.UTF_8);
+                return destinations.split("\\|").length;
+            }
+        }
+        return 0;
+    }
+
+    private static double[] pickupLats(int count) {
+        double[] lats = new double[count];
+        Arrays.fill(lats, PICKUP_LAT);
+        return lats;
+    }
+
+    private static double[] pickupLngs(int count) {
+        double[] lngs = new double[count];
+        Arrays.fill(lngs, PICKUP_LNG);
+        return lngs;
+    }
+}
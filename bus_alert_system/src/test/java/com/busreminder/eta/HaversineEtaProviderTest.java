@@ -0,0 +1,57 @@
+package com.busreminder.eta;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HaversineEtaProviderTest {
+
+    private MeterRegistry meterRegistry;
+    private HaversineEtaProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        provider = new HaversineEtaProvider(meterRegistry);
+    }
+
+    @Test
+    void testEstimateMinutes_ReturnsActualValue() {
+        // Given - ~3.3 miles apart
+        double originLat = 40.7128;
+        double originLng = -74.0060;
+
+        // When
+        long[] result = provider.estimateMinutes(originLat, originLng,
+                new double[]{40.7580}, new double[]{-73.9855});
+
+        // Then - ~3.3 miles at 30 mph = ~7 minutes
+        assertEquals(7L, result[0]);
+        assertEquals(1, meterRegistry.get("busreminder.eta.latency")
+                .tag("provider", "haversine").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void testEstimateMinutes_SameLocation() {
+        // Given - same origin and destination
+        double lat = 40.7128;
+        double lng = -74.0060;
+
+        // When
+        long[] result = provider.estimateMinutes(lat, lng, new double[]{lat}, new double[]{lng});
+
+        // Then
+        assertEquals(0L, result[0]);
+    }
+
+    @Test
+    void testEstimateMinutes_FromDistance() {
+        assertEquals(20L, provider.estimateMinutes(10.0));
+        assertEquals(0L, provider.estimateMinutes(0.0));
+        assertEquals("haversine", provider.getName());
+        assertTrue(provider.isAvailable());
+    }
+}
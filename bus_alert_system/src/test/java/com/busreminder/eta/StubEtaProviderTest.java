@@ -0,0 +1,45 @@
+package com.busreminder.eta;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubEtaProviderTest {
+
+    private MeterRegistry meterRegistry;
+    private StubEtaProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        provider = new StubEtaProvider(meterRegistry);
+        ReflectionTestUtils.setField(provider, "speedMph", 25.0);
+        ReflectionTestUtils.setField(provider, "detourFactor", 1.3);
+    }
+
+    @Test
+    void testEstimateMinutes_SlowerThanStraightLine() {
+        // Given - ~3.3 miles apart, 7 minutes in a straight line at 30 mph
+        double[] lats = {40.7580, 40.7128};
+        double[] lngs = {-73.9855, -74.0060};
+
+        // When
+        long[] result = provider.estimateMinutes(40.7128, -74.0060, lats, lngs);
+
+        // Then - 3.3 x 1.3 miles at 25 mph
+        assertEquals(10L, result[0]);
+        assertEquals(0L, result[1]);
+        assertEquals(1, meterRegistry.get("busreminder.eta.latency")
+                .tag("provider", "stub").timer().count());
+    }
+
+    @Test
+    void testGetName() {
+        assertEquals("stub", provider.getName());
+        assertTrue(provider.isAvailable());
+    }
+}
@@ -0,0 +1,140 @@
+package com.busreminder.eta;
+
+import com.busreminder.geo.GeoUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TieredEtaStrategyTest {
+
+    private static final double BUS_LAT = 40.7128;
+    private static final double BUS_LNG = -74.0060;
+
+    @Mock
+    private EtaProvider routing;
+
+    private MeterRegistry meterRegistry;
+    private HaversineEtaProvider haversine;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        haversine = new HaversineEtaProvider(meterRegistry);
+    }
+
+    @Test
+    void testEstimateMinutes_RoutesEveryPickupWithinReach() {
+        // Given - pickup points the service found within reach of the bus
+        when(routing.getName()).thenReturn("google");
+        when(routing.isAvailable()).thenReturn(true);
+        double[] lats = northOfBus(2, 5, 6, 7);
+        double[] lngs = {BUS_LNG, BUS_LNG, BUS_LNG, BUS_LNG};
+        when(routing.estimateMinutes(BUS_LAT, BUS_LNG, lats, lngs)).thenReturn(new long[]{6L, 11L, 13L, 15L});
+        TieredEtaStrategy strategy = createStrategy("google");
+
+        // When
+        long[] etas = strategy.estimateMinutes(BUS_LAT, BUS_LNG, lats, lngs);
+
+        // Then - every one was routed in a single call
+        assertArrayEquals(new long[]{6L, 11L, 13L, 15L}, etas);
+        verify(routing).estimateMinutes(anyDouble(), anyDouble(), any(double[].class), any(double[].class));
+        assertEquals(4.0, tierCount("routed"));
+        assertEquals(0.0, tierCount("estimated"));
+    }
+
+    @Test
+    void testEstimateMinutes_CloseInStraightLineButFarByRoadIsRouted() {
+        // Given - 2.5 miles away in a straight line (5 minutes at 30 mph) but 20 minutes by road
+        when(routing.getName()).thenReturn("google");
+        when(routing.isAvailable()).thenReturn(true);
+        when(routing.estimateMinutes(eq(BUS_LAT), eq(BUS_LNG), any(double[].class), any(double[].class)))
+                .thenReturn(new long[]{20L});
+        TieredEtaStrategy strategy = createStrategy("google");
+
+        // When
+        long[] etas = strategy.estimateMinutes(BUS_LAT, BUS_LNG, northOfBus(2.5), new double[]{BUS_LNG});
+
+        // Then - the passenger is not notified early on the straight-line figure
+        assertArrayEquals(new long[]{20L}, etas);
+        assertEquals(1.0, tierCount("routed"));
+    }
+
+    @Test
+    void testInit_UnavailableProviderFallsBackToHaversine() {
+        // Given - e.g. no Google Maps key
+        when(routing.getName()).thenReturn("google");
+        when(routing.isAvailable()).thenReturn(false);
+        TieredEtaStrategy strategy = createStrategy("google");
+
+        // When
+        long[] etas = strategy.estimateMinutes(BUS_LAT, BUS_LNG, northOfBus(5), new double[]{BUS_LNG});
+
+        // Then
+        assertEquals("haversine", strategy.getRoutingProviderName());
+        assertArrayEquals(new long[]{10L}, etas);
+        assertEquals(1.0, tierCount("estimated"));
+        verify(routing, never()).estimateMinutes(anyDouble(), anyDouble(), any(double[].class), any(double[].class));
+    }
+
+    @Test
+    void testInit_UnknownProviderFallsBackToHaversine() {
+        // Given
+        when(routing.getName()).thenReturn("google");
+
+        // When
+        TieredEtaStrategy strategy = createStrategy("here");
+
+        // Then
+        assertEquals("haversine", strategy.getRoutingProviderName());
+    }
+
+    @Test
+    void testInit_SelectsProviderByName() {
+        // Given
+        StubEtaProvider stub = new StubEtaProvider(meterRegistry);
+
+        // When
+        TieredEtaStrategy strategy = new TieredEtaStrategy(haversine, List.of(haversine, stub), meterRegistry);
+        ReflectionTestUtils.setField(strategy, "providerName", "stub");
+        strategy.init();
+
+        // Then
+        assertEquals("stub", strategy.getRoutingProviderName());
+    }
+
+    private TieredEtaStrategy createStrategy(String providerName) {
+        TieredEtaStrategy strategy = new TieredEtaStrategy(haversine, List.of(haversine, routing), meterRegistry);
+        ReflectionTestUtils.setField(strategy, "providerName", providerName);
+        strategy.init();
+        return strategy;
+    }
+
+    private double tierCount(String tier) {
+        return meterRegistry.get("busreminder.eta.destinations").tag("tier", tier).counter().count();
+    }
+
+    /**
+     * Latitudes of points the given number of miles due north of the bus.
+     */
+    private static double[] northOfBus(double... miles) {
+        double[] lats = new double[miles.length];
+        for (int i = 0; i < miles.length; i++) {
+            lats[i] = BUS_LAT + Math.toDegrees(miles[i] / GeoUtils.EARTH_RADIUS_MILES);
+        }
+        return lats;
+    }
+}
@@ -0,0 +1,90 @@
+package com.busreminder.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PickupIndexTest {
+
+    private static final double BUS_LATITUDE = 40.7128;
+    private static final double BUS_LONGITUDE = -74.0060;
+
+    @Test
+    void testFindWithin_EmptyIndex() {
+        // Given
+        PickupIndex index = PickupIndex.build(new double[0], new double[0]);
+
+        // When
+        int[] result = index.findWithin(BUS_LATITUDE, BUS_LONGITUDE, 10.0);
+
+        // Then
+        assertEquals(0, index.size());
+        assertEquals(0, result.length);
+    }
+
+    @Test
+    void testFindWithin_ReturnsOnlyPointsInRadius() {
+        // Given - Midtown (~3.3 miles), Philadelphia area (~60 miles), same location
+        double[] latitudes = {40.7580, 40.0000, 40.7128};
+        double[] longitudes = {-73.9855, -75.0000, -74.0060};
+        PickupIndex index = PickupIndex.build(latitudes, longitudes);
+
+        // When
+        int[] result = index.findWithin(BUS_LATITUDE, BUS_LONGITUDE, 5.0);
+
+        // Then
+        assertArrayEquals(new int[]{0, 2}, result);
+    }
+
+    @Test
+    void testFindWithin_MatchesBruteForce() {
+        // Given
+        Random random = new Random(42);
+        int size = 2000;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = BUS_LATITUDE + (random.nextDouble() - 0.5) * 1.0;
+            longitudes[i] = BUS_LONGITUDE + (random.nextDouble() - 0.5) * 1.0;
+        }
+        PickupIndex index = PickupIndex.build(latitudes, longitudes);
+
+        for (double radius : new double[]{0.5, 2.0, 11.7, 50.0}) {
+            // When
+            int[] result = index.findWithin(BUS_LATITUDE, BUS_LONGITUDE, radius);
+
+            // Then
+            int[] expected = IntStream.range(0, size)
+                    .filter(i -> GeoUtils.distanceMiles(BUS_LATITUDE, BUS_LONGITUDE, latitudes[i], longitudes[i]) <= radius)
+                    .toArray();
+            assertArrayEquals(expected, result, "radius " + radius);
+        }
+    }
+
+    @Test
+    void testFindWithin_NegativeRadius() {
+        // Given
+        PickupIndex index = PickupIndex.build(new double[]{BUS_LATITUDE}, new double[]{BUS_LONGITUDE});
+
+        // Then
+        assertEquals(0, index.findWithin(BUS_LATITUDE, BUS_LONGITUDE, -1.0).length);
+    }
+
+    @Test
+    void testBuild_MismatchedArrays() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PickupIndex.build(new double[2], new double[1]));
+    }
+
+    @Test
+    void testDistanceMiles_KnownDistance() {
+        // Lower Manhattan to Midtown is roughly 3.3 miles
+        double distance = GeoUtils.distanceMiles(BUS_LATITUDE, BUS_LONGITUDE, 40.7580, -73.9855);
+
+        assertEquals(3.3, distance, 0.2);
+        assertEquals(0.0, GeoUtils.distanceMiles(BUS_LATITUDE, BUS_LONGITUDE, BUS_LATITUDE, BUS_LONGITUDE), 1e-9);
+    }
+}
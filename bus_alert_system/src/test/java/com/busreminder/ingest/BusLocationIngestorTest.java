@@ -0,0 +1,178 @@
+package com.busreminder.ingest;
+
+import com.busreminder.dto.IngestResult;
+import com.busreminder.dto.NotificationRequest;
+import com.busreminder.service.LocationProcessingService;
+import com.busreminder.service.NotificationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BusLocationIngestorTest {
+
+    private LocationProcessingService locationProcessingService;
+    private NotificationService notificationService;
+    private MeterRegistry meterRegistry;
+    private BusLocationIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        locationProcessingService = mock(LocationProcessingService.class);
+        notificationService = mock(NotificationService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(locationProcessingService.processBusLocation(anyString(), anyDouble(), anyDouble()))
+                .thenReturn(Collections.emptyList());
+        ingestor = createIngestor(4, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestor.shutdown();
+    }
+
+    @Test
+    void testIngest_NdjsonConflatedByBus() throws Exception {
+        // Given - two fixes of BUS001, the newer one first
+        String body = """
+                {"bus_id":"BUS001","latitude":40.7130,"longitude":-74.0060,"timestamp":"2024-01-15T10:30:10Z"}
+                {"bus_id":"BUS002","latitude":40.7580,"longitude":-73.9855}
+                {"bus_id":"BUS001","latitude":40.7128,"longitude":-74.0060,"timestamp":"2024-01-15T10:30:00Z"}
+                """;
+
+        // When
+        IngestResult result = ingestor.ingest(stream(body));
+
+        // Then
+        assertEquals(new IngestResult(3, 2, 1, 0, 0), result);
+        verify(locationProcessingService, timeout(1000)).processBusLocation("BUS001", 40.7130, -74.0060);
+        verify(locationProcessingService, timeout(1000)).processBusLocation("BUS002", 40.7580, -73.9855);
+        verify(locationProcessingService, after(100).times(2)).processBusLocation(anyString(), anyDouble(), anyDouble());
+        assertEquals(1.0, meterRegistry.get("busreminder.location.ingest.events")
+                .tag("outcome", "conflated").counter().count());
+    }
+
+    @Test
+    void testIngest_JsonArrayWithInvalidEvent() throws Exception {
+        // Given - the second event has no coordinates
+        String body = "[{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060},"
+                + "{\"bus_id\":\"BUS002\"}]";
+
+        // When
+        IngestResult result = ingestor.ingest(stream(body));
+
+        // Then
+        assertEquals(new IngestResult(2, 1, 0, 1, 0), result);
+        verify(locationProcessingService, timeout(1000)).processBusLocation("BUS001", 40.7128, -74.0060);
+    }
+
+    @Test
+    void testIngest_SendsNotifications() throws Exception {
+        // Given
+        NotificationRequest request = new NotificationRequest();
+        request.setPassengerId("PASS001");
+        List<NotificationRequest> notifications = List.of(request);
+        when(locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060)).thenReturn(notifications);
+
+        // When
+        ingestor.ingest(stream("{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060}"));
+
+        // Then
+        verify(notificationService, timeout(1000)).sendNotifications(notifications);
+    }
+
+    @Test
+    void testIngest_MalformedBatchQueuesNothing() {
+        // Given - the second line is cut off
+        String body = "{\"bus_id\":\"BUS001\",\"latitude\":40.7128,\"longitude\":-74.0060}\n{\"bus_id\":\"BUS0";
+
+        // When/Then
+        assertThrows(JsonProcessingException.class, () -> ingestor.ingest(stream(body)));
+        assertThrows(JsonProcessingException.class, () -> ingestor.ingest(stream("[1, 2]")));
+        assertThrows(JsonProcessingException.class, () -> ingestor.ingest(stream("[{\"bus_id\":\"BUS001\"}")));
+        verifyNoInteractions(locationProcessingService);
+    }
+
+    @Test
+    void testIngest_EmptyBatch() throws Exception {
+        assertEquals(new IngestResult(0, 0, 0, 0, 0), ingestor.ingest(stream("")));
+        assertEquals(new IngestResult(0, 0, 0, 0, 0), ingestor.ingest(stream("[]")));
+    }
+
+    @Test
+    void testIngest_WaitingBusKeepsOnlyNewestEvent() throws Exception {
+        // Given - the first fix of BUS001 is being processed and blocks
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(locationProcessingService.processBusLocation(eq("BUS001"), eq(1.0), anyDouble())).thenAnswer(invocation -> {
+            processing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+        ingestor.ingest(stream(event("BUS001", 1.0)));
+        assertTrue(processing.await(1, TimeUnit.SECONDS));
+
+        // When - two more batches arrive meanwhile
+        ingestor.ingest(stream(event("BUS001", 2.0)));
+        ingestor.ingest(stream(event("BUS001", 3.0)));
+        assertEquals(1, ingestor.getPendingBusCount());
+        release.countDown();
+
+        // Then - the middle fix was superseded, and the bus was never processed twice at once
+        verify(locationProcessingService, timeout(1000)).processBusLocation("BUS001", 3.0, -74.0060);
+        verify(locationProcessingService, never()).processBusLocation("BUS001", 2.0, -74.0060);
+    }
+
+    @Test
+    void testIngest_RejectsBusesBeyondPendingLimit() throws Exception {
+        // Given - one worker, busy with BUS001, and room for one waiting bus
+        ingestor.shutdown();
+        ingestor = createIngestor(1, 1);
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(locationProcessingService.processBusLocation(eq("BUS001"), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+            processing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+        ingestor.ingest(stream(event("BUS001", 1.0)));
+        assertTrue(processing.await(1, TimeUnit.SECONDS));
+
+        // When
+        IngestResult result = ingestor.ingest(stream(event("BUS002", 1.0) + "\n" + event("BUS003", 1.0)));
+        release.countDown();
+
+        // Then
+        assertEquals(new IngestResult(2, 1, 0, 0, 1), result);
+        verify(locationProcessingService, timeout(1000)).processBusLocation("BUS002", 1.0, -74.0060);
+        verify(locationProcessingService, never()).processBusLocation(eq("BUS003"), anyDouble(), anyDouble());
+    }
+
+    private BusLocationIngestor createIngestor(int workers, int maxPendingBuses) {
+        return new BusLocationIngestor(new ObjectMapper(), locationProcessingService, notificationService,
+                meterRegistry, workers, maxPendingBuses, 5);
+    }
+
+    private static String event(String busId, double latitude) {
+        return "{\"bus_id\":\"" + busId + "\",\"latitude\":" + latitude + ",\"longitude\":-74.0060}";
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,73 @@
+package com.busreminder.ingest;
+
+import com.busreminder.dto.BusLocationEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatestLocationsTest {
+
+    @Test
+    void testOffer_KeepsNewestByTimestamp() {
+        // Given
+        LatestLocations latest = new LatestLocations();
+
+        // When - the newer fix arrives first
+        boolean newer = latest.offer(event("BUS001", 40.71, "2024-01-15T10:30:10Z"));
+        boolean older = latest.offer(event("BUS001", 40.70, "2024-01-15T10:30:00Z"));
+
+        // Then
+        assertTrue(newer);
+        assertFalse(older);
+        assertEquals(1, latest.size());
+        assertEquals(40.71, latest.values().iterator().next().getLatitude());
+    }
+
+    @Test
+    void testOffer_WithoutTimestampLaterWins() {
+        // Given
+        LatestLocations latest = new LatestLocations();
+
+        // When
+        latest.offer(event("BUS001", 40.70, null));
+        latest.offer(event("BUS002", 41.00, null));
+        latest.offer(event("BUS001", 40.71, "not a timestamp"));
+
+        // Then - in the order the buses were first seen
+        assertEquals(List.of("BUS001", "BUS002"),
+                latest.values().stream().map(BusLocationEvent::getBusId).toList());
+        assertEquals(40.71, latest.values().iterator().next().getLatitude());
+    }
+
+    @Test
+    void testParseTimestamp() {
+        assertEquals(Instant.parse("2024-01-15T09:30:00Z"), LatestLocations.parseTimestamp("2024-01-15T10:30:00+01:00"));
+        assertNull(LatestLocations.parseTimestamp("yesterday"));
+        assertNull(LatestLocations.parseTimestamp(null));
+    }
+
+    @Test
+    void testTimestampOf_PrefersDecodedMillis() {
+        // Given - only decoded millis
+        BusLocationEvent decoded = event("BUS001", 40.70, null);
+        decoded.setTimestampMillis(Instant.parse("2024-01-15T10:30:00Z").toEpochMilli());
+
+        // Then
+        assertEquals(Instant.parse("2024-01-15T10:30:00Z"), LatestLocations.timestampOf(decoded));
+        assertEquals(Instant.parse("2024-01-15T10:30:00Z"),
+                LatestLocations.timestampOf(event("BUS001", 40.70, "2024-01-15T10:30:00Z")));
+        assertNull(LatestLocations.timestampOf(event("BUS001", 40.70, null)));
+    }
+
+    private static BusLocationEvent event(String busId, double latitude, String timestamp) {
+        BusLocationEvent event = new BusLocationEvent();
+        event.setBusId(busId);
+        event.setLatitude(latitude);
+        event.setLongitude(-74.0060);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+}
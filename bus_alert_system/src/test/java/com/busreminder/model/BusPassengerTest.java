@@ -66,6 +66,27 @@ class BusPassengerTest {
         assertFalse(saved.getNotified());
     }
 
+    @Test
+    void testOnCreate_SetsTripStateDefault() {
+        // Given
+        BusPassenger passenger = new BusPassenger();
+        passenger.setPnrId("PNR001");
+        passenger.setPassengerId("PASS001");
+        passenger.setPassengerPhone("+1234567890");
+        passenger.setPickupLatitude(new BigDecimal("40.7128"));
+        passenger.setPickupLongitude(new BigDecimal("-74.0060"));
+        passenger.setTripState(null);
+
+        // When
+        entityManager.persist(passenger);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        BusPassenger saved = entityManager.find(BusPassenger.class, passenger.getId());
+        assertEquals(TripState.PENDING, saved.getTripState());
+    }
+
     @Test
     void testGettersAndSetters() {
         // Given
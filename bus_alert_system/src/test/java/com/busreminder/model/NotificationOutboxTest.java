@@ -0,0 +1,80 @@
+package com.busreminder.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+class NotificationOutboxTest {
+
+    @Autowired
+    private org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager entityManager;
+
+    @Test
+    void testIdempotencyKey() {
+        assertEquals("BUS001:PASS001:SMS",
+                NotificationOutbox.idempotencyKey("BUS001", "PASS001", NotificationChannel.SMS));
+        assertEquals("BUS001:PASS001:CALL",
+                NotificationOutbox.idempotencyKey("BUS001", "PASS001", NotificationChannel.CALL));
+        assertEquals("BUS002:PASS001:SMS",
+                NotificationOutbox.idempotencyKey("BUS002", "PASS001", NotificationChannel.SMS));
+    }
+
+    @Test
+    void testOnCreate_SetsDefaults() {
+        // Given
+        NotificationOutbox entry = createEntry();
+        entry.setStatus(null);
+        entry.setAttempts(null);
+
+        // When
+        entityManager.persist(entry);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        NotificationOutbox saved = entityManager.find(NotificationOutbox.class, "BUS001:PASS001:SMS");
+        assertEquals(OutboxStatus.PENDING, saved.getStatus());
+        assertEquals(0, saved.getAttempts());
+        assertNotNull(saved.getCreatedAt());
+        assertTrue(saved.getCreatedAt().isBefore(LocalDateTime.now().plusSeconds(1)));
+        assertNull(saved.getSentAt());
+    }
+
+    @Test
+    void testIsNew_OnlyUntilPersisted() {
+        // Given
+        NotificationOutbox entry = createEntry();
+        assertTrue(entry.isNew());
+
+        // When
+        entityManager.persist(entry);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        assertFalse(entry.isNew());
+        assertFalse(entityManager.find(NotificationOutbox.class, "BUS001:PASS001:SMS").isNew());
+        assertEquals("BUS001:PASS001:SMS", entry.getId());
+    }
+
+    private NotificationOutbox createEntry() {
+        NotificationOutbox entry = new NotificationOutbox();
+        entry.setIdempotencyKey(NotificationOutbox.idempotencyKey("BUS001", "PASS001", NotificationChannel.SMS));
+        entry.setBusId("BUS001");
+        entry.setPassengerId("PASS001");
+        entry.setChannel(NotificationChannel.SMS);
+        entry.setPassengerPhone("+1234567890");
+        return entry;
+    }
+}
@@ -0,0 +1,25 @@
+package com.busreminder.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripStateTest {
+
+    @Test
+    void testCanAdvanceTo_OnlyForward() {
+        assertTrue(TripState.PENDING.canAdvanceTo(TripState.IMMINENT));
+        assertTrue(TripState.IMMINENT.canAdvanceTo(TripState.NOTIFIED));
+        assertTrue(TripState.PENDING.canAdvanceTo(TripState.PICKED_UP));
+        assertFalse(TripState.NOTIFIED.canAdvanceTo(TripState.IMMINENT));
+        assertFalse(TripState.IMMINENT.canAdvanceTo(TripState.IMMINENT));
+    }
+
+    @Test
+    void testIsSettled() {
+        assertFalse(TripState.PENDING.isSettled());
+        assertFalse(TripState.IMMINENT.isSettled());
+        assertTrue(TripState.NOTIFIED.isSettled());
+        assertTrue(TripState.PICKED_UP.isSettled());
+    }
+}
@@ -0,0 +1,212 @@
+package com.busreminder.notification;
+
+import com.busreminder.concurrent.VirtualThreads;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NotificationDispatcherTest {
+
+    private NotificationDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testExecute_RunsOnWorkerThread() throws InterruptedException {
+        // Given
+        dispatcher = new NotificationDispatcher(2, 10, 5, false);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<String> threadName = new AtomicReference<>();
+
+        // When
+        dispatcher.execute(() -> {
+            threadName.set(Thread.currentThread().getName());
+            done.countDown();
+        });
+
+        // Then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(threadName.get().startsWith("notification-dispatch-"));
+        assertEquals(1, dispatcher.getSubmittedCount());
+    }
+
+    @Test
+    void testExecute_FullQueueRunsOnCaller() throws InterruptedException {
+        // Given - one worker blocked and a queue of one already filled
+        dispatcher = new NotificationDispatcher(1, 1, 5, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        dispatcher.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.execute(() -> { });
+        assertEquals(1, dispatcher.getQueueDepth());
+
+        // When
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        dispatcher.execute(() -> ranOn.set(Thread.currentThread()));
+
+        // Then - backpressure: the submitting thread did the work itself
+        assertEquals(Thread.currentThread(), ranOn.get());
+        assertEquals(1, dispatcher.getCallerRunsCount());
+        release.countDown();
+    }
+
+    @Test
+    void testExecute_FailingTaskIsCounted() throws InterruptedException {
+        // Given
+        dispatcher = new NotificationDispatcher(1, 10, 5, false);
+
+        // When
+        dispatcher.execute(() -> {
+            throw new IllegalStateException("Twilio down");
+        });
+        dispatcher.shutdown();
+
+        // Then
+        assertEquals(1, dispatcher.getFailedCount());
+        assertEquals(0, dispatcher.getCompletedCount());
+    }
+
+    @Test
+    void testShutdown_DrainsQueuedTasks() {
+        // Given
+        dispatcher = new NotificationDispatcher(1, 100, 5, false);
+        AtomicInteger delivered = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            dispatcher.execute(delivered::incrementAndGet);
+        }
+
+        // When
+        dispatcher.shutdown();
+
+        // Then
+        assertEquals(50, delivered.get());
+        assertEquals(50, dispatcher.getCompletedCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    void testVirtualThreads_FallsBackToPlatformThreadsBeforeJava21() throws InterruptedException {
+        assumeFalse(VirtualThreads.isSupported());
+
+        // Given
+        dispatcher = new NotificationDispatcher(1, 10, 5, true);
+        CountDownLatch done = new CountDownLatch(1);
+
+        // When
+        dispatcher.execute(done::countDown);
+
+        // Then
+        assertFalse(dispatcher.isVirtualThreads());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testVirtualThreads_RunsEachTaskOnItsOwnThread() throws InterruptedException {
+        assumeTrue(VirtualThreads.isSupported());
+
+        // Given - a single "worker", which no longer limits concurrency
+        dispatcher = new NotificationDispatcher(1, 10, 5, true);
+        CountDownLatch allStarted = new CountDownLatch(3);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> threadName = new AtomicReference<>();
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            dispatcher.execute(() -> {
+                threadName.set(Thread.currentThread().getName());
+                allStarted.countDown();
+                awaitQuietly(release);
+            });
+        }
+
+        // Then
+        assertTrue(dispatcher.isVirtualThreads());
+        assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(3, dispatcher.getActiveCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertTrue(threadName.get().startsWith("notification-dispatch-"));
+        release.countDown();
+    }
+
+    @Test
+    void testVirtualThreads_InFlightLimitRunsOnCaller() throws InterruptedException {
+        assumeTrue(VirtualThreads.isSupported());
+
+        // Given - workers + queue capacity = 2 batches in flight, both blocked
+        dispatcher = new NotificationDispatcher(1, 1, 5, true);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            dispatcher.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        dispatcher.execute(() -> ranOn.set(Thread.currentThread()));
+
+        // Then
+        assertEquals(Thread.currentThread(), ranOn.get());
+        assertEquals(1, dispatcher.getCallerRunsCount());
+        release.countDown();
+    }
+
+    @Test
+    void testVirtualThreads_ShutdownWaitsForInFlightTasks() {
+        assumeTrue(VirtualThreads.isSupported());
+
+        // Given
+        dispatcher = new NotificationDispatcher(1, 100, 5, true);
+        AtomicInteger delivered = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            dispatcher.execute(() -> {
+                sleepQuietly(10);
+                delivered.incrementAndGet();
+            });
+        }
+
+        // When
+        dispatcher.shutdown();
+
+        // Then
+        assertEquals(50, delivered.get());
+        assertEquals(50, dispatcher.getCompletedCount());
+        assertEquals(0, dispatcher.getActiveCount());
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.busreminder.notification;
+
+import com.busreminder.dto.NotificationRequest;
+import com.busreminder.model.NotificationChannel;
+import com.busreminder.model.NotificationOutbox;
+import com.busreminder.model.OutboxStatus;
+import com.busreminder.model.TripState;
+import com.busreminder.repository.NotificationOutboxRepository;
+import com.busreminder.trip.TripStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationOutboxRelayTest {
+
+    @Mock
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Mock
+    private TwilioNotificationSender notificationSender;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private TripStateStore tripStateStore;
+
+    private final List<Runnable> queued = new ArrayList<>();
+    private MeterRegistry meterRegistry;
+    private NotificationOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new NotificationOutboxRelay(notificationOutboxRepository, notificationSender,
+                notificationDispatcher, tripStateStore, meterRegistry);
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(relay, "retentionHours", 24L);
+        ReflectionTestUtils.setField(relay, "leaseSeconds", 300L);
+        // Hold dispatched deliveries so the test decides when they run
+        lenient().doAnswer(invocation -> queued.add(invocation.getArgument(0)))
+                .when(notificationDispatcher).execute(any(Runnable.class));
+        lenient().when(notificationSender.send(any(NotificationOutbox.class))).thenReturn(OutboxStatus.SENT);
+    }
+
+    @Test
+    void testAppend_InsertsOneEntryPerChannelInOneBatch() {
+        // When
+        relay.append(List.of(createRequest("PASS001"), createRequest("PASS002")));
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<NotificationOutbox>> saved = ArgumentCaptor.forClass(List.class);
+        verify(notificationOutboxRepository, times(1)).saveAll(saved.capture());
+        assertEquals(List.of("BUS001:PASS001:SMS", "BUS001:PASS001:CALL",
+                        "BUS001:PASS002:SMS", "BUS001:PASS002:CALL"),
+                saved.getValue().stream().map(NotificationOutbox::getIdempotencyKey).toList());
+        NotificationOutbox sms = saved.getValue().get(0);
+        assertEquals("BUS001", sms.getBusId());
+        assertEquals(NotificationChannel.SMS, sms.getChannel());
+        assertEquals("+1234567890", sms.getPassengerPhone());
+        assertEquals(5L, sms.getEstimatedMinutes());
+        assertTrue(sms.isNew());
+        assertEquals(1, queued.size());
+        assertEquals(4, relay.getInFlightCount());
+    }
+
+    @Test
+    void testDeliver_RecordsStatusesInBulkAndAdvancesTripState() {
+        // Given - the SMS goes out, the call fails
+        when(notificationSender.send(any(NotificationOutbox.class)))
+                .thenReturn(OutboxStatus.SENT, OutboxStatus.FAILED);
+        relay.append(List.of(createRequest("PASS001")));
+
+        // When
+        queued.get(0).run();
+
+        // Then
+        verify(notificationOutboxRepository).updateStatus(eq(List.of("BUS001:PASS001:SMS")), eq(OutboxStatus.SENT),
+                any(LocalDateTime.class));
+        verify(notificationOutboxRepository).recordFailedAttempt(List.of("BUS001:PASS001:CALL"), 3);
+        verify(tripStateStore, atLeastOnce()).advance("BUS001", "PASS001", TripState.NOTIFIED);
+        assertEquals(0, relay.getInFlightCount());
+        assertEquals(1, relay.getDeliveryCount(OutboxStatus.SENT));
+        assertEquals(1, relay.getDeliveryCount(OutboxStatus.FAILED));
+        assertEquals(1, meterRegistry.get("busreminder.notification.delivery").timer().count());
+    }
+
+    @Test
+    void testDeliver_FailedSendLeavesPassengerImminentUntilRetrySucceeds() {
+        // Given - both channels fail on the first attempt
+        when(notificationSender.send(any(NotificationOutbox.class))).thenReturn(OutboxStatus.FAILED);
+        relay.append(List.of(createRequest("PASS001")));
+
+        // When
+        queued.get(0).run();
+
+        // Then - the entries stay pending for the sweep and the passenger is not notified
+        verify(notificationOutboxRepository).recordFailedAttempt(
+                List.of("BUS001:PASS001:SMS", "BUS001:PASS001:CALL"), 3);
+        verify(tripStateStore, never()).advance(anyString(), anyString(), any(TripState.class));
+
+        // Given - the retry from the sweep goes out
+        when(notificationSender.send(any(NotificationOutbox.class))).thenReturn(OutboxStatus.SENT);
+        givenClaimable(createEntry("PASS001", NotificationChannel.SMS));
+
+        // When
+        relay.sweep();
+        queued.get(1).run();
+
+        // Then
+        verify(tripStateStore).advance("BUS001", "PASS001", TripState.NOTIFIED);
+    }
+
+    @Test
+    void testAppend_InsertFailureStillDelivers() {
+        // Given
+        when(notificationOutboxRepository.saveAll(anyList())).thenThrow(new IllegalStateException("Database down"));
+
+        // When
+        relay.append(List.of(createRequest("PASS001")));
+        queued.get(0).run();
+
+        // Then
+        verify(notificationSender, times(2)).send(any(NotificationOutbox.class));
+        assertEquals(1, relay.getAppendFailureCount());
+    }
+
+    @Test
+    void testAppend_ExistingRowsAreNotDeliveredAgain() {
+        // Given - PASS001 is already in the outbox
+        when(notificationOutboxRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+        when(notificationOutboxRepository.save(any(NotificationOutbox.class))).thenAnswer(invocation -> {
+            NotificationOutbox entry = invocation.getArgument(0);
+            if ("PASS001".equals(entry.getPassengerId())) {
+                throw new DataIntegrityViolationException("Duplicate entry");
+            }
+            return entry;
+        });
+
+        // When
+        relay.append(List.of(createRequest("PASS001"), createRequest("PASS002")));
+
+        // Then - only PASS002 is delivered
+        assertEquals(1, queued.size());
+        assertEquals(2, relay.getInFlightCount());
+        queued.get(0).run();
+        ArgumentCaptor<NotificationOutbox> sent = ArgumentCaptor.forClass(NotificationOutbox.class);
+        verify(notificationSender, times(2)).send(sent.capture());
+        assertEquals(List.of("BUS001:PASS002:SMS", "BUS001:PASS002:CALL"),
+                sent.getAllValues().stream().map(NotificationOutbox::getIdempotencyKey).toList());
+        verify(tripStateStore, never()).advance("BUS001", "PASS001", TripState.NOTIFIED);
+        assertEquals(2, relay.getDuplicateCount());
+        assertEquals(0, relay.getAppendFailureCount());
+    }
+
+    @Test
+    void testAppend_AllRowsExist() {
+        // Given
+        when(notificationOutboxRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+        when(notificationOutboxRepository.save(any(NotificationOutbox.class)))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+        // When
+        relay.append(List.of(createRequest("PASS001")));
+
+        // Then
+        assertTrue(queued.isEmpty());
+        assertEquals(0, relay.getInFlightCount());
+        assertEquals(2, relay.getDuplicateCount());
+    }
+
+    @Test
+    void testSweep_SkipsEntriesInFlight() {
+        // Given - PASS001 has just been appended and is waiting for a worker
+        relay.append(List.of(createRequest("PASS001")));
+        NotificationOutbox leftOver = createEntry("PASS002", NotificationChannel.CALL);
+        when(notificationOutboxRepository.findClaimable(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(createEntry("PASS001", NotificationChannel.SMS), leftOver));
+        when(notificationOutboxRepository.claim(anyCollection(), anyString(), any(LocalDateTime.class),
+                any(LocalDateTime.class))).thenReturn(1);
+        when(notificationOutboxRepository.findByClaimedByAndStatus(anyString(), eq(OutboxStatus.IN_PROGRESS)))
+                .thenReturn(List.of(leftOver));
+
+        // When
+        int dispatched = relay.sweep();
+
+        // Then - only the entry left over from before is claimed and retried
+        assertEquals(1, dispatched);
+        verify(notificationOutboxRepository).claim(eq(List.of("BUS001:PASS002:CALL")), anyString(),
+                any(LocalDateTime.class), any(LocalDateTime.class));
+        queued.get(1).run();
+        verify(notificationSender, times(1)).send(any(NotificationOutbox.class));
+        verify(notificationOutboxRepository).updateStatus(eq(List.of("BUS001:PASS002:CALL")), eq(OutboxStatus.SENT),
+                any(LocalDateTime.class));
+    }
+
+    @Test
+    void testSweep_NothingPending() {
+        // Given
+        when(notificationOutboxRepository.findClaimable(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // When
+        int dispatched = relay.sweep();
+
+        // Then
+        assertEquals(0, dispatched);
+        verify(notificationOutboxRepository, never()).claim(anyCollection(), anyString(), any(), any());
+        verifyNoInteractions(notificationDispatcher);
+    }
+
+    @Test
+    void testSweep_EntriesClaimedByAnotherInstanceAreLeftAlone() {
+        // Given - another instance claims the entry between the SELECT and the UPDATE
+        when(notificationOutboxRepository.findClaimable(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(createEntry("PASS001", NotificationChannel.SMS)));
+        when(notificationOutboxRepository.claim(anyCollection(), anyString(), any(LocalDateTime.class),
+                any(LocalDateTime.class))).thenReturn(0);
+
+        // When
+        int dispatched = relay.sweep();
+
+        // Then
+        assertEquals(0, dispatched);
+        verifyNoInteractions(notificationDispatcher);
+    }
+
+    @Test
+    void testAppend_ClaimsTheEntries() {
+        // When
+        relay.append(List.of(createRequest("PASS001")));
+
+        // Then - the rows are inserted in progress, with a lease, so other instances do not sweep them
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<NotificationOutbox>> saved = ArgumentCaptor.forClass(List.class);
+        verify(notificationOutboxRepository).saveAll(saved.capture());
+        NotificationOutbox sms = saved.getValue().get(0);
+        assertEquals(OutboxStatus.IN_PROGRESS, sms.getStatus());
+        assertNotNull(sms.getClaimedBy());
+        assertEquals(sms.getClaimedBy(), saved.getValue().get(1).getClaimedBy());
+        assertTrue(sms.getLeaseUntil().isAfter(LocalDateTime.now().plusSeconds(290)));
+    }
+
+    @Test
+    void testDeliver_RenewsTheClaimAndSkipsEntriesTakenOver() {
+        // Given - the batch waited past half its lease, and another instance took over the call meanwhile
+        ReflectionTestUtils.setField(relay, "leaseSeconds", 0L);
+        relay.append(List.of(createRequest("PASS001")));
+        NotificationOutbox sms = createEntry("PASS001", NotificationChannel.SMS);
+        when(notificationOutboxRepository.renewClaim(anyString(), any(LocalDateTime.class))).thenReturn(1);
+        when(notificationOutboxRepository.findByClaimedByAndStatus(anyString(), eq(OutboxStatus.IN_PROGRESS)))
+                .thenReturn(List.of(sms));
+
+        // When
+        queued.get(0).run();
+
+        // Then - only the SMS still held is sent
+        ArgumentCaptor<NotificationOutbox> sent = ArgumentCaptor.forClass(NotificationOutbox.class);
+        verify(notificationSender).send(sent.capture());
+        assertEquals("BUS001:PASS001:SMS", sent.getValue().getIdempotencyKey());
+        verify(notificationOutboxRepository).updateStatus(eq(List.of("BUS001:PASS001:SMS")), eq(OutboxStatus.SENT),
+                any(LocalDateTime.class));
+        assertEquals(0, relay.getInFlightCount());
+    }
+
+    @Test
+    void testDeliver_StatusUpdateFailureLeavesEntriesForTheSweep() {
+        // Given
+        when(notificationOutboxRepository.updateStatus(anyCollection(), any(), any()))
+                .thenThrow(new IllegalStateException("Database down"));
+        relay.append(List.of(createRequest("PASS001")));
+
+        // When
+        queued.get(0).run();
+
+        // Then - no exception, and the entries can be handed out again
+        assertEquals(0, relay.getInFlightCount());
+        verify(notificationOutboxRepository, never()).recordFailedAttempt(anyCollection(), anyInt());
+    }
+
+    @Test
+    void testPurge_DeletesSettledEntriesOlderThanRetention() {
+        // Given
+        when(notificationOutboxRepository.deleteSettledBefore(any(LocalDateTime.class))).thenReturn(2);
+
+        // When
+        int deleted = relay.purge();
+
+        // Then
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(notificationOutboxRepository).deleteSettledBefore(cutoff.capture());
+        assertEquals(2, deleted);
+        assertTrue(cutoff.getValue().isBefore(LocalDateTime.now().minusHours(23)));
+    }
+
+    private void givenClaimable(NotificationOutbox... entries) {
+        when(notificationOutboxRepository.findClaimable(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(entries));
+        when(notificationOutboxRepository.claim(anyCollection(), anyString(), any(LocalDateTime.class),
+                any(LocalDateTime.class))).thenReturn(entries.length);
+        when(notificationOutboxRepository.findByClaimedByAndStatus(anyString(), eq(OutboxStatus.IN_PROGRESS)))
+                .thenReturn(List.of(entries));
+    }
+
+    private NotificationRequest createRequest(String passengerId) {
+        NotificationRequest request = new NotificationRequest();
+        request.setBusId("BUS001");
+        request.setPassengerId(passengerId);
+        request.setPassengerName("John Doe");
+        request.setPassengerPhone("+1234567890");
+        request.setPickupAddress("123 Main St");
+        request.setEstimatedMinutes(5L);
+        return request;
+    }
+
+    private NotificationOutbox createEntry(String passengerId, NotificationChannel channel) {
+        NotificationOutbox entry = new NotificationOutbox();
+        entry.setIdempotencyKey(NotificationOutbox.idempotencyKey("BUS001", passengerId, channel));
+        entry.setBusId("BUS001");
+        entry.setPassengerId(passengerId);
+        entry.setChannel(channel);
+        entry.setPassengerPhone("+1234567890");
+        return entry;
+    }
+}
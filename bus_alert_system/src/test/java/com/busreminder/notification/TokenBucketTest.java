@@ -0,0 +1,104 @@
+package com.busreminder.notification;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testReserve_BurstThenPacedAtRate() {
+        // Given
+        TokenBucket bucket = new TokenBucket(2.0, 2, 0);
+
+        // When/Then - two tokens straight away, then one every half second, in reservation order
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(SECOND / 2, bucket.reserve(0));
+        assertEquals(SECOND, bucket.reserve(0));
+    }
+
+    @Test
+    void testReserve_RefillsWhileIdleUpToBurst() {
+        // Given
+        TokenBucket bucket = new TokenBucket(1.0, 1, 0);
+        bucket.reserve(0);
+
+        // When - idle for ten seconds
+        long first = bucket.reserve(10 * SECOND);
+        long second = bucket.reserve(10 * SECOND);
+
+        // Then - only one token was saved up
+        assertEquals(0, first);
+        assertEquals(SECOND, second);
+    }
+
+    @Test
+    void testWaitNanos_DoesNotTakeToken() {
+        // Given
+        TokenBucket bucket = new TokenBucket(2.0, 1, 0);
+
+        // When/Then
+        assertEquals(0, bucket.waitNanos(0));
+        bucket.reserve(0);
+        assertEquals(SECOND / 2, bucket.waitNanos(0));
+        assertEquals(SECOND / 4, bucket.waitNanos(SECOND / 4));
+        assertEquals(SECOND / 4, bucket.reserve(SECOND / 4));
+    }
+
+    @Test
+    void testThrottled_HalvesRateAndBacksOff() {
+        // Given
+        TokenBucket bucket = new TokenBucket(4.0, 1, 0);
+        bucket.reserve(0);
+
+        // When
+        bucket.throttled(0, 2 * SECOND);
+
+        // Then - the next token comes after the backoff plus one interval at the halved rate
+        assertEquals(2.0, bucket.getRate());
+        assertEquals(1, bucket.getConsecutiveThrottles());
+        assertEquals(2 * SECOND + SECOND / 2, bucket.reserve(0));
+    }
+
+    @Test
+    void testThrottled_RateHasFloor() {
+        // Given
+        TokenBucket bucket = new TokenBucket(16.0, 1, 0);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            bucket.throttled(0, 0);
+        }
+
+        // Then
+        assertEquals(1.0, bucket.getRate());
+    }
+
+    @Test
+    void testSucceeded_RaisesRateBackToConfigured() {
+        // Given
+        TokenBucket bucket = new TokenBucket(10.0, 1, 0);
+        bucket.throttled(0, 0);
+
+        // When
+        bucket.succeeded();
+        int throttlesAfterSuccess = bucket.getConsecutiveThrottles();
+        for (int i = 0; i < 10; i++) {
+            bucket.succeeded();
+        }
+
+        // Then
+        assertEquals(0, throttlesAfterSuccess);
+        assertEquals(10.0, bucket.getRate());
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1, 0));
+    }
+}
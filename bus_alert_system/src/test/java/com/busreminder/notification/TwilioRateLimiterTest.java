@@ -0,0 +1,218 @@
+package com.busreminder.notification;
+
+import com.busreminder.model.NotificationChannel;
+import com.twilio.exception.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwilioRateLimiterTest {
+
+    private MeterRegistry meterRegistry;
+    private TwilioRateLimiter rateLimiter;
+    private long now;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new TwilioRateLimiter(meterRegistry);
+        ReflectionTestUtils.setField(rateLimiter, "smsPerSecond", 2.0);
+        ReflectionTestUtils.setField(rateLimiter, "callsPerSecond", 1.0);
+        ReflectionTestUtils.setField(rateLimiter, "smsPerSecondOverrides", "+15550000002=4");
+        ReflectionTestUtils.setField(rateLimiter, "callsPerSecondOverrides", "");
+        ReflectionTestUtils.setField(rateLimiter, "burst", 1);
+        ReflectionTestUtils.setField(rateLimiter, "maxConcurrentRequests", 2);
+        ReflectionTestUtils.setField(rateLimiter, "throttleBackoffMillis", 1000L);
+        ReflectionTestUtils.setField(rateLimiter, "maxBackoffMillis", 30000L);
+        ReflectionTestUtils.setField(rateLimiter, "maxThrottleRetries", 2);
+        // A fake clock that sleeping moves forward
+        ReflectionTestUtils.setField(rateLimiter, "nanoClock", (LongSupplier) () -> now);
+        ReflectionTestUtils.setField(rateLimiter, "sleeper", (TwilioRateLimiter.Sleeper) nanos -> {
+            sleeps.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+            now += nanos;
+        });
+        rateLimiter.init();
+    }
+
+    @Test
+    void testExecute_BurstDrainsAtConfiguredRate() throws InterruptedException {
+        // When - a busload of five SMS from one number
+        List<Long> sentAtMillis = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.execute(NotificationChannel.SMS, List.of("+15550000001"),
+                    sender -> sentAtMillis.add(millis()));
+        }
+
+        // Then - none is dropped, one every half second
+        assertEquals(List.of(0L, 500L, 1000L, 1500L, 2000L), sentAtMillis);
+        assertEquals(5, meterRegistry.get("busreminder.twilio.rate.limit.wait")
+                .tag("channel", "sms").timer().count());
+        assertEquals(2000, meterRegistry.get("busreminder.twilio.rate.limit.wait")
+                .tag("channel", "sms").timer().totalTime(TimeUnit.MILLISECONDS), 1);
+    }
+
+    @Test
+    void testExecute_BucketsArePerChannelAndNumber() throws InterruptedException {
+        // Given - the SMS bucket of one number is spent
+        rateLimiter.execute(NotificationChannel.SMS, List.of("+15550000001"), sender -> null);
+
+        // When
+        rateLimiter.execute(NotificationChannel.CALL, List.of("+15550000001"), sender -> null);
+        rateLimiter.execute(NotificationChannel.SMS, List.of("+15550000003"), sender -> null);
+
+        // Then - neither had to wait
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    void testExecute_PerNumberOverride() throws InterruptedException {
+        // When
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.execute(NotificationChannel.SMS, List.of("+15550000002"), sender -> null);
+        }
+
+        // Then - paced at 4 per second instead of the default 2
+        assertEquals(List.of(250L, 250L), sleeps);
+        assertEquals(4.0, rateLimiter.getRate(NotificationChannel.SMS, "+15550000002"));
+    }
+
+    @Test
+    void testExecute_RetriesThrottledRequestWithBackoff() throws InterruptedException {
+        // Given - Twilio answers 429 twice
+        int[] calls = {0};
+
+        // When
+        String result = rateLimiter.execute(NotificationChannel.SMS, List.of("+15550000001"), sender -> {
+            if (calls[0]++ < 2) {
+                throw tooManyRequests();
+            }
+            return "SM123";
+        });
+
+        // Then - sent on the third try, after growing waits and at a lower rate
+        assertEquals("SM123", result);
+        assertEquals(3, calls[0]);
+        assertEquals(2, sleeps.size());
+        assertTrue(sleeps.get(1) > sleeps.get(0));
+        assertTrue(rateLimiter.getRate(NotificationChannel.SMS, "+15550000001") < 2.0);
+        assertEquals(2, meterRegistry.get("busreminder.twilio.throttled").tag("channel", "sms").counter().count());
+        assertEquals(0, rateLimiter.getOpenRequestCount());
+    }
+
+    @Test
+    void testExecute_GivesUpAfterMaxThrottleRetries() {
+        // Given
+        int[] calls = {0};
+
+        // When
+        assertThrows(ApiException.class, () -> rateLimiter.execute(NotificationChannel.CALL, List.of("+15550000001"),
+                sender -> {
+                    calls[0]++;
+                    throw tooManyRequests();
+                }));
+
+        // Then - the first try plus two retries
+        assertEquals(3, calls[0]);
+        assertEquals(0, rateLimiter.getOpenRequestCount());
+    }
+
+    @Test
+    void testExecute_OtherErrorsAreNotRetried() {
+        // Given
+        int[] calls = {0};
+
+        // When
+        assertThrows(ApiException.class, () -> rateLimiter.execute(NotificationChannel.SMS, List.of("+15550000001"),
+                sender -> {
+                    calls[0]++;
+                    throw new ApiException("Invalid 'To' Phone Number", 21211, null, 400, null);
+                }));
+
+        // Then
+        assertEquals(1, calls[0]);
+        assertEquals(2.0, rateLimiter.getRate(NotificationChannel.SMS, "+15550000001"));
+        assertEquals(0, meterRegistry.get("busreminder.twilio.throttled").tag("channel", "sms").counter().count());
+    }
+
+    @Test
+    void testExecute_SpreadsBurstOverSenders() throws InterruptedException {
+        // Given
+        List<String> senders = List.of("+15550000001", "+15550000003", "+15550000004");
+        Map<String, Integer> sentFrom = new TreeMap<>();
+
+        // When - twelve SMS at 2 per second per number
+        for (int i = 0; i < 12; i++) {
+            rateLimiter.execute(NotificationChannel.SMS, senders, sender -> sentFrom.merge(sender, 1, Integer::sum));
+        }
+
+        // Then - four from each, done in 1.5 seconds instead of the 5.5 one number would take
+        assertEquals(Map.of("+15550000001", 4, "+15550000003", 4, "+15550000004", 4), sentFrom);
+        assertEquals(1500, millis());
+        assertEquals(4, meterRegistry.get("busreminder.twilio.sender.requests")
+                .tag("channel", "sms").tag("sender", "+15550000003").counter().count());
+    }
+
+    @Test
+    void testExecute_PrefersLeastLoadedSender() throws InterruptedException {
+        // Given - the faster override number frees up twice as often
+        List<String> senders = List.of("+15550000001", "+15550000002");
+        Map<String, Integer> sentFrom = new TreeMap<>();
+
+        // When
+        for (int i = 0; i < 12; i++) {
+            rateLimiter.execute(NotificationChannel.SMS, senders, sender -> sentFrom.merge(sender, 1, Integer::sum));
+        }
+
+        // Then
+        assertEquals(4, sentFrom.get("+15550000001"));
+        assertEquals(8, sentFrom.get("+15550000002"));
+    }
+
+    @Test
+    void testExecute_ThrottledRetryMovesToAnotherSender() throws InterruptedException {
+        // Given - the first sender is throttled once
+        List<String> senders = List.of("+15550000001", "+15550000003");
+        List<String> tried = new ArrayList<>();
+
+        // When
+        rateLimiter.execute(NotificationChannel.SMS, senders, sender -> {
+            tried.add(sender);
+            if (tried.size() == 1) {
+                throw tooManyRequests();
+            }
+            return null;
+        });
+
+        // Then - retried straight away from the sender that was not backing off
+        assertEquals(List.of("+15550000001", "+15550000003"), tried);
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    void testParseOverrides() {
+        assertEquals(Map.of("+15550000001", 10.0, "+15550000002", 0.5),
+                TwilioRateLimiter.parseOverrides(" +15550000001=10, +15550000002=0.5"));
+        assertTrue(TwilioRateLimiter.parseOverrides("").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> TwilioRateLimiter.parseOverrides("+15550000001"));
+    }
+
+    private long millis() {
+        return TimeUnit.NANOSECONDS.toMillis(now);
+    }
+
+    private static ApiException tooManyRequests() {
+        return new ApiException("Too Many Requests", 20429, null, 429, null);
+    }
+}
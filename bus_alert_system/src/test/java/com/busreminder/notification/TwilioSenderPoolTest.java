@@ -0,0 +1,71 @@
+package com.busreminder.notification;
+
+import com.busreminder.model.NotificationChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwilioSenderPoolTest {
+
+    private TwilioSenderPool senderPool;
+
+    @BeforeEach
+    void setUp() {
+        senderPool = new TwilioSenderPool();
+        ReflectionTestUtils.setField(senderPool, "twilioPhoneNumbers", "");
+        ReflectionTestUtils.setField(senderPool, "twilioPhoneNumber", "");
+    }
+
+    @Test
+    void testInit_SingleNumber() {
+        // Given
+        ReflectionTestUtils.setField(senderPool, "twilioPhoneNumber", "+15550000001");
+
+        // When
+        senderPool.init();
+
+        // Then
+        assertEquals(List.of("+15550000001"), senderPool.getSenders(NotificationChannel.SMS));
+        assertEquals(List.of("+15550000001"), senderPool.getSenders(NotificationChannel.CALL));
+    }
+
+    @Test
+    void testInit_PoolTakesPrecedenceOverSingleNumber() {
+        // Given
+        ReflectionTestUtils.setField(senderPool, "twilioPhoneNumber", "+15550000001");
+        ReflectionTestUtils.setField(senderPool, "twilioPhoneNumbers", " +15550000002, +15550000003,,+15550000002");
+
+        // When
+        senderPool.init();
+
+        // Then - trimmed, blanks and duplicates dropped
+        assertEquals(List.of("+15550000002", "+15550000003"), senderPool.getSenders(NotificationChannel.SMS));
+    }
+
+    @Test
+    void testInit_MessagingServicesOnlySendSms() {
+        // Given
+        ReflectionTestUtils.setField(senderPool, "twilioPhoneNumbers", "+15550000002,MG1234567890");
+
+        // When
+        senderPool.init();
+
+        // Then
+        assertEquals(List.of("+15550000002", "MG1234567890"), senderPool.getSenders(NotificationChannel.SMS));
+        assertEquals(List.of("+15550000002"), senderPool.getSenders(NotificationChannel.CALL));
+    }
+
+    @Test
+    void testInit_NothingConfigured() {
+        // When
+        senderPool.init();
+
+        // Then
+        assertTrue(senderPool.getSenders(NotificationChannel.SMS).isEmpty());
+        assertTrue(senderPool.getSenders(NotificationChannel.CALL).isEmpty());
+    }
+}
@@ -0,0 +1,303 @@
+package com.busreminder.push;
+
+import com.busreminder.cache.PickupPoints;
+import com.busreminder.dto.EtaUpdate;
+import com.busreminder.dto.PassengerPickup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EtaBroadcasterTest {
+
+    private EtaBroadcaster broadcaster;
+    private PickupPoints pickups;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new EtaBroadcaster(4, 10, 10000, 16, false);
+        pickups = PickupPoints.of(List.of(createPassenger("PASS001"), createPassenger("PASS002")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void testPublish_BusSubscriberGetsAllEtas() throws Exception {
+        // Given
+        EtaSink sink = mock(EtaSink.class);
+        broadcaster.subscribeToBus("BUS001", sink);
+
+        // When
+        broadcaster.publish("BUS001", pickups, new long[]{5, 12});
+        broadcaster.publish("BUS002", pickups, new long[]{3, 4});
+
+        // Then - one event for the ping, none for the other bus
+        verify(sink, timeout(1000)).send(eq(EtaBroadcaster.BUS_EVENT), argThat(data -> {
+            List<?> updates = (List<?>) data;
+            return updates.size() == 2
+                    && ((EtaUpdate) updates.get(0)).estimatedMinutes() == 5
+                    && ((EtaUpdate) updates.get(1)).estimatedMinutes() == 12;
+        }));
+        verify(sink, after(100).times(1)).send(anyString(), any());
+        assertEquals(1, broadcaster.getSentCount());
+    }
+
+    @Test
+    void testPublish_PassengerSubscriberGetsOwnEta() throws Exception {
+        // Given
+        EtaSink sink = mock(EtaSink.class);
+        broadcaster.subscribeToPassenger("PASS002", sink);
+
+        // When
+        broadcaster.publish("BUS001", pickups, new long[]{5, 12});
+
+        // Then
+        ArgumentCaptor<Object> data = ArgumentCaptor.forClass(Object.class);
+        verify(sink, timeout(1000)).send(eq(EtaBroadcaster.PASSENGER_EVENT), data.capture());
+        EtaUpdate update = (EtaUpdate) data.getValue();
+        assertEquals("BUS001", update.busId());
+        assertEquals("PASS002", update.passengerId());
+        assertEquals(12, update.estimatedMinutes());
+        assertNotNull(update.computedAt());
+    }
+
+    @Test
+    void testPublish_SlowSubscriberDropsOldestWithoutBlocking() throws Exception {
+        // Given - the first send blocks until released
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> received = new CopyOnWriteArrayList<>();
+        broadcaster.subscribeToPassenger("PASS001", new EtaSink() {
+            @Override
+            public void send(String eventName, Object data) {
+                started.countDown();
+                awaitQuietly(release);
+                received.add(((EtaUpdate) data).estimatedMinutes());
+            }
+
+            @Override
+            public void complete() {
+            }
+        });
+        EtaSink fast = mock(EtaSink.class);
+        broadcaster.subscribeToBus("BUS001", fast);
+
+        // When - ten more ETAs are published while the first is being written, each once the fast one has it
+        broadcaster.publish("BUS001", pickups, new long[]{0, 0});
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int published = 1; published <= 10; published++) {
+            verify(fast, timeout(1000).times(published)).send(anyString(), any());
+            broadcaster.publish("BUS001", pickups, new long[]{published, 0});
+        }
+        verify(fast, timeout(1000).times(11)).send(eq(EtaBroadcaster.BUS_EVENT), any());
+        release.countDown();
+
+        // Then - the slow subscriber gets the first ETA and the newest four; the fast one got everything
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(0L, 7L, 8L, 9L, 10L), received);
+        assertEquals(6, broadcaster.getDroppedCount());
+    }
+
+    @Test
+    void testPublish_BlockedSubscribersDoNotDelayOthers() throws Exception {
+        // Given - more subscribers stuck in a send than a small worker pool would have threads
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            broadcaster.subscribeToPassenger("PASS001", new EtaSink() {
+                @Override
+                public void send(String eventName, Object data) {
+                    blocked.countDown();
+                    awaitQuietly(release);
+                }
+
+                @Override
+                public void complete() {
+                }
+            });
+        }
+        broadcaster.publish("BUS001", pickups, new long[]{5, 12});
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        EtaSink other = mock(EtaSink.class);
+        broadcaster.subscribeToPassenger("PASS002", other);
+
+        // When
+        broadcaster.publish("BUS001", pickups, new long[]{4, 11});
+
+        // Then
+        verify(other, timeout(1000)).send(eq(EtaBroadcaster.PASSENGER_EVENT), any());
+        release.countDown();
+    }
+
+    @Test
+    void testPublish_BusyWritersKeepEventsBuffered() throws Exception {
+        // Given - a single writer, stuck in a send to another subscriber
+        EtaBroadcaster oneWriter = new EtaBroadcaster(4, 10, 10000, 1, false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EtaSink stuck = mock(EtaSink.class);
+        doAnswer(invocation -> {
+            started.countDown();
+            awaitQuietly(release);
+            return null;
+        }).when(stuck).send(anyString(), any());
+        EtaBroadcaster.Subscription stuckSubscription = oneWriter.subscribeToBus("BUS001", stuck);
+        oneWriter.publish("BUS001", pickups, new long[]{5, 12});
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        EtaSink other = mock(EtaSink.class);
+        oneWriter.subscribeToPassenger("PASS002", other);
+
+        // When - an ETA arrives while the writer is busy, and another once it is free
+        oneWriter.publish("BUS001", pickups, new long[]{4, 11});
+        verify(other, after(100).never()).send(anyString(), any());
+        release.countDown();
+        verify(stuck, timeout(1000).times(2)).send(anyString(), any());
+        stuckSubscription.cancel();
+        Thread.sleep(100);
+        oneWriter.publish("BUS001", pickups, new long[]{3, 10});
+
+        // Then - it gets both ETAs once the writer is free
+        verify(other, timeout(1000).times(2)).send(eq(EtaBroadcaster.PASSENGER_EVENT), any());
+        oneWriter.shutdown();
+    }
+
+    @Test
+    void testSubscriberBlockedPastSendTimeoutIsDropped() throws Exception {
+        // Given - a subscriber whose first send does not return
+        EtaBroadcaster timed = new EtaBroadcaster(4, 10, 50, 16, false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EtaSink stuck = mock(EtaSink.class);
+        doAnswer(invocation -> {
+            started.countDown();
+            awaitQuietly(release);
+            return null;
+        }).when(stuck).send(anyString(), any());
+        EtaBroadcaster.Subscription subscription = timed.subscribeToBus("BUS001", stuck);
+        timed.publish("BUS001", pickups, new long[]{5, 12});
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When - nothing more is published
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!subscription.isCancelled() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Then - dropped while the send is still blocked, and completed once it returns
+        assertTrue(subscription.isCancelled());
+        assertEquals(0, timed.getSubscriberCount());
+        verify(stuck, never()).complete();
+        release.countDown();
+        verify(stuck, timeout(1000)).complete();
+        timed.shutdown();
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new EtaBroadcaster(4, 10, 0, 16, false));
+        assertThrows(IllegalArgumentException.class, () -> new EtaBroadcaster(4, 10, 10000, 0, false));
+    }
+
+    @Test
+    void testSubscribe_LimitedToMaxSubscribers() {
+        // Given
+        EtaBroadcaster limited = new EtaBroadcaster(4, 1, 10000, 16, false);
+        EtaBroadcaster.Subscription first = limited.subscribeToBus("BUS001", mock(EtaSink.class));
+
+        // When
+        EtaBroadcaster.Subscription refused = limited.subscribeToBus("BUS002", mock(EtaSink.class));
+        first.cancel();
+        EtaBroadcaster.Subscription afterCancel = limited.subscribeToBus("BUS002", mock(EtaSink.class));
+
+        // Then
+        assertNotNull(first);
+        assertNull(refused);
+        assertNotNull(afterCancel);
+        assertEquals(1, limited.getSubscriberCount());
+        limited.shutdown();
+    }
+
+    @Test
+    void testCancel_NoMoreEvents() throws Exception {
+        // Given
+        EtaSink sink = mock(EtaSink.class);
+        EtaBroadcaster.Subscription subscription = broadcaster.subscribeToBus("BUS001", sink);
+
+        // When
+        subscription.cancel();
+        broadcaster.publish("BUS001", pickups, new long[]{5, 12});
+
+        // Then
+        verify(sink, after(100).never()).send(anyString(), any());
+        assertTrue(subscription.isCancelled());
+        assertEquals(0, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void testPublish_FailedSendCancelsSubscription() throws Exception {
+        // Given - the subscriber has disconnected
+        EtaSink sink = mock(EtaSink.class);
+        doThrow(new IOException("Broken pipe")).when(sink).send(anyString(), any());
+        EtaBroadcaster.Subscription subscription = broadcaster.subscribeToBus("BUS001", sink);
+
+        // When
+        broadcaster.publish("BUS001", pickups, new long[]{5, 12});
+
+        // Then
+        verify(sink, timeout(1000)).send(anyString(), any());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!subscription.isCancelled() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(subscription.isCancelled());
+        assertEquals(0, broadcaster.getSubscriberCount());
+        assertEquals(0, broadcaster.getSentCount());
+    }
+
+    @Test
+    void testShutdown_CompletesStreams() {
+        // Given
+        EtaSink busSink = mock(EtaSink.class);
+        EtaSink passengerSink = mock(EtaSink.class);
+        broadcaster.subscribeToBus("BUS001", busSink);
+        broadcaster.subscribeToPassenger("PASS001", passengerSink);
+
+        // When
+        broadcaster.shutdown();
+
+        // Then
+        verify(busSink).complete();
+        verify(passengerSink).complete();
+        assertEquals(0, broadcaster.getSubscriberCount());
+    }
+
+    private static PassengerPickup createPassenger(String passengerId) {
+        return new PassengerPickup(passengerId, "John Doe", "+1234567890",
+                new BigDecimal("40.7580"), new BigDecimal("-73.9855"), "123 Main St");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
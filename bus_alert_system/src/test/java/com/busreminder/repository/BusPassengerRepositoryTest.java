@@ -1,13 +1,19 @@
 package com.busreminder.repository;
 
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.dto.PassengerTripState;
 import com.busreminder.model.BusPassenger;
+import com.busreminder.model.BusPnr;
+import com.busreminder.model.TripState;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.TestPropertySource;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,6 +29,9 @@ class BusPassengerRepositoryTest {
     @Autowired
     private BusPassengerRepository busPassengerRepository;
 
+    @Autowired
+    private BusPnrRepository busPnrRepository;
+
     @Test
     void testFindByPnrIdIn() {
         // Given
@@ -64,6 +73,111 @@ class BusPassengerRepositoryTest {
         assertTrue(result.stream().noneMatch(p -> p.getPassengerId().equals("PASS002")));
     }
 
+    @Test
+    void testFindUnnotifiedPickupsByBusId() {
+        // Given
+        busPnrRepository.saveAll(Arrays.asList(createBusPnr("BUS001", "PNR001"),
+                createBusPnr("BUS001", "PNR002"), createBusPnr("BUS002", "PNR003")));
+        busPassengerRepository.saveAll(Arrays.asList(
+                createPassenger("PNR001", "PASS001", false),
+                createPassenger("PNR001", "PASS002", true),
+                createPassenger("PNR002", "PASS003", false),
+                createPassenger("PNR003", "PASS004", false)));
+
+        // When
+        List<PassengerPickup> result = busPassengerRepository.findUnnotifiedPickupsByBusId("BUS001");
+
+        // Then - only unnotified passengers on PNRs linked to BUS001
+        assertEquals(2, result.size());
+        assertTrue(result.stream().anyMatch(p -> p.passengerId().equals("PASS001")));
+        assertTrue(result.stream().anyMatch(p -> p.passengerId().equals("PASS003")));
+        PassengerPickup pickup = result.get(0);
+        assertEquals("Test Passenger", pickup.passengerName());
+        assertEquals("+1234567890", pickup.passengerPhone());
+        assertEquals(0, new BigDecimal("40.7128").compareTo(pickup.pickupLatitude()));
+        assertEquals(0, new BigDecimal("-74.0060").compareTo(pickup.pickupLongitude()));
+        assertEquals("123 Test St", pickup.pickupAddress());
+    }
+
+    @Test
+    void testFindUnnotifiedPickupsByBusId_UnknownBus() {
+        // Given
+        busPnrRepository.save(createBusPnr("BUS001", "PNR001"));
+        busPassengerRepository.save(createPassenger("PNR001", "PASS001", false));
+
+        // When
+        List<PassengerPickup> result = busPassengerRepository.findUnnotifiedPickupsByBusId("BUS999");
+
+        // Then
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void testMarkNotified() {
+        // Given
+        BusPassenger passenger1 = createPassenger("PNR001", "PASS001", false);
+        BusPassenger passenger2 = createPassenger("PNR002", "PASS001", false);
+        BusPassenger passenger3 = createPassenger("PNR001", "PASS002", false);
+
+        busPassengerRepository.saveAll(Arrays.asList(passenger1, passenger2, passenger3));
+        LocalDateTime sentAt = LocalDateTime.of(2024, 1, 15, 10, 30);
+
+        // When
+        int updated = busPassengerRepository.markNotified(List.of("PASS001"), sentAt);
+
+        // Then - every row for PASS001 is updated, PASS002 is untouched
+        assertEquals(2, updated);
+        List<BusPassenger> result = busPassengerRepository.findAll();
+        assertTrue(result.stream()
+                .filter(p -> p.getPassengerId().equals("PASS001"))
+                .allMatch(p -> p.getNotified()
+                        && p.getTripState() == TripState.NOTIFIED
+                        && sentAt.equals(p.getNotificationSentAt())
+                        && sentAt.equals(p.getCallMadeAt())));
+        assertTrue(result.stream()
+                .filter(p -> p.getPassengerId().equals("PASS002"))
+                .noneMatch(BusPassenger::getNotified));
+    }
+
+    @Test
+    void testUpdateTripState() {
+        // Given
+        busPassengerRepository.saveAll(Arrays.asList(
+                createPassenger("PNR001", "PASS001", false),
+                createPassenger("PNR001", "PASS002", false)));
+
+        // When
+        int updated = busPassengerRepository.updateTripState(List.of("PASS001"), TripState.PICKED_UP, true);
+
+        // Then
+        assertEquals(1, updated);
+        List<BusPassenger> result = busPassengerRepository.findAll();
+        assertTrue(result.stream()
+                .filter(p -> p.getPassengerId().equals("PASS001"))
+                .allMatch(p -> p.getNotified() && p.getTripState() == TripState.PICKED_UP));
+        assertTrue(result.stream()
+                .filter(p -> p.getPassengerId().equals("PASS002"))
+                .allMatch(p -> !p.getNotified() && p.getTripState() == TripState.PENDING));
+    }
+
+    @Test
+    void testFindTripStates() {
+        // Given - PASS001 is notified on BUS001, PASS002 is imminent, PASS003 is pending
+        busPnrRepository.save(createBusPnr("BUS001", "PNR001"));
+        BusPassenger notified = createPassenger("PNR001", "PASS001", true);
+        notified.setTripState(TripState.NOTIFIED);
+        BusPassenger imminent = createPassenger("PNR001", "PASS002", false);
+        imminent.setTripState(TripState.IMMINENT);
+        busPassengerRepository.saveAll(Arrays.asList(notified, imminent, createPassenger("PNR001", "PASS003", false)));
+
+        // When
+        List<PassengerTripState> result = busPassengerRepository.findTripStates(
+                EnumSet.of(TripState.NOTIFIED, TripState.PICKED_UP));
+
+        // Then
+        assertEquals(List.of(new PassengerTripState("BUS001", "PASS001", TripState.NOTIFIED)), result);
+    }
+
     private BusPassenger createPassenger(String pnrId, String passengerId, Boolean notified) {
         BusPassenger passenger = new BusPassenger();
         passenger.setPnrId(pnrId);
@@ -76,4 +190,11 @@ class BusPassengerRepositoryTest {
         passenger.setNotified(notified);
         return passenger;
     }
+
+    private BusPnr createBusPnr(String busId, String pnrId) {
+        BusPnr busPnr = new BusPnr();
+        busPnr.setBusId(busId);
+        busPnr.setPnrId(pnrId);
+        return busPnr;
+    }
 }
@@ -0,0 +1,202 @@
+package com.busreminder.repository;
+
+import com.busreminder.dto.PassengerTripState;
+import com.busreminder.model.NotificationChannel;
+import com.busreminder.model.NotificationOutbox;
+import com.busreminder.model.OutboxStatus;
+import com.busreminder.model.TripState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+class NotificationOutboxRepositoryTest {
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Test
+    void testFindClaimable() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NotificationOutbox newer = createEntry("PASS001", NotificationChannel.SMS, now);
+        NotificationOutbox older = createEntry("PASS002", NotificationChannel.SMS, now.minusMinutes(1));
+        NotificationOutbox sent = createEntry("PASS003", NotificationChannel.SMS, now.minusMinutes(2));
+        sent.setStatus(OutboxStatus.SENT);
+        NotificationOutbox claimed = createClaimed("PASS004", now.minusMinutes(3), "other-1", now.plusMinutes(5));
+        NotificationOutbox expired = createClaimed("PASS005", now.minusMinutes(4), "other-2", now.minusSeconds(1));
+        notificationOutboxRepository.saveAll(List.of(newer, older, sent, claimed, expired));
+
+        // When
+        List<NotificationOutbox> result = notificationOutboxRepository.findClaimable(now, PageRequest.of(0, 10));
+
+        // Then - pending entries and the one whose claim ran out, oldest first
+        assertEquals(List.of("BUS001:PASS005:SMS", "BUS001:PASS002:SMS", "BUS001:PASS001:SMS"),
+                result.stream().map(NotificationOutbox::getIdempotencyKey).toList());
+    }
+
+    @Test
+    void testClaim_OnlyEntriesNoInstanceHolds() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        notificationOutboxRepository.saveAll(List.of(
+                createEntry("PASS001", NotificationChannel.SMS, now),
+                createClaimed("PASS002", now, "other-1", now.plusMinutes(5)),
+                createClaimed("PASS003", now, "other-2", now.minusSeconds(1))));
+        List<String> keys = List.of("BUS001:PASS001:SMS", "BUS001:PASS002:SMS", "BUS001:PASS003:SMS");
+
+        // When
+        int claimed = notificationOutboxRepository.claim(keys, "this-1", now.plusMinutes(5), now);
+        int claimedAgain = notificationOutboxRepository.claim(keys, "another-1", now.plusMinutes(5), now);
+
+        // Then - the second claim finds every entry held
+        assertEquals(2, claimed);
+        assertEquals(0, claimedAgain);
+        assertEquals(List.of("BUS001:PASS001:SMS", "BUS001:PASS003:SMS"),
+                notificationOutboxRepository.findByClaimedByAndStatus("this-1", OutboxStatus.IN_PROGRESS).stream()
+                        .map(NotificationOutbox::getIdempotencyKey).sorted().toList());
+        assertEquals("other-1",
+                notificationOutboxRepository.findById("BUS001:PASS002:SMS").orElseThrow().getClaimedBy());
+    }
+
+    @Test
+    void testRenewClaim() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NotificationOutbox sent = createClaimed("PASS002", now, "this-1", now);
+        sent.setStatus(OutboxStatus.SENT);
+        notificationOutboxRepository.saveAll(List.of(createClaimed("PASS001", now, "this-1", now),
+                sent, createClaimed("PASS003", now, "other-1", now)));
+
+        // When
+        int renewed = notificationOutboxRepository.renewClaim("this-1", now.plusMinutes(5));
+
+        // Then - only the entry still in progress under the claim
+        assertEquals(1, renewed);
+        assertTrue(notificationOutboxRepository.findById("BUS001:PASS001:SMS").orElseThrow().getLeaseUntil()
+                .isAfter(now.plusMinutes(4)));
+        assertTrue(notificationOutboxRepository.findById("BUS001:PASS003:SMS").orElseThrow().getLeaseUntil()
+                .isBefore(now.plusMinutes(1)));
+    }
+
+    @Test
+    void testFindClaims() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NotificationOutbox sent = createEntry("PASS002", NotificationChannel.SMS, now);
+        sent.setStatus(OutboxStatus.SENT);
+        notificationOutboxRepository.saveAll(List.of(
+                createEntry("PASS001", NotificationChannel.SMS, now),
+                createEntry("PASS001", NotificationChannel.CALL, now),
+                sent));
+
+        // When
+        List<PassengerTripState> result = notificationOutboxRepository.findClaims();
+
+        // Then - one claim per passenger, whatever the status of their entries
+        assertEquals(2, result.size());
+        assertTrue(result.contains(new PassengerTripState("BUS001", "PASS001", TripState.IMMINENT)));
+        assertTrue(result.contains(new PassengerTripState("BUS001", "PASS002", TripState.IMMINENT)));
+    }
+
+    @Test
+    void testUpdateStatus() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        notificationOutboxRepository.saveAll(List.of(
+                createEntry("PASS001", NotificationChannel.SMS, now),
+                createEntry("PASS002", NotificationChannel.SMS, now)));
+
+        // When
+        int updated = notificationOutboxRepository.updateStatus(List.of("BUS001:PASS001:SMS"), OutboxStatus.SENT,
+                now);
+
+        // Then
+        assertEquals(1, updated);
+        NotificationOutbox sent = notificationOutboxRepository.findById("BUS001:PASS001:SMS").orElseThrow();
+        assertEquals(OutboxStatus.SENT, sent.getStatus());
+        assertEquals(1, sent.getAttempts());
+        assertNotNull(sent.getSentAt());
+        assertEquals(OutboxStatus.PENDING,
+                notificationOutboxRepository.findById("BUS001:PASS002:SMS").orElseThrow().getStatus());
+    }
+
+    @Test
+    void testRecordFailedAttempt_GivesUpAtMaxAttempts() {
+        // Given - one entry on its first attempt, one on its last
+        LocalDateTime now = LocalDateTime.now();
+        NotificationOutbox firstAttempt = createEntry("PASS001", NotificationChannel.CALL, now);
+        firstAttempt.setStatus(OutboxStatus.IN_PROGRESS);
+        NotificationOutbox lastAttempt = createEntry("PASS002", NotificationChannel.CALL, now);
+        lastAttempt.setAttempts(2);
+        notificationOutboxRepository.saveAll(List.of(firstAttempt, lastAttempt));
+
+        // When
+        int updated = notificationOutboxRepository.recordFailedAttempt(
+                List.of("BUS001:PASS001:CALL", "BUS001:PASS002:CALL"), 3);
+
+        // Then - the first goes back to pending for the sweep
+        assertEquals(2, updated);
+        NotificationOutbox retried = notificationOutboxRepository.findById("BUS001:PASS001:CALL").orElseThrow();
+        assertEquals(OutboxStatus.PENDING, retried.getStatus());
+        assertEquals(1, retried.getAttempts());
+        NotificationOutbox failed = notificationOutboxRepository.findById("BUS001:PASS002:CALL").orElseThrow();
+        assertEquals(OutboxStatus.FAILED, failed.getStatus());
+        assertEquals(3, failed.getAttempts());
+    }
+
+    @Test
+    void testDeleteSettledBefore() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NotificationOutbox oldSent = createEntry("PASS001", NotificationChannel.SMS, now.minusDays(2));
+        oldSent.setStatus(OutboxStatus.SENT);
+        NotificationOutbox oldPending = createEntry("PASS002", NotificationChannel.SMS, now.minusDays(2));
+        NotificationOutbox recentSent = createEntry("PASS003", NotificationChannel.SMS, now);
+        recentSent.setStatus(OutboxStatus.SENT);
+        NotificationOutbox oldClaimed = createClaimed("PASS004", now.minusDays(2), "other-1", now.minusDays(2));
+        notificationOutboxRepository.saveAll(List.of(oldSent, oldPending, recentSent, oldClaimed));
+
+        // When
+        int deleted = notificationOutboxRepository.deleteSettledBefore(now.minusDays(1));
+
+        // Then - pending and claimed entries are kept however old they are
+        assertEquals(1, deleted);
+        assertFalse(notificationOutboxRepository.findById("BUS001:PASS001:SMS").isPresent());
+        assertTrue(notificationOutboxRepository.findById("BUS001:PASS002:SMS").isPresent());
+        assertTrue(notificationOutboxRepository.findById("BUS001:PASS003:SMS").isPresent());
+        assertTrue(notificationOutboxRepository.findById("BUS001:PASS004:SMS").isPresent());
+    }
+
+    private NotificationOutbox createEntry(String passengerId, NotificationChannel channel, LocalDateTime createdAt) {
+        NotificationOutbox entry = new NotificationOutbox();
+        entry.setIdempotencyKey(NotificationOutbox.idempotencyKey("BUS001", passengerId, channel));
+        entry.setBusId("BUS001");
+        entry.setPassengerId(passengerId);
+        entry.setChannel(channel);
+        entry.setPassengerPhone("+1234567890");
+        entry.setCreatedAt(createdAt);
+        return entry;
+    }
+
+    private NotificationOutbox createClaimed(String passengerId, LocalDateTime createdAt, String claimedBy,
+                                             LocalDateTime leaseUntil) {
+        NotificationOutbox entry = createEntry(passengerId, NotificationChannel.SMS, createdAt);
+        entry.setStatus(OutboxStatus.IN_PROGRESS);
+        entry.setClaimedBy(claimedBy);
+        entry.setLeaseUntil(leaseUntil);
+        return entry;
+    }
+}
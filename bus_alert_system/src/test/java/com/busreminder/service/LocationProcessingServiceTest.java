@@ -1,23 +1,39 @@
 package com.busreminder.service;
 
+import com.busreminder.cache.BusPassengerSnapshot;
+import com.busreminder.cache.DuePickups;
+import com.busreminder.cache.PickupPoints;
 import com.busreminder.dto.NotificationRequest;
-import com.busreminder.model.BusPassenger;
+import com.busreminder.dto.PassengerPickup;
+import com.busreminder.eta.EtaProvider;
+import com.busreminder.eta.HaversineEtaProvider;
+import com.busreminder.eta.StubEtaProvider;
+import com.busreminder.eta.TieredEtaStrategy;
+import com.busreminder.geo.GeoUtils;
+import com.busreminder.push.EtaBroadcaster;
 import com.busreminder.service.impl.LocationProcessingServiceImpl;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.doubleThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,15 +43,17 @@ class LocationProcessingServiceTest {
     private PassengerService passengerService;
 
     @Mock
-    private ObjectMapper objectMapper;
+    private EtaBroadcaster etaBroadcaster;
+
+    private MeterRegistry meterRegistry;
 
-    @InjectMocks
     private LocationProcessingServiceImpl locationProcessingService;
 
     @BeforeEach
     void setUp() {
-        ReflectionTestUtils.setField(locationProcessingService, "notificationThresholdMinutes", 10L);
-        reset(passengerService);
+        meterRegistry = new SimpleMeterRegistry();
+        HaversineEtaProvider haversine = new HaversineEtaProvider(meterRegistry);
+        locationProcessingService = createService(createEtaStrategy(haversine, haversine));
     }
 
     @Test
@@ -45,8 +63,8 @@ class LocationProcessingServiceTest {
         Double busLatitude = 40.7128;
         Double busLongitude = -74.0060;
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Collections.emptyList());
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenReturn(DuePickups.empty());
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -54,7 +72,8 @@ class LocationProcessingServiceTest {
 
         // Then
         assertTrue(result.isEmpty());
-        verify(passengerService).getUnnotifiedPassengersByBusId(busId);
+        verify(passengerService).getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong());
+        assertEquals(1, meterRegistry.get("busreminder.location.process").timer().count());
     }
 
     @Test
@@ -64,10 +83,10 @@ class LocationProcessingServiceTest {
         Double busLatitude = 40.7128;
         Double busLongitude = -74.0060;
 
-        BusPassenger passenger = createPassenger("PNR001", "PASS001");
+        PassengerPickup passenger = createPassenger("PASS001");
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger));
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(passenger));
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -77,10 +96,11 @@ class LocationProcessingServiceTest {
         assertFalse(result.isEmpty(), "Notifications should be created when ETA is within threshold");
         assertEquals(1, result.size());
         NotificationRequest request = result.get(0);
+        assertEquals(busId, request.getBusId());
         assertEquals("PASS001", request.getPassengerId());
         assertNotNull(request.getEstimatedMinutes());
         assertTrue(request.getEstimatedMinutes() <= 10, "ETA should be within threshold");
-        verify(passengerService).getUnnotifiedPassengersByBusId(busId);
+        verify(passengerService).getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong());
     }
 
     @Test
@@ -93,10 +113,10 @@ class LocationProcessingServiceTest {
         // Set threshold to match calculated ETA (~7 minutes)
         ReflectionTestUtils.setField(locationProcessingService, "notificationThresholdMinutes", 7L);
 
-        BusPassenger passenger = createPassenger("PNR001", "PASS001");
+        PassengerPickup passenger = createPassenger("PASS001");
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger));
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(passenger));
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -106,7 +126,7 @@ class LocationProcessingServiceTest {
         assertFalse(result.isEmpty(), "Notifications should be created when ETA equals threshold");
         assertEquals(1, result.size());
         assertTrue(result.get(0).getEstimatedMinutes() <= 7);
-        verify(passengerService).getUnnotifiedPassengersByBusId(busId);
+        verify(passengerService).getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong());
     }
 
     @Test
@@ -117,10 +137,10 @@ class LocationProcessingServiceTest {
         Double busLongitude = -74.0060;
         
         // Use passenger coordinates far away (e.g., ~20 miles = ~40 minutes ETA)
-        BusPassenger passenger = createPassengerFarAway("PNR001", "PASS001");
+        PassengerPickup passenger = createPassengerFarAway("PASS001");
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger));
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(passenger));
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -128,7 +148,41 @@ class LocationProcessingServiceTest {
 
         // Then - ETA exceeds 10-minute threshold, no notifications should be created
         assertTrue(result.isEmpty(), "No notifications should be created when ETA exceeds threshold");
-        verify(passengerService).getUnnotifiedPassengersByBusId(busId);
+        verify(passengerService).getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong());
+    }
+
+    @Test
+    void testProcessBusLocation_PublishesEvaluatedEtas() {
+        // Given - one passenger within the threshold, one beyond it but within reach
+        when(passengerService.getDuePickupsNear(eq("BUS001"), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(createPassenger("PASS001"), createPassengerMilesNorth("PASS002", 9.0)));
+
+        // When
+        List<NotificationRequest> result = locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+
+        // Then - both ETAs are published, not just the one notified
+        ArgumentCaptor<PickupPoints> pickups = ArgumentCaptor.forClass(PickupPoints.class);
+        ArgumentCaptor<long[]> etas = ArgumentCaptor.forClass(long[].class);
+        verify(etaBroadcaster).publish(eq("BUS001"), pickups.capture(), etas.capture());
+        assertEquals(1, result.size());
+        assertEquals(2, etas.getValue().length);
+        for (int i = 0; i < 2; i++) {
+            boolean notified = pickups.getValue().getPassenger(i).passengerId().equals("PASS001");
+            assertEquals(notified, etas.getValue()[i] <= 10);
+        }
+    }
+
+    @Test
+    void testProcessBusLocation_NoPickupsPublishesNothing() {
+        // Given
+        when(passengerService.getDuePickupsNear(eq("BUS001"), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenReturn(DuePickups.empty());
+
+        // When
+        locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+
+        // Then
+        verifyNoInteractions(etaBroadcaster);
     }
 
     @Test
@@ -141,10 +195,10 @@ class LocationProcessingServiceTest {
         // Set threshold to 5 minutes (below calculated ETA of ~7 minutes)
         ReflectionTestUtils.setField(locationProcessingService, "notificationThresholdMinutes", 5L);
 
-        BusPassenger passenger = createPassenger("PNR001", "PASS001");
+        PassengerPickup passenger = createPassenger("PASS001");
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger));
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(passenger));
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -152,29 +206,7 @@ class LocationProcessingServiceTest {
 
         // Then - ETA (~7 minutes) exceeds threshold (5 minutes), no notifications created
         assertTrue(result.isEmpty(), "No notifications when ETA exceeds threshold");
-        verify(passengerService).getUnnotifiedPassengersByBusId(busId);
-    }
-
-    @Test
-    void testCalculateETA_ReturnsActualValue() {
-        // Given
-        Double originLat = 40.7128;
-        Double originLng = -74.0060;
-        Double destLat = 40.7580;
-        Double destLng = -73.9855;
-
-        // When - invoke private method using ReflectionTestUtils
-        Long result = (Long) ReflectionTestUtils.invokeMethod(
-                locationProcessingService, 
-                "calculateETA", 
-                originLat, originLng, destLat, destLng
-        );
-
-        // Then - verify implementation calculates actual ETA using Haversine formula
-        // Distance ~5 miles at 30 mph = ~7 minutes
-        assertNotNull(result);
-        assertTrue(result > 0, "ETA should be positive");
-        assertTrue(result <= 10, "ETA should be within reasonable range for nearby locations");
+        verify(passengerService).getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong());
     }
 
     @Test
@@ -184,11 +216,11 @@ class LocationProcessingServiceTest {
         Double busLatitude = 40.7128;
         Double busLongitude = -74.0060;
 
-        BusPassenger passenger1 = createPassenger("PNR001", "PASS001");
-        BusPassenger passenger2 = createPassenger("PNR002", "PASS002");
+        PassengerPickup passenger1 = createPassenger("PASS001");
+        PassengerPickup passenger2 = createPassenger("PASS002");
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger1, passenger2));
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(passenger1, passenger2));
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -211,117 +243,118 @@ class LocationProcessingServiceTest {
             assertTrue(request.getEstimatedMinutes() <= 10, "ETA should be within threshold");
         });
         
-        verify(passengerService).getUnnotifiedPassengersByBusId(busId);
+        verify(passengerService).getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong());
     }
 
-    private BusPassenger createPassenger(String pnrId, String passengerId) {
-        BusPassenger passenger = new BusPassenger();
-        passenger.setPnrId(pnrId);
-        passenger.setPassengerId(passengerId);
-        passenger.setPassengerName("John Doe");
-        passenger.setPassengerPhone("+1234567890");
-        passenger.setPickupLatitude(new BigDecimal("40.7580"));
-        passenger.setPickupLongitude(new BigDecimal("-73.9855"));
-        passenger.setPickupAddress("123 Main St");
-        passenger.setNotified(false);
-        return passenger;
-    }
+    @Test
+    void testProcessBusLocation_QueriesPassengersWithinReachableRadius() {
+        // Given - 10 minutes at 70 mph
+        String busId = "BUS001";
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenReturn(DuePickups.empty());
 
-    private BusPassenger createPassengerFarAway(String pnrId, String passengerId) {
-        BusPassenger passenger = new BusPassenger();
-        passenger.setPnrId(pnrId);
-        passenger.setPassengerId(passengerId);
-        passenger.setPassengerName("John Doe");
-        passenger.setPassengerPhone("+1234567890");
-        // Use coordinates far away (~20 miles = ~40 minutes ETA at 30 mph)
-        // Example: Philadelphia area from NYC
-        passenger.setPickupLatitude(new BigDecimal("40.0000"));
-        passenger.setPickupLongitude(new BigDecimal("-75.0000"));
-        passenger.setPickupAddress("Far Away Location");
-        passenger.setNotified(false);
-        return passenger;
+        // When
+        locationProcessingService.processBusLocation(busId, 40.7128, -74.0060);
+
+        // Then
+        verify(passengerService).getDuePickupsNear(eq(busId), eq(40.7128), eq(-74.0060),
+                doubleThat(radius -> Math.abs(radius - 70.0 * 10 / 60) < 1e-9), anyLong());
     }
 
     @Test
-    void testCalculateETA_HaversineFormula_NoApiKey() {
-        // Given - no API key set (default)
-        ReflectionTestUtils.setField(locationProcessingService, "googleMapsApiKey", "");
-        Double originLat = 40.7128;
-        Double originLng = -74.0060;
-        Double destLat = 40.7580;
-        Double destLng = -73.9855;
-
-        // When
-        Long result = (Long) ReflectionTestUtils.invokeMethod(
-                locationProcessingService,
-                "calculateETA",
-                originLat, originLng, destLat, destLng
-        );
-
-        // Then - should use Haversine formula
-        assertNotNull(result);
-        assertTrue(result > 0);
+    void testProcessBusLocation_PassengerOverThresholdWithinReachEvaluatedNextPing() {
+        // Given - 8 miles north, 16 minutes at 30 mph against a 10 minute threshold, but within 70 mph reach
+        useClock();
+        ReflectionTestUtils.setField(locationProcessingService, "maxRecheckDelaySeconds", 600L);
+        when(passengerService.getDuePickupsNear(eq("BUS001"), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(createPassengerMilesNorth("PASS001", 8)));
+
+        // When - pings at the same instant
+        locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+        locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+
+        // Then - the straight line cannot rule the passenger out, e.g. a traffic jam may clear
+        assertEquals(2.0, pickups("evaluated"));
+        assertEquals(0.0, pickups("deferred"));
     }
 
     @Test
-    void testCalculateETAHaversine_ReturnsValidValue() {
+    void testProcessBusLocation_NotifiedPassengerStaysDueUntilMarkedNotified() {
         // Given
-        Double originLat = 40.7128;
-        Double originLng = -74.0060;
-        Double destLat = 40.7580;
-        Double destLng = -73.9855;
-
-        // When - invoke private method using ReflectionTestUtils
-        Long result = (Long) ReflectionTestUtils.invokeMethod(
-                locationProcessingService,
-                "calculateETAHaversine",
-                originLat, originLng, destLat, destLng
-        );
+        useClock();
+        when(passengerService.getDuePickupsNear(eq("BUS001"), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(createPassenger("PASS001")));
 
-        // Then
-        assertNotNull(result);
-        assertTrue(result > 0);
+        // When - the notification is never sent
+        locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+        List<NotificationRequest> result = locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+
+        // Then - the passenger is evaluated again
+        assertEquals(1, result.size());
+        assertEquals(2.0, pickups("evaluated"));
     }
 
     @Test
-    void testCalculateETAHaversine_SameLocation() {
-        // Given - same origin and destination
-        Double lat = 40.7128;
-        Double lng = -74.0060;
+    void testProcessBusLocation_ZeroRecheckDelayEvaluatesEveryPing() {
+        // Given - over the threshold, pings at the same instant
+        useClock();
+        ReflectionTestUtils.setField(locationProcessingService, "maxRecheckDelaySeconds", 0L);
+        when(passengerService.getDuePickupsNear(eq("BUS001"), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(createPassengerMilesNorth("PASS001", 8)));
 
         // When
-        Long result = (Long) ReflectionTestUtils.invokeMethod(
-                locationProcessingService,
-                "calculateETAHaversine",
-                lat, lng, lat, lng
-        );
-
-        // Then - should return 0 or very small value
-        assertNotNull(result);
-        assertTrue(result >= 0);
+        locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+        locationProcessingService.processBusLocation("BUS001", 40.7128, -74.0060);
+
+        // Then
+        assertEquals(2.0, pickups("evaluated"));
+    }
+
+    /**
+     * Serve the passengers from a real snapshot, so recheck times carry over between pings.
+     */
+    private Answer<DuePickups> findDueWithin(PassengerPickup... passengers) {
+        BusPassengerSnapshot snapshot = BusPassengerSnapshot.of(Arrays.asList(passengers));
+        return invocation -> snapshot.findDueWithin(invocation.getArgument(1), invocation.getArgument(2),
+                invocation.getArgument(3), invocation.getArgument(4));
+    }
+
+    private AtomicLong useClock() {
+        AtomicLong now = new AtomicLong();
+        ReflectionTestUtils.setField(locationProcessingService, "nanoClock", (LongSupplier) now::get);
+        return now;
+    }
+
+    private double pickups(String outcome) {
+        return meterRegistry.get("busreminder.location.pickups").tag("outcome", outcome).counter().count();
+    }
+
+    private PassengerPickup createPassenger(String passengerId) {
+        return new PassengerPickup(passengerId, "John Doe", "+1234567890",
+                new BigDecimal("40.7580"), new BigDecimal("-73.9855"), "123 Main St");
+    }
+
+    private PassengerPickup createPassengerMilesNorth(String passengerId, double miles) {
+        double latitude = 40.7128 + Math.toDegrees(miles / GeoUtils.EARTH_RADIUS_MILES);
+        return new PassengerPickup(passengerId, "John Doe", "+1234567890",
+                BigDecimal.valueOf(latitude), new BigDecimal("-74.0060"), "123 Main St");
+    }
+
+    private PassengerPickup createPassengerFarAway(String passengerId) {
+        // Use coordinates far away (~20 miles = ~40 minutes ETA at 30 mph)
+        // Example: Philadelphia area from NYC
+        return new PassengerPickup(passengerId, "John Doe", "+1234567890",
+                new BigDecimal("40.0000"), new BigDecimal("-75.0000"), "Far Away Location");
     }
 
     @Test
     void testProcessBusLocation_WithNullCoordinates() {
         // Given
-        String busId = "BUS001";
-        Double busLatitude = 40.7128;
-        Double busLongitude = -74.0060;
-
-        BusPassenger passenger = new BusPassenger();
-        passenger.setPnrId("PNR001");
-        passenger.setPassengerId("PASS001");
-        passenger.setPickupLatitude(null);
-        passenger.setPickupLongitude(null);
-        passenger.setNotified(false);
+        PassengerPickup passenger = new PassengerPickup("PASS001", null, null, null, null, null);
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger));
-
-        // When
-        assertThrows(Exception.class, () -> {
-            locationProcessingService.processBusLocation(busId, busLatitude, busLongitude);
-        });
+        // When/Then - coordinates are converted when the bus is cached, so bad rows fail before any ping
+        assertThrows(Exception.class, () -> PickupPoints.of(Arrays.asList(passenger)));
+        verifyNoInteractions(passengerService);
     }
 
     @Test
@@ -331,11 +364,11 @@ class LocationProcessingServiceTest {
         Double busLatitude = 40.7128;
         Double busLongitude = -74.0060;
 
-        BusPassenger passenger1 = createPassenger("PNR001", "PASS001");
-        BusPassenger passenger2 = createPassengerFarAway("PNR002", "PASS002");
+        PassengerPickup passenger1 = createPassenger("PASS001");
+        PassengerPickup passenger2 = createPassengerFarAway("PASS002");
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger1, passenger2));
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(passenger1, passenger2));
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -353,10 +386,10 @@ class LocationProcessingServiceTest {
         Double busLatitude = 40.7128;
         Double busLongitude = -74.0060;
 
-        BusPassenger passenger = createPassenger("PNR001", "PASS001");
+        PassengerPickup passenger = createPassenger("PASS001");
 
-        when(passengerService.getUnnotifiedPassengersByBusId(busId))
-                .thenReturn(Arrays.asList(passenger));
+        when(passengerService.getDuePickupsNear(eq(busId), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(passenger));
 
         // When
         List<NotificationRequest> result = locationProcessingService.processBusLocation(
@@ -373,4 +406,40 @@ class LocationProcessingServiceTest {
         assertEquals("123 Main St", request.getPickupAddress());
         assertNotNull(request.getEstimatedMinutes());
     }
+
+    @Test
+    void testProcessBusLocation_RoutesPickupsWithinReach() {
+        // Given - ~7 minutes in a straight line against an 8 minute threshold, 10 minutes by road
+        HaversineEtaProvider haversine = new HaversineEtaProvider(meterRegistry);
+        StubEtaProvider stub = new StubEtaProvider(meterRegistry);
+        ReflectionTestUtils.setField(stub, "speedMph", 25.0);
+        ReflectionTestUtils.setField(stub, "detourFactor", 1.3);
+        LocationProcessingServiceImpl service = createService(createEtaStrategy(haversine, stub));
+        ReflectionTestUtils.setField(service, "notificationThresholdMinutes", 8L);
+        when(passengerService.getDuePickupsNear(eq("BUS001"), anyDouble(), anyDouble(), anyDouble(), anyLong()))
+                .thenAnswer(findDueWithin(createPassenger("PASS001")));
+
+        // When
+        List<NotificationRequest> result = service.processBusLocation("BUS001", 40.7128, -74.0060);
+
+        // Then - the routed ETA decides
+        assertTrue(result.isEmpty());
+        assertEquals(1.0, meterRegistry.get("busreminder.eta.destinations").tag("tier", "routed").counter().count());
+    }
+
+    private LocationProcessingServiceImpl createService(TieredEtaStrategy etaStrategy) {
+        LocationProcessingServiceImpl service = new LocationProcessingServiceImpl(
+                passengerService, etaStrategy, etaBroadcaster, meterRegistry);
+        ReflectionTestUtils.setField(service, "notificationThresholdMinutes", 10L);
+        ReflectionTestUtils.setField(service, "maxSpeedMph", 70.0);
+        ReflectionTestUtils.setField(service, "maxRecheckDelaySeconds", 60L);
+        return service;
+    }
+
+    private TieredEtaStrategy createEtaStrategy(HaversineEtaProvider haversine, EtaProvider routing) {
+        TieredEtaStrategy etaStrategy = new TieredEtaStrategy(haversine, List.of(haversine, routing), meterRegistry);
+        ReflectionTestUtils.setField(etaStrategy, "providerName", routing.getName());
+        etaStrategy.init();
+        return etaStrategy;
+    }
 }
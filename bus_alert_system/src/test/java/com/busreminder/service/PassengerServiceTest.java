@@ -1,15 +1,23 @@
 package com.busreminder.service;
 
+import com.busreminder.cache.BusPassengerCache;
+import com.busreminder.cache.PickupPoints;
+import com.busreminder.dto.PassengerPickup;
 import com.busreminder.model.BusPnr;
 import com.busreminder.model.BusPassenger;
+import com.busreminder.model.TripState;
 import com.busreminder.repository.BusPnrRepository;
 import com.busreminder.repository.BusPassengerRepository;
 import com.busreminder.service.impl.PassengerServiceImpl;
+import com.busreminder.trip.TripStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
@@ -18,6 +26,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,12 +38,21 @@ class PassengerServiceTest {
     @Mock
     private BusPassengerRepository busPassengerRepository;
 
+    @Spy
+    private BusPassengerCache busPassengerCache = new BusPassengerCache();
+
+    @Mock
+    private TripStateStore tripStateStore;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private PassengerServiceImpl passengerService;
 
     @BeforeEach
     void setUp() {
-        reset(busPnrRepository, busPassengerRepository);
+        reset(busPnrRepository, busPassengerRepository, tripStateStore);
     }
 
     @Test
@@ -80,56 +98,154 @@ class PassengerServiceTest {
     void testGetUnnotifiedPassengersByBusId() {
         // Given
         String busId = "BUS001";
-        BusPnr pnr1 = createBusPnr("BUS001", "PNR001");
-        
-        BusPassenger passenger1 = createPassenger("PNR001", "PASS001");
+        PassengerPickup passenger1 = createPickup("PASS001", "40.7128", "-74.0060");
+
+        when(busPassengerRepository.findUnnotifiedPickupsByBusId(busId)).thenReturn(Arrays.asList(passenger1));
+
+        // When
+        List<PassengerPickup> result = passengerService.getUnnotifiedPassengersByBusId(busId);
 
-        when(busPnrRepository.findByBusId(busId)).thenReturn(Arrays.asList(pnr1));
-        when(busPassengerRepository.findByPnrIdInAndNotifiedFalse(Arrays.asList("PNR001")))
-                .thenReturn(Arrays.asList(passenger1));
+        // Then - a single JOIN query, no separate PNR lookup
+        assertEquals(1, result.size());
+        assertEquals("PASS001", result.get(0).passengerId());
+        verify(busPassengerRepository).findUnnotifiedPickupsByBusId(busId);
+        verifyNoInteractions(busPnrRepository);
+    }
+
+    @Test
+    void testGetUnnotifiedPassengersByBusId_SkipsClaimedPassengers() {
+        // Given - PASS001 is being notified, but the notified column has not been written yet
+        String busId = "BUS001";
+        when(busPassengerRepository.findUnnotifiedPickupsByBusId(busId)).thenReturn(Arrays.asList(
+                createPickup("PASS001", "40.7128", "-74.0060"),
+                createPickup("PASS002", "40.7128", "-74.0060")));
+        when(tripStateStore.isClaimed(busId, "PASS001")).thenReturn(true);
 
         // When
-        List<BusPassenger> result = passengerService.getUnnotifiedPassengersByBusId(busId);
+        List<PassengerPickup> result = passengerService.getUnnotifiedPassengersByBusId(busId);
 
         // Then
         assertEquals(1, result.size());
-        assertEquals("PASS001", result.get(0).getPassengerId());
-        verify(busPnrRepository).findByBusId(busId);
-        verify(busPassengerRepository).findByPnrIdInAndNotifiedFalse(Arrays.asList("PNR001"));
+        assertEquals("PASS002", result.get(0).passengerId());
     }
 
     @Test
     void testGetUnnotifiedPassengersByBusId_WhenNoPnrs() {
         // Given
         String busId = "BUS999";
-        when(busPnrRepository.findByBusId(busId)).thenReturn(Collections.emptyList());
+        when(busPassengerRepository.findUnnotifiedPickupsByBusId(busId)).thenReturn(Collections.emptyList());
 
         // When
-        List<BusPassenger> result = passengerService.getUnnotifiedPassengersByBusId(busId);
+        List<PassengerPickup> result = passengerService.getUnnotifiedPassengersByBusId(busId);
 
         // Then
         assertTrue(result.isEmpty());
-        verify(busPnrRepository).findByBusId(busId);
-        verify(busPassengerRepository, never()).findByPnrIdInAndNotifiedFalse(anyList());
+        verify(busPassengerRepository).findUnnotifiedPickupsByBusId(busId);
+        verifyNoInteractions(busPnrRepository);
     }
 
     @Test
     void testGetUnnotifiedPassengersByBusId_NoUnnotifiedPassengers() {
         // Given
         String busId = "BUS001";
-        BusPnr pnr1 = createBusPnr("BUS001", "PNR001");
-
-        when(busPnrRepository.findByBusId(busId)).thenReturn(Arrays.asList(pnr1));
-        when(busPassengerRepository.findByPnrIdInAndNotifiedFalse(Arrays.asList("PNR001")))
-                .thenReturn(Collections.emptyList());
+        when(busPassengerRepository.findUnnotifiedPickupsByBusId(busId)).thenReturn(Collections.emptyList());
 
         // When
-        List<BusPassenger> result = passengerService.getUnnotifiedPassengersByBusId(busId);
+        List<PassengerPickup> result = passengerService.getUnnotifiedPassengersByBusId(busId);
 
         // Then
         assertTrue(result.isEmpty());
-        verify(busPnrRepository).findByBusId(busId);
-        verify(busPassengerRepository).findByPnrIdInAndNotifiedFalse(Arrays.asList("PNR001"));
+        verify(busPassengerRepository).findUnnotifiedPickupsByBusId(busId);
+    }
+
+    @Test
+    void testGetUnnotifiedPassengersByBusId_ServedFromCacheAfterFirstLoad() {
+        // Given
+        String busId = "BUS001";
+        PassengerPickup passenger1 = createPickup("PASS001", "40.7128", "-74.0060");
+
+        when(busPassengerRepository.findUnnotifiedPickupsByBusId(busId)).thenReturn(Arrays.asList(passenger1));
+
+        // When
+        passengerService.getUnnotifiedPassengersByBusId(busId);
+        List<PassengerPickup> result = passengerService.getUnnotifiedPassengersByBusId(busId);
+
+        // Then - the database is only queried once
+        assertEquals(1, result.size());
+        verify(busPassengerRepository, times(1)).findUnnotifiedPickupsByBusId(busId);
+        assertEquals(1, busPassengerCache.getMissCount());
+        assertEquals(1, busPassengerCache.getHitCount());
+        assertEquals(1, meterRegistry.get("busreminder.passenger.db.query")
+                .tag("query", "unnotified_passengers_by_bus").timer().count());
+    }
+
+    @Test
+    void testGetDuePickupsNear_FiltersByRadius() {
+        // Given
+        String busId = "BUS001";
+        PassengerPickup nearby = createPickup("PASS001", "40.7128", "-74.0060");
+        PassengerPickup farAway = createPickup("PASS002", "40.0000", "-75.0000");
+
+        when(busPassengerRepository.findUnnotifiedPickupsByBusId(busId)).thenReturn(Arrays.asList(nearby, farAway));
+
+        // When
+        PickupPoints result = passengerService.getDuePickupsNear(busId, 40.7128, -74.0060, 5.0, 0L)
+                .getPickupPoints();
+
+        // Then
+        assertEquals(1, result.size());
+        assertEquals("PASS001", result.getPassenger(0).passengerId());
+        assertEquals(nearby.pickupLatitude().doubleValue(), result.getLatitudes()[0]);
+        assertEquals(nearby.pickupLongitude().doubleValue(), result.getLongitudes()[0]);
+    }
+
+    @Test
+    void testAddPnr_EvictsCachedBus() {
+        // Given
+        String busId = "BUS001";
+        when(busPnrRepository.save(any(BusPnr.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        passengerService.getUnnotifiedPassengersByBusId(busId);
+
+        // When
+        BusPnr saved = passengerService.addPnr(busId, "PNR002");
+        passengerService.getUnnotifiedPassengersByBusId(busId);
+
+        // Then - the bus is reloaded after the PNR is linked
+        assertEquals(busId, saved.getBusId());
+        assertEquals("PNR002", saved.getPnrId());
+        verify(busPassengerCache).evict(busId);
+        verify(busPassengerRepository, times(2)).findUnnotifiedPickupsByBusId(busId);
+    }
+
+    @Test
+    void testMarkPickedUp_RemovesPassengerFromCachedBus() {
+        // Given
+        String busId = "BUS001";
+        when(busPassengerRepository.findUnnotifiedPickupsByBusId(busId)).thenReturn(Arrays.asList(
+                createPickup("PASS001", "40.7128", "-74.0060")));
+        passengerService.getUnnotifiedPassengersByBusId(busId);
+        when(tripStateStore.advance(busId, "PASS001", TripState.PICKED_UP)).thenReturn(true);
+
+        // When
+        boolean pickedUp = passengerService.markPickedUp(busId, "PASS001");
+
+        // Then
+        assertTrue(pickedUp);
+        assertTrue(passengerService.getUnnotifiedPassengersByBusId(busId).isEmpty());
+        verify(busPassengerRepository, times(1)).findUnnotifiedPickupsByBusId(busId);
+    }
+
+    @Test
+    void testMarkPickedUp_AlreadyPickedUp() {
+        // Given
+        when(tripStateStore.advance("BUS001", "PASS001", TripState.PICKED_UP)).thenReturn(false);
+
+        // When
+        boolean pickedUp = passengerService.markPickedUp("BUS001", "PASS001");
+
+        // Then
+        assertFalse(pickedUp);
+        verify(busPassengerCache, never()).markNotified(any());
     }
 
     private BusPnr createBusPnr(String busId, String pnrId) {
@@ -149,4 +265,9 @@ class PassengerServiceTest {
         passenger.setPickupLongitude(new BigDecimal("-74.0060"));
         return passenger;
     }
+
+    private PassengerPickup createPickup(String passengerId, String latitude, String longitude) {
+        return new PassengerPickup(passengerId, "Test Passenger", "+1234567890",
+                new BigDecimal(latitude), new BigDecimal(longitude), null);
+    }
 }
@@ -0,0 +1,152 @@
+package com.busreminder.trip;
+
+import com.busreminder.dto.PassengerTripState;
+import com.busreminder.model.TripState;
+import com.busreminder.repository.BusPassengerRepository;
+import com.busreminder.repository.NotificationOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripStateStoreTest {
+
+    @Mock
+    private BusPassengerRepository busPassengerRepository;
+
+    @Mock
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Mock
+    private TripStateWriter tripStateWriter;
+
+    private TripStateStore tripStateStore;
+
+    @BeforeEach
+    void setUp() {
+        tripStateStore = new TripStateStore(busPassengerRepository, notificationOutboxRepository, tripStateWriter);
+    }
+
+    @Test
+    void testGetState_UnknownPassengerIsPending() {
+        // When/Then
+        assertEquals(TripState.PENDING, tripStateStore.getState("BUS001", "PASS001"));
+        assertFalse(tripStateStore.isClaimed("BUS001", "PASS001"));
+        assertEquals(0, tripStateStore.size());
+    }
+
+    @Test
+    void testAdvance_MovesForwardAndQueuesWrite() {
+        // When
+        boolean imminent = tripStateStore.advance("BUS001", "PASS001", TripState.IMMINENT);
+        boolean notified = tripStateStore.advance("BUS001", "PASS001", TripState.NOTIFIED);
+
+        // Then
+        assertTrue(imminent);
+        assertTrue(notified);
+        assertEquals(TripState.NOTIFIED, tripStateStore.getState("BUS001", "PASS001"));
+        verify(tripStateWriter).enqueue("PASS001", TripState.IMMINENT);
+        verify(tripStateWriter).enqueue("PASS001", TripState.NOTIFIED);
+    }
+
+    @Test
+    void testAdvance_SecondClaimIsRejected() {
+        // Given
+        tripStateStore.advance("BUS001", "PASS001", TripState.IMMINENT);
+
+        // When
+        boolean claimedAgain = tripStateStore.advance("BUS001", "PASS001", TripState.IMMINENT);
+
+        // Then - dedupe happens in memory, without another write
+        assertFalse(claimedAgain);
+        assertTrue(tripStateStore.isClaimed("BUS001", "PASS001"));
+        verify(tripStateWriter, times(1)).enqueue(anyString(), any());
+    }
+
+    @Test
+    void testAdvance_NeverMovesBackward() {
+        // Given
+        tripStateStore.advance("BUS001", "PASS001", TripState.PICKED_UP);
+
+        // When
+        boolean notified = tripStateStore.advance("BUS001", "PASS001", TripState.NOTIFIED);
+
+        // Then
+        assertFalse(notified);
+        assertEquals(TripState.PICKED_UP, tripStateStore.getState("BUS001", "PASS001"));
+    }
+
+    @Test
+    void testAdvance_StatesArePerBus() {
+        // When
+        tripStateStore.advance("BUS001", "PASS001", TripState.IMMINENT);
+
+        // Then
+        assertTrue(tripStateStore.isClaimed("BUS001", "PASS001"));
+        assertFalse(tripStateStore.isClaimed("BUS002", "PASS001"));
+    }
+
+    @Test
+    void testInit_RebuildsSettledStates() {
+        // Given
+        when(busPassengerRepository.findTripStates(EnumSet.of(TripState.NOTIFIED, TripState.PICKED_UP)))
+                .thenReturn(List.of(
+                        new PassengerTripState("BUS001", "PASS001", TripState.NOTIFIED),
+                        new PassengerTripState("BUS001", "PASS002", TripState.PICKED_UP),
+                        new PassengerTripState("BUS002", "PASS003", TripState.NOTIFIED)));
+
+        // When
+        tripStateStore.init();
+
+        // Then - nothing is written back
+        assertEquals(TripState.NOTIFIED, tripStateStore.getState("BUS001", "PASS001"));
+        assertEquals(TripState.PICKED_UP, tripStateStore.getState("BUS001", "PASS002"));
+        assertEquals(TripState.NOTIFIED, tripStateStore.getState("BUS002", "PASS003"));
+        assertEquals(3, tripStateStore.size());
+        assertFalse(tripStateStore.advance("BUS001", "PASS001", TripState.IMMINENT));
+        verifyNoInteractions(tripStateWriter);
+    }
+
+    @Test
+    void testInit_PassengerOnTwoPnrsKeepsLaterState() {
+        // Given
+        when(busPassengerRepository.findTripStates(any())).thenReturn(List.of(
+                new PassengerTripState("BUS001", "PASS001", TripState.PICKED_UP),
+                new PassengerTripState("BUS001", "PASS001", TripState.NOTIFIED)));
+
+        // When
+        tripStateStore.init();
+
+        // Then
+        assertEquals(TripState.PICKED_UP, tripStateStore.getState("BUS001", "PASS001"));
+    }
+
+    @Test
+    void testInit_PassengersInOutboxAreClaimed() {
+        // Given - PASS001 was queued before a restart, PASS002 was also notified before it
+        when(busPassengerRepository.findTripStates(any())).thenReturn(List.of(
+                new PassengerTripState("BUS001", "PASS002", TripState.NOTIFIED)));
+        when(notificationOutboxRepository.findClaims()).thenReturn(List.of(
+                new PassengerTripState("BUS001", "PASS001", TripState.IMMINENT),
+                new PassengerTripState("BUS001", "PASS002", TripState.IMMINENT)));
+
+        // When
+        tripStateStore.init();
+
+        // Then - neither can be claimed again, and the settled state wins
+        assertEquals(TripState.IMMINENT, tripStateStore.getState("BUS001", "PASS001"));
+        assertEquals(TripState.NOTIFIED, tripStateStore.getState("BUS001", "PASS002"));
+        assertFalse(tripStateStore.advance("BUS001", "PASS001", TripState.IMMINENT));
+        assertTrue(tripStateStore.advance("BUS001", "PASS001", TripState.NOTIFIED));
+    }
+}
@@ -0,0 +1,155 @@
+package com.busreminder.trip;
+
+import com.busreminder.model.TripState;
+import com.busreminder.repository.BusPassengerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripStateWriterTest {
+
+    @Mock
+    private BusPassengerRepository busPassengerRepository;
+
+    private MeterRegistry meterRegistry;
+    private TripStateWriter tripStateWriter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tripStateWriter = new TripStateWriter(busPassengerRepository, meterRegistry);
+        ReflectionTestUtils.setField(tripStateWriter, "flushIntervalMillis", 500L);
+        ReflectionTestUtils.setField(tripStateWriter, "flushBatchSize", 500);
+    }
+
+    @Test
+    void testFlush_NotifiedPassengersUseBulkMarkNotified() {
+        // Given
+        tripStateWriter.enqueue("PASS001", TripState.NOTIFIED);
+        tripStateWriter.enqueue("PASS002", TripState.NOTIFIED);
+
+        // When
+        LocalDateTime before = LocalDateTime.now();
+        tripStateWriter.flush();
+
+        // Then - one UPDATE for the whole batch
+        ArgumentCaptor<Collection<String>> idsCaptor = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<LocalDateTime> sentAtCaptor = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(busPassengerRepository, times(1)).markNotified(idsCaptor.capture(), sentAtCaptor.capture());
+        assertEquals(Set.of("PASS001", "PASS002"), Set.copyOf(idsCaptor.getValue()));
+        assertFalse(sentAtCaptor.getValue().isBefore(before));
+        assertEquals(0, tripStateWriter.getPendingCount());
+        assertEquals(2, tripStateWriter.getWrittenCount());
+        assertEquals(1, meterRegistry.get("busreminder.trip.state.flush").timer().count());
+    }
+
+    @Test
+    void testFlush_OtherStatesUseUpdateTripState() {
+        // Given
+        tripStateWriter.enqueue("PASS001", TripState.IMMINENT);
+        tripStateWriter.enqueue("PASS002", TripState.PICKED_UP);
+
+        // When
+        tripStateWriter.flush();
+
+        // Then - picked up passengers are settled, imminent ones are not yet
+        verify(busPassengerRepository).updateTripState(List.of("PASS001"), TripState.IMMINENT, false);
+        verify(busPassengerRepository).updateTripState(List.of("PASS002"), TripState.PICKED_UP, true);
+        verify(busPassengerRepository, never()).markNotified(anyCollection(), any());
+    }
+
+    @Test
+    void testEnqueue_CoalescesToLatestState() {
+        // Given
+        tripStateWriter.enqueue("PASS001", TripState.IMMINENT);
+        tripStateWriter.enqueue("PASS001", TripState.NOTIFIED);
+        tripStateWriter.enqueue("PASS001", TripState.IMMINENT);
+
+        // When
+        tripStateWriter.flush();
+
+        // Then - only the notified state is written
+        assertEquals(1, tripStateWriter.getWrittenCount());
+        verify(busPassengerRepository).markNotified(eq(List.of("PASS001")), any(LocalDateTime.class));
+        verify(busPassengerRepository, never()).updateTripState(anyCollection(), any(), anyBoolean());
+    }
+
+    @Test
+    void testFlush_SplitsIntoBatches() {
+        // Given
+        ReflectionTestUtils.setField(tripStateWriter, "flushBatchSize", 2);
+        for (int i = 1; i <= 5; i++) {
+            tripStateWriter.enqueue("PASS00" + i, TripState.IMMINENT);
+        }
+
+        // When
+        tripStateWriter.flush();
+
+        // Then
+        verify(busPassengerRepository, times(3)).updateTripState(anyCollection(), eq(TripState.IMMINENT), eq(false));
+        assertEquals(5, tripStateWriter.getWrittenCount());
+    }
+
+    @Test
+    void testFlush_FailedWriteIsRetried() {
+        // Given
+        tripStateWriter.enqueue("PASS001", TripState.NOTIFIED);
+        when(busPassengerRepository.markNotified(anyCollection(), any(LocalDateTime.class)))
+                .thenThrow(new RuntimeException("Database unavailable"))
+                .thenReturn(1);
+
+        // When
+        tripStateWriter.flush();
+        int pendingAfterFailure = tripStateWriter.getPendingCount();
+        tripStateWriter.flush();
+
+        // Then
+        assertEquals(1, pendingAfterFailure);
+        assertEquals(1, tripStateWriter.getFailedCount());
+        assertEquals(1, tripStateWriter.getWrittenCount());
+        assertEquals(0, tripStateWriter.getPendingCount());
+        verify(busPassengerRepository, times(2)).markNotified(anyCollection(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testFlush_NothingPending() {
+        // When
+        tripStateWriter.flush();
+
+        // Then
+        verifyNoInteractions(busPassengerRepository);
+    }
+
+    @Test
+    void testShutdown_FlushesPendingChanges() {
+        // Given
+        tripStateWriter.init();
+        tripStateWriter.enqueue("PASS001", TripState.PICKED_UP);
+
+        // When
+        tripStateWriter.shutdown();
+
+        // Then
+        verify(busPassengerRepository).updateTripState(List.of("PASS001"), TripState.PICKED_UP, true);
+        assertEquals(0, tripStateWriter.getPendingCount());
+    }
+}